@@ -0,0 +1,116 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.TextNode;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * The checked-in fixture pages of the benchmarks, one per supported language. They are read from
+ * the directory in the system property 'latwiki.fixtures', default '../fixtures'.
+ */
+final class Fixtures {
+
+	/** Titles of the fixture pages by language, as they appear in the URL. */
+	private static final Map<String, String> TITLES = new HashMap<String, String>();
+
+	static {
+		TITLES.put("de", "Hund");
+		TITLES.put("en", "Dog");
+		TITLES.put("es", "Perro");
+		TITLES.put("fr", "Chien");
+		TITLES.put("it", "Cane");
+		TITLES.put("ru", "%D0%A1%D0%BE%D0%B1%D0%B0%D0%BA%D0%B0");
+	}
+
+	/** The lexicon, shared by all benchmarks. */
+	static final LexiconRegistry LEXICON = loadLexicon();
+
+
+	/**
+	 * No instances.
+	 */
+	private Fixtures() {
+	}
+
+	/**
+	 * @return the directory of the fixture pages.
+	 */
+	static File directory() {
+		return new File(System.getProperty("latwiki.fixtures", "../fixtures"));
+	}
+
+	/**
+	 * @return a parser replaying the fixture pages, without network access.
+	 */
+	static Parser parser() {
+		return new Parser(LEXICON, new DirectoryDocumentSource(directory()));
+	}
+
+	/**
+	 * @param language - code of a supported language.
+	 * @return the URL of the fixture page of the language.
+	 */
+	static String url(String language) {
+		return "https://" + language + ".wikipedia.org/wiki/" + TITLES.get(language);
+	}
+
+	/**
+	 * @param language - code of a supported language.
+	 * @return the parsed fixture page of the language.
+	 * @throws IOException - if the fixture cannot be read.
+	 */
+	static Document page(String language) throws IOException {
+		String url = url(language);
+		return Jsoup.parse(new DirectoryDocumentSource(directory()).load(url), url);
+	}
+
+	/**
+	 * @param page - a parsed page.
+	 * @return the texts of all text nodes of the paragraphs of the page.
+	 */
+	static List<String> paragraphTexts(Document page) {
+		List<String> texts = new ArrayList<String>();
+		for (Element paragraph : page.select("p")) {
+			for (TextNode textNode : paragraph.textNodes()) {
+				if (!textNode.isBlank()) {
+					texts.add(textNode.getWholeText());
+				}
+			}
+		}
+		return texts;
+	}
+
+	/**
+	 * @return the lexicon from the classpath.
+	 */
+	private static LexiconRegistry loadLexicon() {
+		try {
+			return LexiconRegistry.fromClasspath();
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,86 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Benchmarks of the steps that use the lexicon of a word class: finding the words to remove in
+ * the texts of all paragraphs of a page, and creating the select element of a gap.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LexiconBenchmark {
+
+	/** Language of the fixture page. */
+	@Param({"de", "en", "es", "fr", "it", "ru"})
+	public String language;
+
+	/** Class of the words to remove; random removal does not use the lexicon. */
+	@Param({"ARTICLES", "PREPOSITIONS", "PRONOUNS"})
+	public String wordClass;
+
+	/** The parser. */
+	private Parser parser;
+
+	/** State of the processing, reused. */
+	private ProcessingContext context;
+
+	/** Texts of the paragraphs of the page. */
+	private List<String> texts;
+
+	/** Number of the next gap. */
+	private int number;
+
+
+	@Setup
+	public void setUp() throws IOException {
+		parser = Fixtures.parser();
+		context = new ProcessingContext(language, WordClass.valueOf(wordClass), Fixtures.LEXICON);
+		texts = Fixtures.paragraphTexts(Fixtures.page(language));
+	}
+
+	@Benchmark
+	public void changeTextArticlesAndPronouns(Blackhole blackhole) {
+		for (String text : texts) {
+			blackhole.consume(parser.changeTextArticlesAndPronouns(text, context));
+		}
+	}
+
+	@Benchmark
+	public Object getSelect() {
+		// The select element as it is inserted for every gap.
+		return HtmlFragments.spanElement(number++, parser.getSelect(context));
+	}
+}
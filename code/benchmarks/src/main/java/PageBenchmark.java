@@ -0,0 +1,91 @@
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Benchmarks of whole pages: inserting the gaps into all paragraphs, and the end-to-end
+ * processSite(), which fetches the page from the page cache (after the first operation), parses,
+ * transforms and serializes it. The render and paragraph caches are turned off in the forked
+ * JVM, as they would skip most of this after the first operation.
+ *
+ * processParagraphs() changes its document, so every operation works on a copy; cloneDocument()
+ * measures the copying alone.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dlatwiki.render.cache.maxBytes=0", "-Dlatwiki.paragraph.cache.maxBytes=0"})
+@State(Scope.Thread)
+public class PageBenchmark {
+
+	/** Language of the fixture page. */
+	@Param({"de", "en", "es", "fr", "it", "ru"})
+	public String language;
+
+	/** Class of the words to remove. */
+	@Param({"ARTICLES", "PREPOSITIONS", "PRONOUNS", "RANDOM"})
+	public String wordClass;
+
+	/** The parser. */
+	private Parser parser;
+
+	/** URL of the page. */
+	private String url;
+
+	/** The parsed page, only copied. */
+	private Document page;
+
+
+	@Setup
+	public void setUp() throws IOException {
+		parser = Fixtures.parser();
+		url = Fixtures.url(language);
+		page = Fixtures.page(language);
+	}
+
+	@Benchmark
+	public Document cloneDocument() {
+		return page.clone();
+	}
+
+	@Benchmark
+	public int processParagraphs() {
+		WordClass words = WordClass.valueOf(wordClass);
+		return parser.processParagraphs(page.clone(), new ProcessingContext(language, words, Fixtures.LEXICON));
+	}
+
+	@Benchmark
+	public String processSite() throws IOException {
+		return parser.processSite(url, WordClass.valueOf(wordClass));
+	}
+}
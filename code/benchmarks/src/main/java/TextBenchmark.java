@@ -0,0 +1,97 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Benchmarks of the word-level steps that do not depend on the word class: tokenizing the texts
+ * of all paragraphs of a page, and choosing the words to remove at random. One operation covers
+ * the whole page.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TextBenchmark {
+
+	/** Language of the fixture page. */
+	@Param({"de", "en", "es", "fr", "it", "ru"})
+	public String language;
+
+	/** The parser. */
+	private Parser parser;
+
+	/** Texts of the paragraphs of the page. */
+	private List<String> texts;
+
+	/** Words of each text, for removeWordsRandomly(). */
+	private List<GapLayout> words;
+
+	/** Reused buffer for tokenizeText(). */
+	private final GapLayout buffer = new GapLayout();
+
+	/** Source of the random choices, seeded for comparable runs. */
+	private final SplittableRandom random = new SplittableRandom(42);
+
+
+	@Setup
+	public void setUp() throws IOException {
+		parser = Fixtures.parser();
+		texts = Fixtures.paragraphTexts(Fixtures.page(language));
+		words = new ArrayList<GapLayout>(texts.size());
+		for (String text : texts) {
+			words.add(parser.tokenizeText(text, new GapLayout()));
+		}
+	}
+
+	@Benchmark
+	public void tokenizeText(Blackhole blackhole) {
+		for (String text : texts) {
+			blackhole.consume(parser.tokenizeText(text, buffer));
+		}
+	}
+
+	@Benchmark
+	public Map<Integer, String> removeWordsRandomly() {
+		// Undo the removals of the previous operation.
+		for (GapLayout wordList : words) {
+			for (int i=0; i<wordList.size(); i++) {
+				wordList.setNumber(i, GapLayout.NO_NUMBER);
+			}
+		}
+		return parser.removeWordsRandomly(words, texts, random);
+	}
+}
@@ -0,0 +1,796 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Persistent store of fetched Wikipedia pages, keyed by normalized URL, so that pages survive a
+ * restart of the web application.
+ *
+ * Pages are appended to segment files 'segment-NNNNNN.dat' in a directory. Each record is
+ *
+ *   magic (int) | key length (int) | value length (int) | fetched at (long) | CRC32 (int)
+ *   key (UTF-8) | value (gzip compressed HTML)
+ *
+ * The index from key to the newest record is kept in memory and rebuilt by scanning the segments
+ * when the store is opened; a torn record at the end of a segment, e.g. after a crash, is cut off.
+ * Records are read through memory-mapped buffers.
+ *
+ * When the active segment is full, a new one is started. Segments of which less than half the
+ * bytes belong to live records are compacted, i.e. their live records are copied to the active
+ * segment and the file is deleted. If the store grows beyond its maximum size, the oldest segments
+ * are deleted.
+ *
+ * Only one store at a time may use a directory, since each keeps its own index and appends to the
+ * active segment. The store holds a lock on the file 'lock' in the directory while it is open; a
+ * second store, in this or another process (e.g. the DumpIngester while the web application is
+ * running), cannot be opened on the same directory.
+ *
+ * All methods are thread-safe.
+ */
+final class ArticleStore {
+
+	/** Magic number at the start of each record ('LATW'). */
+	private static final int MAGIC = 0x4C415457;
+
+	/** Size of the record header in bytes. */
+	private static final int HEADER_SIZE = 24;
+
+	/** Prefix of the names of the segment files. */
+	private static final String SEGMENT_PREFIX = "segment-";
+
+	/** Suffix of the names of the segment files. */
+	private static final String SEGMENT_SUFFIX = ".dat";
+
+	/** Name of the file locked while the store is open. */
+	private static final String LOCK_FILE = "lock";
+
+	/** A segment is compacted when less than this share of its bytes is live. */
+	private static final double MIN_LIVE_RATIO = 0.5;
+
+	/** The encoding schema. */
+	private static final Charset ENCODING = Charset.forName("UTF-8");
+
+	/** Time to live of pages that never expire; small enough that a stale window can be added. */
+	static final long NEVER_EXPIRES = Long.MAX_VALUE / 4;
+
+	/** Directory of the segment files. */
+	private final File directory;
+
+	/** Maximum total size of the segment files in bytes. */
+	private final long maxBytes;
+
+	/** Size in bytes at which a new segment is started. */
+	private final long segmentBytes;
+
+	/** Time to live of a page in milliseconds. */
+	private final long ttlMillis;
+
+	/** Segments by id, oldest first. Guarded by lock. */
+	private final TreeMap<Integer, Segment> segments = new TreeMap<Integer, Segment>();
+
+	/** Location of the newest record of each key. Guarded by lock. */
+	private final Map<String, Location> index = new HashMap<String, Location>();
+
+	/** The segment new records are appended to. Guarded by lock. */
+	private Segment active;
+
+	/** The open lock file. */
+	private final FileChannel lockChannel;
+
+	/** Lookups hold the read lock; writes, compaction and deletion hold the write lock. */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/** Number of lookups that found a fresh page. */
+	private final AtomicLong hits = new AtomicLong();
+
+	/** Number of lookups that found no page or an expired one. */
+	private final AtomicLong misses = new AtomicLong();
+
+	/** Number of segments compacted. */
+	private final AtomicLong compactions = new AtomicLong();
+
+	/** Number of segments deleted to stay within maxBytes. */
+	private final AtomicLong evictions = new AtomicLong();
+
+	/** A logger instance. */
+	private static final Logger logger = Logger.getLogger(ArticleStore.class.getName());
+
+
+	/**
+	 * A stored page.
+	 */
+	static final class Entry {
+
+		/** The HTML of the page. */
+		private final String html;
+
+		/** Time the page was fetched, in milliseconds since the epoch. */
+		private final long fetchedAt;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param html - the HTML of the page.
+		 * @param fetchedAt - time the page was fetched.
+		 */
+		private Entry(String html, long fetchedAt) {
+			this.html = html;
+			this.fetchedAt = fetchedAt;
+		}
+
+		/**
+		 * @return the HTML of the page.
+		 */
+		String getHtml() {
+			return html;
+		}
+
+		/**
+		 * @return time the page was fetched, in milliseconds since the epoch.
+		 */
+		long getFetchedAt() {
+			return fetchedAt;
+		}
+	}
+
+	/**
+	 * Position of a record in a segment.
+	 */
+	private static final class Location {
+
+		/** The segment holding the record. */
+		private final Segment segment;
+
+		/** Offset of the record in the segment. */
+		private final long offset;
+
+		/** Length of the key in bytes. */
+		private final int keyLength;
+
+		/** Length of the compressed value in bytes. */
+		private final int valueLength;
+
+		/** Time the page was fetched. */
+		private final long fetchedAt;
+
+		/**
+		 * Constructor.
+		 */
+		private Location(Segment segment, long offset, int keyLength, int valueLength, long fetchedAt) {
+			this.segment = segment;
+			this.offset = offset;
+			this.keyLength = keyLength;
+			this.valueLength = valueLength;
+			this.fetchedAt = fetchedAt;
+		}
+
+		/**
+		 * @return the size of the whole record in bytes.
+		 */
+		private long recordSize() {
+			return HEADER_SIZE + keyLength + valueLength;
+		}
+	}
+
+	/**
+	 * A segment file.
+	 */
+	private static final class Segment {
+
+		/** Id of the segment; segments with higher ids are newer. */
+		private final int id;
+
+		/** The segment file. */
+		private final File file;
+
+		/** Channel of the segment file. */
+		private final FileChannel channel;
+
+		/** Number of bytes written. Guarded by the store lock. */
+		private long size;
+
+		/** Number of bytes belonging to live records. Guarded by the store lock. */
+		private long liveBytes;
+
+		/** Read-only mapping of the file; remapped when records lie beyond it. Guarded by this. */
+		private MappedByteBuffer mapping;
+
+		/**
+		 * Constructor. Opens or creates the file.
+		 *
+		 * @param id - id of the segment.
+		 * @param file - the segment file.
+		 * @throws IOException - if the file cannot be opened.
+		 */
+		private Segment(int id, File file) throws IOException {
+			this.id = id;
+			this.file = file;
+			this.channel = new RandomAccessFile(file, "rw").getChannel();
+			this.size = channel.size();
+		}
+
+		/**
+		 * Returns a view of the segment from offset to at least offset + length, mapping the file
+		 * again if it has grown since it was last mapped.
+		 *
+		 * @param offset - start of the view.
+		 * @param length - minimum number of bytes in the view.
+		 * @return a buffer positioned at offset.
+		 * @throws IOException - if the file cannot be mapped.
+		 */
+		private ByteBuffer view(long offset, int length) throws IOException {
+			MappedByteBuffer map;
+			synchronized (this) {
+				if (mapping == null || offset + length > mapping.capacity()) {
+					mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				}
+				map = mapping;
+			}
+			// Every reader gets its own position and limit.
+			ByteBuffer buffer = map.duplicate();
+			buffer.position((int) offset);
+			buffer.limit((int) offset + length);
+			return buffer;
+		}
+
+		/**
+		 * Copies bytes out of the segment.
+		 *
+		 * @param offset - offset of the first byte.
+		 * @param length - number of bytes.
+		 * @return the bytes.
+		 * @throws IOException - if the file cannot be mapped.
+		 */
+		private byte[] read(long offset, int length) throws IOException {
+			byte[] bytes = new byte[length];
+			view(offset, length).get(bytes);
+			return bytes;
+		}
+
+		/**
+		 * Appends a buffer to the file.
+		 *
+		 * @param buffer - the bytes to append.
+		 * @throws IOException - if the bytes cannot be written.
+		 */
+		private void append(ByteBuffer buffer) throws IOException {
+			while (buffer.hasRemaining()) {
+				size += channel.write(buffer, size);
+			}
+		}
+
+		/**
+		 * Closes and deletes the file.
+		 */
+		private void delete() {
+			close();
+			synchronized (this) {
+				mapping = null;
+			}
+			if (!file.delete()) {
+				logger.log(Level.WARNING, "Could not delete segment " + file);
+			}
+		}
+
+		/**
+		 * Closes the file.
+		 */
+		private void close() {
+			try {
+				channel.close();
+			}
+			catch (IOException e) {
+				logger.log(Level.WARNING, "Could not close segment " + file, e);
+			}
+		}
+	}
+
+	/**
+	 * Constructor. Opens the store in a directory, creating it if necessary, and rebuilds the
+	 * index from the segment files.
+	 *
+	 * @param directory - directory of the segment files.
+	 * @param maxBytes - maximum total size of the segment files in bytes.
+	 * @param segmentBytes - size in bytes at which a new segment is started.
+	 * @param ttlMillis - time to live of a page in milliseconds.
+	 * @throws IOException - if the directory or a segment cannot be opened, or another store has
+	 * the directory open.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	ArticleStore(File directory, long maxBytes, long segmentBytes, long ttlMillis) throws IOException {
+		// Parameter check.
+		if (directory == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - directory is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  directory);
+		}
+		if (maxBytes < 0) {
+			logger.log(Level.SEVERE, "Invalid parameter - maxBytes is negative: " + maxBytes);
+			throw new IllegalArgumentException("Invalid Parameter: " +  maxBytes);
+		}
+		if (segmentBytes <= HEADER_SIZE || segmentBytes > Integer.MAX_VALUE) {
+			logger.log(Level.SEVERE, "Invalid parameter - segmentBytes out of range: " + segmentBytes);
+			throw new IllegalArgumentException("Invalid Parameter: " +  segmentBytes);
+		}
+		if (ttlMillis < 0) {
+			logger.log(Level.SEVERE, "Invalid parameter - ttlMillis is negative: " + ttlMillis);
+			throw new IllegalArgumentException("Invalid Parameter: " +  ttlMillis);
+		}
+
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		this.segmentBytes = segmentBytes;
+		this.ttlMillis = ttlMillis;
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create directory " + directory);
+		}
+		lockChannel = lock(directory);
+		long start = System.nanoTime();
+		try {
+			File[] files = directory.listFiles();
+			if (files != null) {
+				for (File file : files) {
+					int id = segmentId(file.getName());
+					if (id >= 0) {
+						segments.put(id, new Segment(id, file));
+					}
+				}
+			}
+			for (Segment segment : segments.values()) {
+				scan(segment);
+			}
+			active = segments.isEmpty() ? newSegment(0) : segments.lastEntry().getValue();
+		}
+		catch (IOException | RuntimeException e) {
+			close();
+			throw e;
+		}
+		logger.log(Level.INFO, "ArticleStore opened " + directory + " in " + (System.nanoTime() - start) / 1000000
+				+ " ms: " + index.size() + " pages in " + segments.size() + " segments, " + getTotalBytes() + " bytes");
+	}
+
+	/**
+	 * Locks the lock file of a directory.
+	 *
+	 * @param directory - directory of the segment files.
+	 * @return the lock file, which holds the lock until it is closed.
+	 * @throws IOException - if the lock file cannot be opened, or another store holds the lock.
+	 */
+	private static FileChannel lock(File directory) throws IOException {
+		FileChannel channel = FileChannel.open(new File(directory, LOCK_FILE).toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE);
+		FileLock fileLock;
+		try {
+			fileLock = channel.tryLock();
+		}
+		catch (OverlappingFileLockException e) {
+			// Held by another store in this process.
+			fileLock = null;
+		}
+		catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		if (fileLock == null) {
+			channel.close();
+			throw new IOException("Article store " + directory + " is in use by another store");
+		}
+		return channel;
+	}
+
+	/**
+	 * Looks up a page.
+	 *
+	 * @param key - the normalized URL of the page.
+	 * @return the stored page, or null if it is missing, expired or unreadable.
+	 */
+	Entry get(String key) {
+		return get(key, 0);
+	}
+
+	/**
+	 * Looks up a page, accepting a page that expired a while ago, as long as it has not been
+	 * compacted away. Whether the result is still fresh can be checked with isFresh().
+	 *
+	 * @param key - the normalized URL of the page.
+	 * @param maxStaleMillis - how long after its expiry a page is still returned.
+	 * @return the stored page, or null if it is missing, expired for longer or unreadable.
+	 */
+	Entry get(String key, long maxStaleMillis) {
+		byte[] compressed;
+		long fetchedAt;
+		lock.readLock().lock();
+		try {
+			Location location = index.get(key);
+			if (location == null || System.currentTimeMillis() - location.fetchedAt > ttlMillis + maxStaleMillis) {
+				misses.incrementAndGet();
+				return null;
+			}
+			compressed = location.segment.read(location.offset + HEADER_SIZE + location.keyLength, location.valueLength);
+			fetchedAt = location.fetchedAt;
+		}
+		catch (IOException e) {
+			logger.log(Level.WARNING, "Could not read page " + key, e);
+			misses.incrementAndGet();
+			return null;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+		// Decompress outside of the lock.
+		hits.incrementAndGet();
+		return new Entry(Compression.decompress(compressed), fetchedAt);
+	}
+
+	/**
+	 * Tells whether a page is stored, like get(), but without reading it.
+	 *
+	 * @param key - the normalized URL of the page.
+	 * @param maxStaleMillis - how long after its expiry a page still counts.
+	 * @return true if the page is stored and has not expired for longer.
+	 */
+	boolean contains(String key, long maxStaleMillis) {
+		lock.readLock().lock();
+		try {
+			Location location = index.get(key);
+			return location != null && System.currentTimeMillis() - location.fetchedAt <= ttlMillis + maxStaleMillis;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param entry - a stored page.
+	 * @return true if the page has not expired yet.
+	 */
+	boolean isFresh(Entry entry) {
+		return System.currentTimeMillis() - entry.getFetchedAt() <= ttlMillis;
+	}
+
+	/**
+	 * Adds a page, replacing an older version. Starts a new segment, compacts segments and
+	 * deletes the oldest segments as necessary. Pages larger than a segment are not stored.
+	 *
+	 * @param key - the normalized URL of the page.
+	 * @param html - the HTML of the page.
+	 * @param fetchedAt - time the page was fetched.
+	 * @return true if the page was stored, false if it is too large.
+	 * @throws IOException - if the page cannot be written; it may be stored anyway, if only the
+	 * compaction or deletion of segments afterwards failed.
+	 */
+	boolean put(String key, String html, long fetchedAt) throws IOException {
+		// Compress outside of the lock.
+		byte[] keyBytes = key.getBytes(ENCODING);
+		byte[] compressed = Compression.compress(html);
+		if (HEADER_SIZE + keyBytes.length + compressed.length > Math.min(segmentBytes, maxBytes)) {
+			return false;
+		}
+		lock.writeLock().lock();
+		try {
+			append(key, keyBytes, compressed, fetchedAt);
+			compact();
+			enforceMaxBytes();
+			return true;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Closes all segment files and releases the directory. The store must not be used afterwards.
+	 */
+	void close() {
+		lock.writeLock().lock();
+		try {
+			for (Segment segment : segments.values()) {
+				segment.close();
+			}
+			try {
+				// Releases the lock on the directory.
+				lockChannel.close();
+			}
+			catch (IOException e) {
+				logger.log(Level.WARNING, "Could not close the lock file of " + directory, e);
+			}
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Appends a record to the active segment, starting a new segment if it is full. The caller
+	 * holds the write lock.
+	 *
+	 * @param key - the key.
+	 * @param keyBytes - the UTF-8 bytes of the key.
+	 * @param value - the compressed value.
+	 * @param fetchedAt - time the page was fetched.
+	 * @throws IOException - if the record cannot be written.
+	 */
+	private void append(String key, byte[] keyBytes, byte[] value, long fetchedAt) throws IOException {
+		int recordSize = HEADER_SIZE + keyBytes.length + value.length;
+		if (active.size > 0 && active.size + recordSize > segmentBytes) {
+			active = newSegment(active.id + 1);
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(keyBytes);
+		crc.update(value);
+		ByteBuffer buffer = ByteBuffer.allocate(recordSize);
+		buffer.putInt(MAGIC).putInt(keyBytes.length).putInt(value.length).putLong(fetchedAt).putInt((int) crc.getValue());
+		buffer.put(keyBytes).put(value);
+		buffer.flip();
+
+		long offset = active.size;
+		try {
+			active.append(buffer);
+		}
+		catch (IOException e) {
+			// Drop a partly written record, so the next record starts at a valid offset.
+			active.channel.truncate(offset);
+			active.size = offset;
+			throw e;
+		}
+		index(key, new Location(active, offset, keyBytes.length, value.length, fetchedAt));
+	}
+
+	/**
+	 * Points the index at a new record and updates the live bytes of the segments.
+	 *
+	 * @param key - the key.
+	 * @param location - location of the new record.
+	 */
+	private void index(String key, Location location) {
+		Location old = index.put(key, location);
+		if (old != null) {
+			old.segment.liveBytes -= old.recordSize();
+		}
+		location.segment.liveBytes += location.recordSize();
+	}
+
+	/**
+	 * Compacts the full segments with few live bytes by copying their fresh records to the
+	 * active segment. Expired records are dropped. The caller holds the write lock.
+	 *
+	 * @throws IOException - if a record cannot be copied.
+	 */
+	private void compact() throws IOException {
+		List<Segment> candidates = new ArrayList<Segment>();
+		for (Segment segment : segments.values()) {
+			if (segment != active && segment.liveBytes < segment.size * MIN_LIVE_RATIO) {
+				candidates.add(segment);
+			}
+		}
+		long now = System.currentTimeMillis();
+		for (Segment segment : candidates) {
+			Iterator<Map.Entry<String, Location>> it = index.entrySet().iterator();
+			List<Map.Entry<String, Location>> live = new ArrayList<Map.Entry<String, Location>>();
+			while (it.hasNext()) {
+				Map.Entry<String, Location> e = it.next();
+				Location location = e.getValue();
+				if (location.segment != segment) {
+					continue;
+				}
+				if (now - location.fetchedAt > ttlMillis) {
+					it.remove();
+				}
+				else {
+					live.add(e);
+				}
+			}
+			for (Map.Entry<String, Location> e : live) {
+				Location location = e.getValue();
+				byte[] keyBytes = segment.read(location.offset + HEADER_SIZE, location.keyLength);
+				byte[] value = segment.read(location.offset + HEADER_SIZE + location.keyLength, location.valueLength);
+				append(e.getKey(), keyBytes, value, location.fetchedAt);
+			}
+			segments.remove(segment.id);
+			segment.delete();
+			compactions.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Deletes the oldest segments while the store is larger than its maximum size. The caller
+	 * holds the write lock.
+	 *
+	 * @throws IOException - if a new segment cannot be created.
+	 */
+	private void enforceMaxBytes() throws IOException {
+		while (getTotalBytes() > maxBytes && !segments.isEmpty()) {
+			Segment oldest = segments.firstEntry().getValue();
+			Iterator<Location> it = index.values().iterator();
+			while (it.hasNext()) {
+				if (it.next().segment == oldest) {
+					it.remove();
+				}
+			}
+			segments.remove(oldest.id);
+			oldest.delete();
+			evictions.incrementAndGet();
+			if (oldest == active) {
+				active = newSegment(oldest.id + 1);
+			}
+		}
+	}
+
+	/**
+	 * Adds the records of a segment to the index. A segment that ends in an invalid record is
+	 * truncated before it.
+	 *
+	 * @param segment - the segment.
+	 * @throws IOException - if the segment cannot be read.
+	 */
+	private void scan(Segment segment) throws IOException {
+		long offset = 0;
+		CRC32 crc = new CRC32();
+		while (offset + HEADER_SIZE <= segment.size) {
+			ByteBuffer header = segment.view(offset, HEADER_SIZE);
+			int magic = header.getInt();
+			int keyLength = header.getInt();
+			int valueLength = header.getInt();
+			long fetchedAt = header.getLong();
+			int checksum = header.getInt();
+			if (magic != MAGIC || keyLength < 0 || valueLength < 0
+					|| offset + HEADER_SIZE + keyLength + valueLength > segment.size) {
+				break;
+			}
+			byte[] body = segment.read(offset + HEADER_SIZE, keyLength + valueLength);
+			crc.reset();
+			crc.update(body);
+			if ((int) crc.getValue() != checksum) {
+				break;
+			}
+			index(new String(body, 0, keyLength, ENCODING), new Location(segment, offset, keyLength, valueLength, fetchedAt));
+			offset += HEADER_SIZE + keyLength + valueLength;
+		}
+		if (offset < segment.size) {
+			logger.log(Level.WARNING, "Truncating segment " + segment.file + " from " + segment.size + " to " + offset + " bytes");
+			synchronized (segment) {
+				segment.mapping = null;
+			}
+			segment.channel.truncate(offset);
+			segment.size = offset;
+		}
+	}
+
+	/**
+	 * Creates an empty segment.
+	 *
+	 * @param id - id of the segment.
+	 * @return the segment.
+	 * @throws IOException - if the file cannot be created.
+	 */
+	private Segment newSegment(int id) throws IOException {
+		Segment segment = new Segment(id, new File(directory, String.format("%s%06d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX)));
+		segments.put(id, segment);
+		return segment;
+	}
+
+	/**
+	 * Parses the id from the name of a segment file.
+	 *
+	 * @param name - the file name.
+	 * @return the id, or -1 if the name is not the name of a segment file.
+	 */
+	private static int segmentId(String name) {
+		if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+		}
+		catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * @return number of lookups that found a fresh page.
+	 */
+	long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return number of lookups that found no page or an expired one.
+	 */
+	long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return number of segments compacted.
+	 */
+	long getCompactions() {
+		return compactions.get();
+	}
+
+	/**
+	 * @return number of segments deleted to stay within the size limit.
+	 */
+	long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return number of stored pages, including expired ones not yet compacted.
+	 */
+	int getSize() {
+		lock.readLock().lock();
+		try {
+			return index.size();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return number of segment files.
+	 */
+	int getSegmentCount() {
+		lock.readLock().lock();
+		try {
+			return segments.size();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return total size of the segment files in bytes.
+	 */
+	long getTotalBytes() {
+		lock.readLock().lock();
+		try {
+			long total = 0;
+			for (Segment segment : segments.values()) {
+				total += segment.size;
+			}
+			return total;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+}
@@ -0,0 +1,450 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Processes a batch of pages for POST /wiki/batch. The jobs are given as a JSON array of
+ * objects, or as one object per line (NDJSON), each with the members 'url', 'cloze' (the word
+ * class, as for GET /wiki) and optionally 'seed'.
+ *
+ * At most 'parallelism' jobs of a batch run at a time, on the fetch and transform executors of
+ * the single page requests. Every job ends in one line of JSON, written as soon as the job is
+ * done, so a slow page does not hold up the others. A line holds the index of the job in the
+ * batch, the job itself, the status ('ok', 'invalid', 'busy' or 'error'), whether the page came
+ * from the render cache, the time the job waited for its turn and the time it took in
+ * milliseconds, and the page. A failed job has an 'error' member, too.
+ */
+final class BatchProcessor {
+
+	/** Encoding of the output. */
+	private static final Charset ENCODING = Charset.forName("UTF-8");
+
+	/** Size of the buffer reading the request body. */
+	private static final int READ_BUFFER_SIZE = 8192;
+
+	/** Status of a job whose page was produced. */
+	private static final String STATUS_OK = "ok";
+
+	/** Status of a job with invalid parameters. */
+	private static final String STATUS_INVALID = "invalid";
+
+	/** Status of a job rejected because the pipeline was full. */
+	private static final String STATUS_BUSY = "busy";
+
+	/** Status of a job whose page could not be loaded or processed. */
+	private static final String STATUS_ERROR = "error";
+
+	/** The parser. */
+	private final Parser parser;
+
+	/** Executor of the fetch stage. */
+	private final Executor fetchExecutor;
+
+	/** Executor of the transform stage. */
+	private final Executor transformExecutor;
+
+	/** Maximum number of jobs of a batch running at a time. */
+	private final int parallelism;
+
+	/** A logger instance. */
+	private static final Logger logger = Logger.getLogger(BatchProcessor.class.getName());
+
+
+	/**
+	 * A job of a batch.
+	 */
+	static final class Job {
+
+		/** URL of the Wikipedia page. */
+		private final String url;
+
+		/** Class of the words to remove, as given. */
+		private final String cloze;
+
+		/** Seed of the random word removal, or null. */
+		private final Long seed;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param url - URL of the Wikipedia page.
+		 * @param cloze - class of the words to remove.
+		 * @param seed - seed of the random word removal, or null.
+		 */
+		Job(String url, String cloze, Long seed) {
+			this.url = url;
+			this.cloze = cloze;
+			this.seed = seed;
+		}
+	}
+
+	/**
+	 * The result of a job.
+	 */
+	private static final class Outcome {
+
+		/** Status of the job. */
+		private final String status;
+
+		/** The page, or a page with a message. */
+		private final String html;
+
+		/** Whether the page came from the render cache. */
+		private final boolean cached;
+
+		/** What went wrong, or null. */
+		private final String error;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param status - status of the job.
+		 * @param html - the page, or a page with a message.
+		 * @param cached - whether the page came from the render cache.
+		 * @param error - what went wrong, or null.
+		 */
+		private Outcome(String status, String html, boolean cached, String error) {
+			this.status = status;
+			this.html = html;
+			this.cached = cached;
+			this.error = error;
+		}
+	}
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param parser - the parser.
+	 * @param fetchExecutor - executor of the fetch stage.
+	 * @param transformExecutor - executor of the transform stage.
+	 * @param parallelism - maximum number of jobs of a batch running at a time.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	BatchProcessor(Parser parser, Executor fetchExecutor, Executor transformExecutor, int parallelism) {
+		// Parameter check.
+		if (parser == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - parser is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  parser);
+		}
+		if (fetchExecutor == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - fetchExecutor is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  fetchExecutor);
+		}
+		if (transformExecutor == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - transformExecutor is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  transformExecutor);
+		}
+		if (parallelism < 1) {
+			logger.log(Level.SEVERE, "Invalid parameter - parallelism is less than 1: " + parallelism);
+			throw new IllegalArgumentException("Invalid Parameter: " +  parallelism);
+		}
+
+		this.parser = parser;
+		this.fetchExecutor = fetchExecutor;
+		this.transformExecutor = transformExecutor;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Reads the body of a batch request, up to a limit, so a huge body is refused before it is
+	 * held in memory.
+	 *
+	 * @param in - the body.
+	 * @param maxBytes - maximum size of the body in bytes.
+	 * @return the body.
+	 * @throws IOException - if the body cannot be read.
+	 * @throws IllegalArgumentException - if the body is larger than maxBytes.
+	 */
+	static String readBody(InputStream in, int maxBytes) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream(Math.min(maxBytes, READ_BUFFER_SIZE));
+		byte[] buffer = new byte[READ_BUFFER_SIZE];
+		int read;
+		while ((read = in.read(buffer)) >= 0) {
+			if (body.size() + read > maxBytes) {
+				throw new IllegalArgumentException("Request body larger than " + maxBytes + " bytes.");
+			}
+			body.write(buffer, 0, read);
+		}
+		return new String(body.toByteArray(), ENCODING);
+	}
+
+	/**
+	 * Reads the jobs of a batch from a JSON array of objects or from NDJSON.
+	 *
+	 * @param body - the request body.
+	 * @param maxJobs - maximum number of jobs of a batch.
+	 * @return the jobs.
+	 * @throws IllegalArgumentException - if the body is not valid or has too many jobs.
+	 */
+	static List<Job> parseJobs(String body, int maxJobs) {
+		String text = body == null ? "" : body.trim();
+		List<Object> values = new ArrayList<Object>();
+		if (text.startsWith("[")) {
+			values.addAll((List<?>) Json.parse(text));
+		}
+		else {
+			for (String line : text.split("\n")) {
+				if (!line.trim().isEmpty()) {
+					values.add(Json.parse(line));
+				}
+			}
+		}
+		if (values.isEmpty()) {
+			throw new IllegalArgumentException("No jobs given.");
+		}
+		if (values.size() > maxJobs) {
+			throw new IllegalArgumentException("Too many jobs: " + values.size() + ", at most " + maxJobs + " allowed.");
+		}
+
+		List<Job> jobs = new ArrayList<Job>(values.size());
+		for (Object value : values) {
+			if (!(value instanceof Map)) {
+				throw new IllegalArgumentException("A job must be an object: " + value);
+			}
+			Map<?, ?> job = (Map<?, ?>) value;
+			Object seed = job.get("seed");
+			if (seed != null && !(seed instanceof Long)) {
+				throw new IllegalArgumentException("The seed must be an integer: " + seed);
+			}
+			jobs.add(new Job(asString(job.get("url")), asString(job.get("cloze")), (Long) seed));
+		}
+		return jobs;
+	}
+
+	/**
+	 * Processes the jobs of a batch and writes one line of JSON per job to a stream, in the
+	 * order the jobs finish. Thread-safe.
+	 *
+	 * @param jobs - the jobs.
+	 * @param out - the stream; it is flushed after every line but not closed.
+	 * @return future completed when all jobs are done, or when the client went away. It does
+	 * not fail.
+	 */
+	CompletableFuture<Void> process(List<Job> jobs, OutputStream out) {
+		CompletableFuture<Void> done = new CompletableFuture<Void>();
+		if (jobs.isEmpty()) {
+			done.complete(null);
+			return done;
+		}
+		long received = System.nanoTime();
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger remaining = new AtomicInteger(jobs.size());
+		AtomicBoolean gone = new AtomicBoolean();
+		for (int i=0; i<Math.min(parallelism, jobs.size()); i++) {
+			startNext(jobs, out, received, next, remaining, gone, done);
+		}
+		return done;
+	}
+
+	/**
+	 * Starts the next jobs of a batch, one after the other as long as they are done at once (a
+	 * cached or invalid job), and else when the running job is done; the line of every job is
+	 * written when it is done.
+	 *
+	 * @param jobs - the jobs.
+	 * @param out - the stream.
+	 * @param received - time the batch was received, from System.nanoTime().
+	 * @param next - index of the next job to start.
+	 * @param remaining - number of jobs not done yet.
+	 * @param gone - whether the client went away.
+	 * @param done - completed when all jobs are done.
+	 */
+	private void startNext(List<Job> jobs, OutputStream out, long received, AtomicInteger next, AtomicInteger remaining,
+			AtomicBoolean gone, CompletableFuture<Void> done) {
+		while (!gone.get()) {
+			int index = next.getAndIncrement();
+			if (index >= jobs.size()) {
+				return;
+			}
+			Job job = jobs.get(index);
+			long started = System.nanoTime();
+			CompletableFuture<Outcome> result;
+			try {
+				result = run(job);
+			}
+			catch (RuntimeException e) {
+				// A failing job must still end in a line, or the batch would never be done.
+				result = new CompletableFuture<Outcome>();
+				result.completeExceptionally(e);
+			}
+			if (!result.isDone()) {
+				result.whenComplete((outcome, e) -> {
+					finish(index, job, outcome, e, out, started - received, started, remaining, gone, done);
+					startNext(jobs, out, received, next, remaining, gone, done);
+				});
+				return;
+			}
+			// Looping rather than recursing keeps the stack flat on a batch of cached pages.
+			result.whenComplete((outcome, e) -> finish(index, job, outcome, e, out, started - received, started, remaining, gone, done));
+		}
+		done.complete(null);
+	}
+
+	/**
+	 * Writes the line of a job that is done.
+	 *
+	 * @param index - index of the job in the batch.
+	 * @param job - the job.
+	 * @param outcome - the result of the job.
+	 * @param e - the failure of the job, or null.
+	 * @param out - the stream.
+	 * @param waitNanos - time the job waited for its turn.
+	 * @param started - time the job was started, from System.nanoTime().
+	 * @param remaining - number of jobs not done yet.
+	 * @param gone - whether the client went away.
+	 * @param done - completed when all jobs are done.
+	 */
+	private static void finish(int index, Job job, Outcome outcome, Throwable e, OutputStream out, long waitNanos,
+			long started, AtomicInteger remaining, AtomicBoolean gone, CompletableFuture<Void> done) {
+		long runNanos = System.nanoTime() - started;
+		try {
+			write(out, record(index, job, e == null ? outcome : failed(e), waitNanos, runNanos));
+		}
+		catch (IOException ioe) {
+			logger.log(Level.FINE, "Client went away while writing the batch.", ioe);
+			gone.set(true);
+		}
+		finally {
+			if (remaining.decrementAndGet() == 0) {
+				done.complete(null);
+			}
+		}
+	}
+
+	/**
+	 * Runs a job: checks it, looks up the render cache, and processes the page otherwise.
+	 *
+	 * @param job - the job.
+	 * @return future of the outcome.
+	 */
+	private CompletableFuture<Outcome> run(Job job) {
+		WordClass wordClass;
+		try {
+			wordClass = WordClass.valueOf(job.cloze == null ? "" : job.cloze.trim().toUpperCase(Locale.ROOT));
+		}
+		catch (IllegalArgumentException e) {
+			return CompletableFuture.completedFuture(new Outcome(STATUS_INVALID,
+					HtmlFragments.messagePage(Parser.MESSAGE_INVALID_PARAMETER), false, "Unknown word class: " + job.cloze));
+		}
+		String message = parser.checkRequest(job.url, wordClass);
+		if (message != null) {
+			return CompletableFuture.completedFuture(new Outcome(STATUS_INVALID, message, false, "Invalid request"));
+		}
+		PageCache.Entry rendered = parser.lookUpRendered(job.url, wordClass, job.seed, fetchExecutor, transformExecutor);
+		if (rendered != null) {
+			return CompletableFuture.completedFuture(new Outcome(STATUS_OK, rendered.getHtml(), true, null));
+		}
+		try {
+			return parser.renderAsync(job.url, wordClass, job.seed, fetchExecutor, transformExecutor)
+					.thenApply(html -> new Outcome(STATUS_OK, html, false, null));
+		}
+		catch (RejectedExecutionException e) {
+			return CompletableFuture.completedFuture(failed(e));
+		}
+	}
+
+	/**
+	 * @param e - the failure of a job.
+	 * @return the outcome of the failed job.
+	 */
+	private static Outcome failed(Throwable e) {
+		Throwable cause = e;
+		while ((cause instanceof CompletionException || cause instanceof UncheckedIOException) && cause.getCause() != null) {
+			cause = cause.getCause();
+		}
+		if (cause instanceof RejectedExecutionException) {
+			return new Outcome(STATUS_BUSY, null, false, "The server is busy.");
+		}
+		logger.log(Level.WARNING, "Could not process a job of a batch.", cause);
+		return new Outcome(STATUS_ERROR, HtmlFragments.messagePage(Parser.MESSAGE_PAGE_NOT_LOADED), false,
+				String.valueOf(cause.getMessage()));
+	}
+
+	/**
+	 * Builds the line of JSON of a job.
+	 *
+	 * @param index - index of the job in the batch.
+	 * @param job - the job.
+	 * @param outcome - the result of the job.
+	 * @param waitNanos - time the job waited for its turn.
+	 * @param runNanos - time the job took.
+	 * @return the line, with its line break.
+	 */
+	private static String record(int index, Job job, Outcome outcome, long waitNanos, long runNanos) {
+		int size = outcome.html == null ? 0 : outcome.html.length();
+		StringBuilder json = new StringBuilder(size + size / 8 + 256);
+		json.append("{\"index\":").append(index).append(",\"url\":");
+		Json.appendString(job.url, json);
+		json.append(",\"cloze\":");
+		Json.appendString(job.cloze, json);
+		json.append(",\"seed\":").append(job.seed);
+		json.append(",\"status\":");
+		Json.appendString(outcome.status, json);
+		json.append(",\"cached\":").append(outcome.cached);
+		json.append(",\"waitMillis\":").append(TimeUnit.NANOSECONDS.toMillis(waitNanos));
+		json.append(",\"millis\":").append(TimeUnit.NANOSECONDS.toMillis(runNanos));
+		if (outcome.error != null) {
+			json.append(",\"error\":");
+			Json.appendString(outcome.error, json);
+		}
+		json.append(",\"html\":");
+		Json.appendString(outcome.html, json);
+		return json.append("}\n").toString();
+	}
+
+	/**
+	 * Writes a line to the stream. Lines of jobs finishing at the same time are not mixed.
+	 *
+	 * @param out - the stream.
+	 * @param line - the line.
+	 * @throws IOException - if the client went away.
+	 */
+	private static void write(OutputStream out, String line) throws IOException {
+		byte[] bytes = line.getBytes(ENCODING);
+		synchronized (out) {
+			out.write(bytes);
+			out.flush();
+		}
+	}
+
+	/**
+	 * @param value - a JSON value.
+	 * @return the value as a string, or null if it is null.
+	 */
+	private static String asString(Object value) {
+		return value == null ? null : value.toString();
+	}
+}
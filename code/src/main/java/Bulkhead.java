@@ -0,0 +1,203 @@
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Limits the work of one pipeline stage. At most maxConcurrent tasks run on the underlying
+ * executor at a time, and at most maxQueued more wait for a slot. Further tasks are rejected at
+ * once with a RejectedExecutionException, which the web application answers with 503, instead of
+ * piling up in memory.
+ *
+ * Works with any underlying executor, including one starting a virtual thread per task.
+ *
+ * Thread-safe.
+ */
+final class Bulkhead implements Executor {
+
+	/** Name of the stage, for messages. */
+	private final String name;
+
+	/** The executor running the tasks. */
+	private final Executor executor;
+
+	/** Maximum number of running tasks. */
+	private final int maxConcurrent;
+
+	/** Maximum number of running and waiting tasks. */
+	private final int maxTasks;
+
+	/** Tasks waiting for a slot. */
+	private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<Runnable>();
+
+	/** Number of running and waiting tasks. */
+	private final AtomicInteger tasks = new AtomicInteger();
+
+	/** Number of running tasks. */
+	private final AtomicInteger running = new AtomicInteger();
+
+	/** Number of rejected tasks. */
+	private final AtomicLong rejected = new AtomicLong();
+
+	/** A logger instance. */
+	private static final Logger logger = Logger.getLogger(Bulkhead.class.getName());
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name - name of the stage, e.g. 'fetch'.
+	 * @param executor - the executor running the tasks.
+	 * @param maxConcurrent - maximum number of running tasks.
+	 * @param maxQueued - maximum number of tasks waiting for a slot.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	Bulkhead(String name, Executor executor, int maxConcurrent, int maxQueued) {
+		// Parameter check.
+		if (name == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - name is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  name);
+		}
+		if (executor == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - executor is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  executor);
+		}
+		if (maxConcurrent < 1) {
+			logger.log(Level.SEVERE, "Invalid parameter - maxConcurrent is less than 1: " + maxConcurrent);
+			throw new IllegalArgumentException("Invalid Parameter: " +  maxConcurrent);
+		}
+		if (maxQueued < 0) {
+			logger.log(Level.SEVERE, "Invalid parameter - maxQueued is negative: " + maxQueued);
+			throw new IllegalArgumentException("Invalid Parameter: " +  maxQueued);
+		}
+
+		this.name = name;
+		this.executor = executor;
+		this.maxConcurrent = maxConcurrent;
+		this.maxTasks = maxConcurrent + maxQueued;
+	}
+
+	/**
+	 * Runs a task when a slot is free.
+	 *
+	 * @param task - the task.
+	 * @throws RejectedExecutionException - if all slots and queue places are taken.
+	 */
+	@Override
+	public void execute(Runnable task) {
+		if (tasks.incrementAndGet() > maxTasks) {
+			tasks.decrementAndGet();
+			throw reject();
+		}
+		waiting.add(task);
+		drain();
+	}
+
+	/**
+	 * Checks that a task could be accepted now, e.g. before starting a request that will need
+	 * this stage later.
+	 *
+	 * @throws RejectedExecutionException - if all slots and queue places are taken.
+	 */
+	void checkCapacity() {
+		if (tasks.get() >= maxTasks) {
+			throw reject();
+		}
+	}
+
+	/**
+	 * Starts waiting tasks while slots are free.
+	 */
+	private void drain() {
+		while (!waiting.isEmpty()) {
+			int current = running.get();
+			if (current >= maxConcurrent) {
+				// A running task drains the queue when it finishes.
+				return;
+			}
+			if (!running.compareAndSet(current, current + 1)) {
+				continue;
+			}
+			Runnable task = waiting.poll();
+			if (task == null) {
+				running.decrementAndGet();
+				continue;
+			}
+			try {
+				executor.execute(() -> {
+					try {
+						task.run();
+					}
+					finally {
+						finish();
+					}
+				});
+			}
+			catch (RejectedExecutionException e) {
+				// The executor was shut down.
+				finish();
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Frees the slot of a finished task and starts the next waiting one.
+	 */
+	private void finish() {
+		running.decrementAndGet();
+		tasks.decrementAndGet();
+		drain();
+	}
+
+	/**
+	 * Counts and creates a rejection.
+	 *
+	 * @return the exception to throw.
+	 */
+	private RejectedExecutionException reject() {
+		rejected.incrementAndGet();
+		return new RejectedExecutionException("The " + name + " stage is overloaded");
+	}
+
+	/**
+	 * @return number of running tasks.
+	 */
+	int getRunning() {
+		return running.get();
+	}
+
+	/**
+	 * @return number of tasks waiting for a slot.
+	 */
+	int getQueued() {
+		return Math.max(0, tasks.get() - running.get());
+	}
+
+	/**
+	 * @return number of rejected tasks.
+	 */
+	long getRejected() {
+		return rejected.get();
+	}
+}
@@ -0,0 +1,141 @@
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Circuit breaker of one upstream host. After a number of consecutive failures the circuit
+ * opens, and requests to the host are refused at once instead of waiting for timeouts. After a
+ * while a single trial request is let through (half open): if it succeeds, the circuit closes
+ * again, otherwise it stays open for another while.
+ *
+ * Thread-safe.
+ */
+final class CircuitBreaker {
+
+	/** States of a circuit. */
+	enum State {
+		/** Requests pass. */
+		CLOSED,
+		/** Requests are refused. */
+		OPEN,
+		/** One trial request may pass. */
+		HALF_OPEN
+	}
+
+	/** Number of consecutive failures that open the circuit. */
+	private final int failureThreshold;
+
+	/** Time the circuit stays open before a trial request, in milliseconds. */
+	private final long openMillis;
+
+	/** Current state. */
+	private State state = State.CLOSED;
+
+	/** Number of consecutive failures while closed. */
+	private int failures;
+
+	/** Time the circuit was opened, in milliseconds since the epoch. */
+	private long openedAt;
+
+	/** Whether the trial request of the half open circuit has been let through. */
+	private boolean trialStarted;
+
+	/** A logger instance. */
+	private static final Logger logger = Logger.getLogger(CircuitBreaker.class.getName());
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param failureThreshold - number of consecutive failures that open the circuit.
+	 * @param openMillis - time the circuit stays open before a trial request, in milliseconds.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	CircuitBreaker(int failureThreshold, long openMillis) {
+		// Parameter check.
+		if (failureThreshold < 1) {
+			logger.log(Level.SEVERE, "Invalid parameter - failureThreshold is less than 1: " + failureThreshold);
+			throw new IllegalArgumentException("Invalid Parameter: " +  failureThreshold);
+		}
+		if (openMillis < 0) {
+			logger.log(Level.SEVERE, "Invalid parameter - openMillis is negative: " + openMillis);
+			throw new IllegalArgumentException("Invalid Parameter: " +  openMillis);
+		}
+
+		this.failureThreshold = failureThreshold;
+		this.openMillis = openMillis;
+	}
+
+	/**
+	 * Tells whether the circuit is open and requests are still refused, without starting a
+	 * trial request.
+	 *
+	 * @return true if allowRequest() would return false for a while yet.
+	 */
+	synchronized boolean isOpen() {
+		return state == State.OPEN && System.currentTimeMillis() - openedAt < openMillis;
+	}
+
+	/**
+	 * Asks whether a request may be sent now. A request that is let through must be followed
+	 * by recordSuccess() or recordFailure().
+	 *
+	 * @return true if the request may be sent.
+	 */
+	synchronized boolean allowRequest() {
+		if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+			state = State.HALF_OPEN;
+			trialStarted = false;
+		}
+		if (state == State.HALF_OPEN) {
+			if (trialStarted) {
+				return false;
+			}
+			trialStarted = true;
+			return true;
+		}
+		return state == State.CLOSED;
+	}
+
+	/**
+	 * Records a successful request; the circuit closes.
+	 */
+	synchronized void recordSuccess() {
+		state = State.CLOSED;
+		failures = 0;
+	}
+
+	/**
+	 * Records a failed request. A failed trial request, or too many consecutive failures, open
+	 * the circuit.
+	 */
+	synchronized void recordFailure() {
+		if (state == State.HALF_OPEN || ++failures >= failureThreshold) {
+			state = State.OPEN;
+			openedAt = System.currentTimeMillis();
+			failures = 0;
+		}
+	}
+
+	/**
+	 * @return the current state.
+	 */
+	synchronized State getState() {
+		return state;
+	}
+}
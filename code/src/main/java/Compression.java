@@ -0,0 +1,97 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Gzip compression of text held in memory, used by the caches and the article store.
+ */
+final class Compression {
+
+	/** The encoding schema. */
+	private static final Charset ENCODING = Charset.forName("UTF-8");
+
+	/** Size of the buffer used for decompression. */
+	private static final int BUFFER_SIZE = 8192;
+
+
+	/**
+	 * No instances.
+	 */
+	private Compression() {
+	}
+
+	/**
+	 * Compresses text with gzip.
+	 *
+	 * @param text - the text.
+	 * @return the compressed UTF-8 bytes of the text.
+	 */
+	static byte[] compress(String text) {
+		return compress(text.getBytes(ENCODING));
+	}
+
+	/**
+	 * Compresses bytes with gzip.
+	 *
+	 * @param data - the bytes.
+	 * @return the compressed bytes.
+	 */
+	static byte[] compress(byte[] data) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4 + 64);
+			OutputStream out = new GZIPOutputStream(bytes);
+			out.write(data);
+			out.close();
+			return bytes.toByteArray();
+		}
+		catch (IOException e) {
+			// Cannot happen for in-memory streams.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Decompresses text compressed with compress().
+	 *
+	 * @param compressed - the compressed bytes.
+	 * @return the text.
+	 * @throws IllegalStateException - if the bytes are not valid gzip data.
+	 */
+	static String decompress(byte[] compressed) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(compressed.length * 4);
+			InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed), BUFFER_SIZE);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				bytes.write(buffer, 0, read);
+			}
+			in.close();
+			return new String(bytes.toByteArray(), ENCODING);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Invalid compressed data", e);
+		}
+	}
+}
@@ -0,0 +1,124 @@
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Access to the tunable settings of the application. A setting with the key 'lookup.index' is
+ * read from the system property 'latwiki.lookup.index' and, if that is not set, from the
+ * environment variable 'LATWIKI_LOOKUP_INDEX'. If neither exists, the given default is used.
+ */
+final class Configuration {
+
+	/** Prefix of the names of the system properties. */
+	private static final String PREFIX_PROPERTY = "latwiki.";
+
+	/** Prefix of the names of the environment variables. */
+	private static final String PREFIX_ENVIRONMENT = "LATWIKI_";
+
+	/** A logger instance. */
+	private static final Logger logger = Logger.getLogger(Configuration.class.getName());
+
+
+	/**
+	 * No instances.
+	 */
+	private Configuration() {
+	}
+
+	/**
+	 * Reads a setting as a String.
+	 *
+	 * @param key - key of the setting, e.g. 'lookup.index'.
+	 * @param defaultValue - value to use if the setting does not exist.
+	 * @return the value of the setting.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	static String getString(String key, String defaultValue) {
+		// Parameter check.
+		if (key == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - key is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  key);
+		}
+		if (key.isEmpty()) {
+			logger.log(Level.SEVERE, "Invalid parameter - key is empty.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  key);
+		}
+
+		String value = System.getProperty(PREFIX_PROPERTY + key);
+		if (value == null) {
+			value = System.getenv(PREFIX_ENVIRONMENT + key.toUpperCase().replace('.', '_'));
+		}
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		return value.trim();
+	}
+
+	/**
+	 * Reads a setting as a boolean.
+	 *
+	 * @param key - key of the setting.
+	 * @param defaultValue - value to use if the setting does not exist.
+	 * @return the value of the setting.
+	 */
+	static boolean getBoolean(String key, boolean defaultValue) {
+		return Boolean.parseBoolean(getString(key, String.valueOf(defaultValue)));
+	}
+
+	/**
+	 * Reads a setting as an int. Falls back to the default if the value is not a number.
+	 *
+	 * @param key - key of the setting.
+	 * @param defaultValue - value to use if the setting does not exist.
+	 * @return the value of the setting.
+	 */
+	static int getInt(String key, int defaultValue) {
+		String value = getString(key, null);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value);
+		}
+		catch (NumberFormatException e) {
+			logger.log(Level.WARNING, "Setting " + key + " is not a number: " + value);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Reads a setting as a long. Falls back to the default if the value is not a number.
+	 *
+	 * @param key - key of the setting.
+	 * @param defaultValue - value to use if the setting does not exist.
+	 * @return the value of the setting.
+	 */
+	static long getLong(String key, long defaultValue) {
+		String value = getString(key, null);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value);
+		}
+		catch (NumberFormatException e) {
+			logger.log(Level.WARNING, "Setting " + key + " is not a number: " + value);
+			return defaultValue;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+import java.util.Locale;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Content negotiation of the encoding of responses (RFC 7231, section 5.3.4). Only gzip is
+ * offered besides the identity encoding.
+ */
+final class ContentEncoding {
+
+	/**
+	 * No instances.
+	 */
+	private ContentEncoding() {
+	}
+
+	/**
+	 * Tells whether a client accepts gzip compressed responses.
+	 *
+	 * @param acceptEncoding - value of the Accept-Encoding header of the request, or null.
+	 * @return true if gzip (or x-gzip, or any coding via '*') is listed with a quality above 0.
+	 */
+	static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		double gzip = -1;
+		double any = -1;
+		for (String coding : acceptEncoding.split(",")) {
+			String[] parts = coding.split(";");
+			String name = parts[0].trim().toLowerCase(Locale.ROOT);
+			double quality = quality(parts);
+			if (name.equals("gzip") || name.equals("x-gzip")) {
+				gzip = Math.max(gzip, quality);
+			}
+			else if (name.equals("*")) {
+				any = quality;
+			}
+		}
+		return gzip >= 0 ? gzip > 0 : any > 0;
+	}
+
+	/**
+	 * Extracts the quality value of a coding.
+	 *
+	 * @param parts - the coding and its parameters.
+	 * @return the quality, 1 if missing, 0 if malformed.
+	 */
+	private static double quality(String[] parts) {
+		for (int i=1; i<parts.length; i++) {
+			String parameter = parts[i].trim();
+			if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+				try {
+					return Double.parseDouble(parameter.substring(2).trim());
+				}
+				catch (NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+		return 1;
+	}
+}
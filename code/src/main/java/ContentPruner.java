@@ -0,0 +1,148 @@
+import java.util.ArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.parser.Tag;
+import org.jsoup.select.Elements;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Pruning of a Wikipedia page down to the article, before the words are transformed. Of the
+ * body only the heading and the article text (#mw-content-text) are kept, inside the #content
+ * element main.js appends to; navigation, sidebars and footer are dropped. Of the head only the
+ * title, the charset and the style sheets are kept. Within the article, noise like reference
+ * lists, navboxes and scripts is removed by a list of CSS selectors.
+ *
+ * A page without #mw-content-text is not a rendered article; only the noise is removed from it.
+ *
+ * Thread-safe.
+ */
+final class ContentPruner {
+
+	/** Default selectors of the noise within the article. */
+	static final String DEFAULT_NOISE = "script, style, noscript, link, .navbox, .vertical-navbox, "
+			+ ".reflist, .references, .mw-references-wrap, .mw-editsection, #toc, .toc, .noprint, "
+			+ ".metadata, .sistersitebox, .mw-empty-elt";
+
+	/** Selector of the elements of the head to keep. */
+	private static final String HEAD_KEEP = "title, meta[charset], link[rel=stylesheet]";
+
+	/** Id of the article text. */
+	private static final String ID_CONTENT_TEXT = "mw-content-text";
+
+	/** Id of the element wrapping heading and article text. */
+	private static final String ID_CONTENT = "content";
+
+	/** Id of the heading. */
+	private static final String ID_HEADING = "firstHeading";
+
+	/** Name of a div tag. */
+	private static final String TAG_DIV = "div";
+
+	/** Selectors of the noise within the article, or null to keep everything. */
+	private final String noise;
+
+	/** A logger instance. */
+	private static final Logger logger = Logger.getLogger(ContentPruner.class.getName());
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param noise - comma separated CSS selectors of the elements to remove from the article;
+	 * an empty string removes nothing.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	ContentPruner(String noise) {
+		// Parameter check.
+		if (noise == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - noise is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  noise);
+		}
+
+		this.noise = noise.trim().isEmpty() ? null : noise;
+	}
+
+	/**
+	 * Prunes a page in place.
+	 *
+	 * @param doc - a parsed Wikipedia page.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	void prune(Document doc) {
+		// Parameter check.
+		if (doc == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - doc is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  doc);
+		}
+
+		Element contentText = doc.getElementById(ID_CONTENT_TEXT);
+		if (contentText != null) {
+			pruneHead(doc.head());
+			pruneBody(doc, contentText);
+		}
+		if (noise != null) {
+			Element root = contentText != null ? contentText : doc.body();
+			root.select(noise).remove();
+		}
+	}
+
+	/**
+	 * Removes everything but the title, the charset and the style sheets from the head.
+	 *
+	 * @param head - the head of the page.
+	 */
+	private void pruneHead(Element head) {
+		Elements keep = head.select(HEAD_KEEP);
+		for (Node node : new ArrayList<Node>(head.childNodes())) {
+			if (!(node instanceof Element && keep.contains(node))) {
+				node.remove();
+			}
+		}
+	}
+
+	/**
+	 * Replaces the body by the #content element with the heading and the article text.
+	 *
+	 * @param doc - the page.
+	 * @param contentText - the article text.
+	 */
+	private void pruneBody(Document doc, Element contentText) {
+		Element body = doc.body();
+		Element heading = doc.getElementById(ID_HEADING);
+		Element content = doc.getElementById(ID_CONTENT);
+		if (content == null) {
+			content = new Element(Tag.valueOf(TAG_DIV), "").attr("id", ID_CONTENT);
+		}
+		contentText.remove();
+		if (heading != null) {
+			heading.remove();
+		}
+		content.remove();
+		content.empty();
+		if (heading != null) {
+			content.appendChild(heading);
+		}
+		content.appendChild(contentText);
+		body.empty();
+		body.appendChild(content);
+	}
+}
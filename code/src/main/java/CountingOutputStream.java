@@ -0,0 +1,58 @@
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Output stream counting the bytes written through it to another stream.
+ */
+final class CountingOutputStream extends FilterOutputStream {
+
+	/** Number of bytes written. */
+	private long count;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param out - the stream written to.
+	 */
+	CountingOutputStream(OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		out.write(b);
+		count++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		// FilterOutputStream would write byte by byte.
+		out.write(b, off, len);
+		count += len;
+	}
+
+	/**
+	 * @return number of bytes written.
+	 */
+	long getCount() {
+		return count;
+	}
+}
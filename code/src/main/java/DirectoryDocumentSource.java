@@ -0,0 +1,94 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Replays Wikipedia pages saved in a directory, e.g. by a RecordingDocumentSource, without any
+ * network access. A page that is not in the directory cannot be loaded.
+ *
+ * The file of a page is named after its URL without protocol, URL-encoded and with the suffix
+ * '.html', e.g. 'de.wikipedia.org%2Fwiki%2FHund.html' for 'https://de.wikipedia.org/wiki/Hund'.
+ */
+final class DirectoryDocumentSource implements DocumentSource {
+
+	/** Protocol part of a normalized URL. */
+	private static final String PROTOCOL_EXT = "https://";
+
+	/** Suffix of the file names. */
+	private static final String SUFFIX = ".html";
+
+	/** The encoding schema. */
+	private static final String ENCODING = "UTF-8";
+
+	/** Directory of the saved pages. */
+	private final File directory;
+
+	/** A logger instance. */
+	private static final Logger logger = Logger.getLogger(DirectoryDocumentSource.class.getName());
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param directory - directory of the saved pages.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	DirectoryDocumentSource(File directory) {
+		// Parameter check.
+		if (directory == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - directory is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  directory);
+		}
+
+		this.directory = directory;
+	}
+
+	@Override
+	public String load(String url) throws IOException {
+		File file = file(directory, url);
+		if (!file.isFile()) {
+			throw new FileNotFoundException("No saved page for " + url + " (" + file + ")");
+		}
+		return new String(Files.readAllBytes(file.toPath()), Charset.forName(ENCODING));
+	}
+
+	/**
+	 * Returns the file of a page.
+	 *
+	 * @param directory - directory of the saved pages.
+	 * @param url - the normalized URL of the page.
+	 * @return the file of the page.
+	 */
+	static File file(File directory, String url) {
+		String name = url.startsWith(PROTOCOL_EXT) ? url.substring(PROTOCOL_EXT.length()) : url;
+		try {
+			return new File(directory, URLEncoder.encode(name, ENCODING) + SUFFIX);
+		}
+		catch (UnsupportedEncodingException e) {
+			// UTF-8 is always supported.
+			throw new IllegalStateException(e);
+		}
+	}
+}
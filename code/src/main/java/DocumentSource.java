@@ -0,0 +1,37 @@
+import java.io.IOException;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Source of the HTML of Wikipedia pages below the caches of the PageFetcher. Implementations
+ * download the pages (HttpDocumentSource), replay pages saved in a directory without network
+ * access (DirectoryDocumentSource), or save the pages of another source to a directory
+ * (RecordingDocumentSource).
+ *
+ * Implementations must be thread-safe.
+ */
+interface DocumentSource {
+
+	/**
+	 * Loads the HTML of a page.
+	 *
+	 * @param url - the normalized URL of the page.
+	 * @return the HTML of the page.
+	 * @throws IOException - if the page cannot be loaded.
+	 */
+	String load(String url) throws IOException;
+}
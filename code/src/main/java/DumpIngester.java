@@ -0,0 +1,643 @@
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Ingests a MediaWiki 'pages-articles' XML dump of one supported language into the article
+ * store, so that the articles can be served without any network access (setting
+ * 'document.source=offline', see PageFetcher).
+ *
+ * The dump is read with a streaming StAX parser, one page at a time. The articles are collected
+ * in batches, which are converted to HTML by the WikitextConverter and stored on all cores. At
+ * most two batches per thread are in memory at a time, so the memory needed does not depend on
+ * the size of the dump. Only articles (namespace 0) are stored; redirects are skipped.
+ *
+ * The number of pages read is written to a checkpoint file whenever a batch and all batches
+ * before it are stored. After an interruption, ingestion resumes after the last checkpoint: the
+ * pages before it are read again, but neither converted nor stored. A batch of which an article
+ * could not be written to the article store holds the checkpoint back, so that the next run
+ * stores it again; articles that cannot be converted do not.
+ *
+ * The article store cannot be opened while another process, e.g. the web application, has it
+ * open (see ArticleStore).
+ *
+ * Usage: java DumpIngester <dump> <language>, where <dump> is a .xml, .xml.gz or .xml.bz2 file,
+ * or '-' for standard input. The JDK has no bzip2 decoder, so .bz2 files are decompressed by an
+ * external program, which also runs on a core of its own.
+ *
+ * Settings:
+ * - dump.threads - threads converting and storing articles, default the number of CPUs.
+ * - dump.batchSize - articles per batch, default 256.
+ * - dump.checkpoint - checkpoint file, default the dump file name with '.checkpoint' appended.
+ * - dump.bzip2 - program decompressing .bz2 files to standard output with '-dc', default
+ *   'bzip2'; 'lbzip2' or 'pbzip2' decompress on several cores.
+ * - article.store.* - the article store, see PageFetcher. article.store.maxBytes must be large
+ *   enough for the whole dump, or the oldest articles are evicted.
+ */
+final class DumpIngester {
+
+	/** Default number of articles per batch. */
+	private static final int DEFAULT_BATCH_SIZE = 256;
+
+	/** Batches in memory per thread, being stored or waiting. */
+	private static final int BATCHES_PER_THREAD = 2;
+
+	/** Property of the JDK StAX parser limiting the size of all entity references, 0 is unlimited. */
+	private static final String TOTAL_ENTITY_SIZE_LIMIT = "http://www.oracle.com/xml/jaxp/properties/totalEntitySizeLimit";
+
+	/** Interval of the progress messages in milliseconds. */
+	private static final long PROGRESS_INTERVAL_MILLIS = 10000;
+
+	/** Size of the read buffer. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** Namespace of articles. */
+	private static final String ARTICLE_NAMESPACE = "0";
+
+	/** Suffix of the default checkpoint file. */
+	private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+	/** Name of the dump for reading standard input. */
+	private static final String STANDARD_INPUT = "-";
+
+	/** Encoding of the dump and the checkpoint file. */
+	private static final Charset ENCODING = Charset.forName("UTF-8");
+
+	/** The article store. */
+	private final ArticleStore store;
+
+	/** Code of the language of the dump. */
+	private final String language;
+
+	/** Number of threads converting and storing articles. */
+	private final int threads;
+
+	/** Number of articles per batch. */
+	private final int batchSize;
+
+	/** Number of articles stored. */
+	private final AtomicLong stored = new AtomicLong();
+
+	/** Number of pages skipped, e.g. redirects, pages of other namespaces and articles too large to store. */
+	private final AtomicLong skipped = new AtomicLong();
+
+	/** Number of articles that could not be converted or stored. */
+	private final AtomicLong failed = new AtomicLong();
+
+	/** A logger instance. */
+	private static final Logger logger = Logger.getLogger(DumpIngester.class.getName());
+
+
+	/**
+	 * An article of the dump.
+	 */
+	private static final class Article {
+
+		/** Title of the article. */
+		private final String title;
+
+		/** Revision id of the article. */
+		private final long revision;
+
+		/** Wikitext of the article. */
+		private final String text;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param title - title of the article.
+		 * @param revision - revision id of the article, or RevisionId.UNKNOWN.
+		 * @param text - wikitext of the article.
+		 */
+		private Article(String title, long revision, String text) {
+			this.title = title;
+			this.revision = revision;
+			this.text = text;
+		}
+	}
+
+	/**
+	 * Tracks the stored batches and writes the checkpoint once all batches up to one are stored.
+	 * Batches finish in any order.
+	 */
+	private static final class Checkpoint {
+
+		/** The checkpoint file, or null for none. */
+		private final File file;
+
+		/** Number of the next batch the checkpoint waits for. */
+		private long nextBatch;
+
+		/** Pages read up to the end of each finished batch after nextBatch, by batch number. */
+		private final TreeMap<Long, Long> finished = new TreeMap<Long, Long>();
+
+		/** Number of pages read up to the end of the last batch in the checkpoint. */
+		private long pages;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param file - the checkpoint file, or null for none.
+		 * @param pages - number of pages in the checkpoint so far.
+		 */
+		private Checkpoint(File file, long pages) {
+			this.file = file;
+			this.pages = pages;
+		}
+
+		/**
+		 * Records a stored batch, and writes the checkpoint if it moves on.
+		 *
+		 * @param batch - number of the batch.
+		 * @param pagesRead - number of pages read up to the end of the batch.
+		 */
+		private synchronized void finish(long batch, long pagesRead) {
+			finished.put(batch, pagesRead);
+			long before = pages;
+			Long end;
+			while ((end = finished.remove(nextBatch)) != null) {
+				pages = end;
+				nextBatch++;
+			}
+			if (pages != before) {
+				write(pages);
+			}
+		}
+
+		/**
+		 * @return number of pages in the checkpoint.
+		 */
+		private synchronized long getPages() {
+			return pages;
+		}
+
+		/**
+		 * Replaces the checkpoint file. Failures are logged; the ingestion just resumes earlier then.
+		 *
+		 * @param pagesRead - number of pages read and stored.
+		 */
+		private void write(long pagesRead) {
+			if (file == null) {
+				return;
+			}
+			File temporary = new File(file.getPath() + ".tmp");
+			try {
+				Files.write(temporary.toPath(), String.valueOf(pagesRead).getBytes(ENCODING));
+				Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (IOException e) {
+				logger.log(Level.WARNING, "Could not write checkpoint " + file, e);
+			}
+		}
+	}
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param store - the article store.
+	 * @param language - code of the language of the dump.
+	 * @param threads - number of threads converting and storing articles.
+	 * @param batchSize - number of articles per batch.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	DumpIngester(ArticleStore store, String language, int threads, int batchSize) {
+		// Parameter check.
+		if (store == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - store is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  store);
+		}
+		if (language == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - language is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  language);
+		}
+		if (threads < 1) {
+			logger.log(Level.SEVERE, "Invalid parameter - threads is less than 1: " + threads);
+			throw new IllegalArgumentException("Invalid Parameter: " +  threads);
+		}
+		if (batchSize < 1) {
+			logger.log(Level.SEVERE, "Invalid parameter - batchSize is less than 1: " + batchSize);
+			throw new IllegalArgumentException("Invalid Parameter: " +  batchSize);
+		}
+
+		this.store = store;
+		this.language = language;
+		this.threads = threads;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Ingests a dump, resuming after the checkpoint if there is one.
+	 *
+	 * @param in - the uncompressed XML of the dump.
+	 * @param checkpointFile - the checkpoint file, or null to start at the beginning and not
+	 * write a checkpoint.
+	 * @return number of pages read and stored, the final checkpoint.
+	 * @throws IOException - if the dump cannot be read; the checkpoint covers the pages stored.
+	 */
+	long ingest(InputStream in, File checkpointFile) throws IOException {
+		long resumeAt = readCheckpoint(checkpointFile);
+		if (resumeAt > 0) {
+			logger.log(Level.INFO, "Resuming after " + resumeAt + " pages.");
+		}
+		Checkpoint checkpoint = new Checkpoint(checkpointFile, resumeAt);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		Semaphore slots = new Semaphore(threads * BATCHES_PER_THREAD);
+		long start = System.currentTimeMillis();
+		long lastProgress = start;
+		long storedBefore = stored.get();
+		long pages = 0;
+		long batches = 0;
+		try {
+			XMLStreamReader reader = createFactory().createXMLStreamReader(in, ENCODING.name());
+			List<Article> batch = new ArrayList<Article>(batchSize);
+			while (nextPage(reader)) {
+				Article article = readPage(reader, pages >= resumeAt);
+				pages++;
+				if (article != null) {
+					batch.add(article);
+				}
+				else if (pages > resumeAt) {
+					skipped.incrementAndGet();
+				}
+				if (batch.size() == batchSize) {
+					submit(pool, slots, checkpoint, batch, batches++, pages);
+					batch = new ArrayList<Article>(batchSize);
+				}
+				long now = System.currentTimeMillis();
+				if (now - lastProgress >= PROGRESS_INTERVAL_MILLIS) {
+					lastProgress = now;
+					logProgress(pages, stored.get() - storedBefore, now - start);
+				}
+			}
+			submit(pool, slots, checkpoint, batch, batches, pages);
+			reader.close();
+		}
+		catch (XMLStreamException e) {
+			throw new IOException("Could not read the dump after " + pages + " pages", e);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted after " + pages + " pages", e);
+		}
+		finally {
+			pool.shutdown();
+			try {
+				pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		logProgress(pages, stored.get() - storedBefore, System.currentTimeMillis() - start);
+		return checkpoint.getPages();
+	}
+
+	/**
+	 * Hands a batch to the pool, waiting while too many batches are in memory. An empty batch
+	 * only moves the checkpoint on.
+	 *
+	 * @param pool - the threads converting and storing articles.
+	 * @param slots - permits of the batches in memory.
+	 * @param checkpoint - the checkpoint.
+	 * @param batch - the articles.
+	 * @param number - number of the batch.
+	 * @param pagesRead - number of pages read up to the end of the batch.
+	 * @throws InterruptedException - if interrupted while waiting.
+	 */
+	private void submit(ExecutorService pool, Semaphore slots, Checkpoint checkpoint, List<Article> batch, long number,
+			long pagesRead) throws InterruptedException {
+		slots.acquire();
+		pool.execute(() -> {
+			try {
+				boolean complete = true;
+				for (Article article : batch) {
+					complete &= store(article);
+				}
+				if (complete) {
+					checkpoint.finish(number, pagesRead);
+				}
+				else {
+					logger.log(Level.WARNING, "Batch " + number + " is incomplete; the checkpoint stays before it.");
+				}
+			}
+			finally {
+				slots.release();
+			}
+		});
+	}
+
+	/**
+	 * Converts an article and puts it into the article store.
+	 *
+	 * @param article - the article.
+	 * @return false if the article could not be written to the store, and must be stored again.
+	 */
+	private boolean store(Article article) {
+		String html;
+		try {
+			html = WikitextConverter.toHtml(language, article.title, article.revision, article.text);
+		}
+		catch (RuntimeException e) {
+			// Converting it again would fail again.
+			failed.incrementAndGet();
+			logger.log(Level.WARNING, "Could not convert " + article.title, e);
+			return true;
+		}
+		try {
+			if (store.put(articleUrl(language, article.title), html, System.currentTimeMillis())) {
+				stored.incrementAndGet();
+			}
+			else {
+				skipped.incrementAndGet();
+				logger.log(Level.WARNING, "Article too large for the article store: " + article.title);
+			}
+			return true;
+		}
+		catch (IOException e) {
+			failed.incrementAndGet();
+			logger.log(Level.WARNING, "Could not store " + article.title, e);
+			return false;
+		}
+	}
+
+	/**
+	 * Moves the reader to the start of the next page.
+	 *
+	 * @param reader - the reader.
+	 * @return false at the end of the dump.
+	 * @throws XMLStreamException - if the dump cannot be read.
+	 */
+	private static boolean nextPage(XMLStreamReader reader) throws XMLStreamException {
+		while (reader.hasNext()) {
+			if (reader.next() == XMLStreamConstants.START_ELEMENT && "page".equals(reader.getLocalName())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Reads a page up to its end.
+	 *
+	 * @param reader - the reader, at the start of the page.
+	 * @param wanted - false to skip the page, e.g. before the checkpoint.
+	 * @return the article, or null if the page is skipped, is no article or a redirect.
+	 * @throws XMLStreamException - if the dump cannot be read.
+	 */
+	private static Article readPage(XMLStreamReader reader, boolean wanted) throws XMLStreamException {
+		String title = null;
+		String namespace = null;
+		boolean redirect = false;
+		long revision = RevisionId.UNKNOWN;
+		String text = null;
+		boolean inRevision = false;
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+				if ("revision".equals(reader.getLocalName())) {
+					inRevision = false;
+				}
+				continue;
+			}
+			if (event != XMLStreamConstants.START_ELEMENT) {
+				continue;
+			}
+			String name = reader.getLocalName();
+			if (!wanted) {
+				depth++;
+			}
+			else if (depth == 1 && "title".equals(name)) {
+				title = reader.getElementText();
+			}
+			else if (depth == 1 && "ns".equals(name)) {
+				namespace = reader.getElementText().trim();
+			}
+			else if (depth == 1 && "redirect".equals(name)) {
+				redirect = true;
+				depth++;
+			}
+			else if (depth == 1 && "revision".equals(name)) {
+				inRevision = true;
+				depth++;
+			}
+			else if (inRevision && depth == 2 && "id".equals(name) && revision == RevisionId.UNKNOWN) {
+				revision = parseRevision(reader.getElementText());
+			}
+			else if (inRevision && depth == 2 && "text".equals(name)) {
+				// Skip the text of pages that are not stored anyway.
+				if (!redirect && ARTICLE_NAMESPACE.equals(namespace)) {
+					text = reader.getElementText();
+				}
+				else {
+					depth++;
+				}
+			}
+			else {
+				depth++;
+			}
+		}
+		if (!wanted || redirect || title == null || text == null) {
+			return null;
+		}
+		return new Article(title, revision, text);
+	}
+
+	/**
+	 * Parses a revision id.
+	 *
+	 * @param id - the text of the id element.
+	 * @return the revision id, or RevisionId.UNKNOWN if it is no number.
+	 */
+	private static long parseRevision(String id) {
+		try {
+			return Long.parseLong(id.trim());
+		}
+		catch (NumberFormatException e) {
+			return RevisionId.UNKNOWN;
+		}
+	}
+
+	/**
+	 * Creates the StAX factory. External entities are not resolved.
+	 *
+	 * @return the factory.
+	 */
+	private static XMLInputFactory createFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		// Dumps have far more character references (&amp; etc.) than the JDK parser allows by default.
+		if (factory.isPropertySupported(TOTAL_ENTITY_SIZE_LIMIT)) {
+			factory.setProperty(TOTAL_ENTITY_SIZE_LIMIT, "0");
+		}
+		return factory;
+	}
+
+	/**
+	 * Reads the checkpoint file.
+	 *
+	 * @param file - the checkpoint file, or null.
+	 * @return number of pages in the checkpoint, 0 if there is none.
+	 * @throws IOException - if the checkpoint exists but cannot be read.
+	 */
+	private static long readCheckpoint(File file) throws IOException {
+		if (file == null || !file.isFile()) {
+			return 0;
+		}
+		String content = new String(Files.readAllBytes(file.toPath()), ENCODING).trim();
+		try {
+			return Long.parseLong(content);
+		}
+		catch (NumberFormatException e) {
+			throw new IOException("Invalid checkpoint " + file + ": " + content, e);
+		}
+	}
+
+	/**
+	 * Logs the progress of the ingestion.
+	 *
+	 * @param pages - number of pages read.
+	 * @param articles - number of articles stored in this run.
+	 * @param millis - duration of this run in milliseconds.
+	 */
+	private void logProgress(long pages, long articles, long millis) {
+		double perSecond = millis > 0 ? articles * 1000.0 / millis : 0;
+		logger.log(Level.INFO, String.format("%d pages read, %d articles stored (%.1f articles/s), %d skipped, %d failed",
+				pages, articles, perSecond, skipped.get(), failed.get()));
+	}
+
+	/**
+	 * Builds the URL of an article, as Wikipedia writes it, e.g.
+	 * 'https://de.wikipedia.org/wiki/Deutscher_Sch%C3%A4ferhund'. It is the key of the article
+	 * in the article store.
+	 *
+	 * @param language - code of the language.
+	 * @param title - title of the article.
+	 * @return the normalized URL.
+	 */
+	static String articleUrl(String language, String title) {
+		return UrlNormalizer.normalize("https://" + language + ".wikipedia.org" + WikitextConverter.ARTICLE_PATH
+				+ WikitextConverter.titleToPath(title));
+	}
+
+	/**
+	 * Opens a dump, decompressing it as its file name tells.
+	 *
+	 * @param path - path of the dump, or '-' for standard input.
+	 * @return the uncompressed XML.
+	 * @throws IOException - if the dump cannot be opened.
+	 */
+	static InputStream open(String path) throws IOException {
+		if (STANDARD_INPUT.equals(path)) {
+			return new BufferedInputStream(System.in, BUFFER_SIZE);
+		}
+		if (path.endsWith(".bz2")) {
+			Process process = new ProcessBuilder(Configuration.getString("dump.bzip2", "bzip2"), "-dc", path)
+					.redirectError(ProcessBuilder.Redirect.INHERIT).start();
+			process.getOutputStream().close();
+			return new BufferedInputStream(process.getInputStream(), BUFFER_SIZE);
+		}
+		InputStream in = new BufferedInputStream(new FileInputStream(path), BUFFER_SIZE);
+		return path.endsWith(".gz") ? new GZIPInputStream(in, BUFFER_SIZE) : in;
+	}
+
+	/**
+	 * Ingests a dump into the configured article store.
+	 *
+	 * @param args - path of the dump ('-' for standard input) and code of its language.
+	 * @throws IOException - if the dump or the lexicon cannot be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: java DumpIngester <dump.xml[.bz2|.gz]|-> <language>");
+			System.exit(2);
+		}
+		String path = args[0];
+		String language = args[1];
+		if (!LexiconRegistry.fromClasspath().isLanguageSupported(language)) {
+			System.err.println("Language not supported: " + language);
+			System.exit(2);
+		}
+		ArticleStore store = PageFetcher.openArticleStore(ArticleStore.NEVER_EXPIRES);
+		if (store == null) {
+			System.err.println("The article store is disabled or cannot be opened.");
+			System.exit(1);
+		}
+		String defaultCheckpoint = (STANDARD_INPUT.equals(path) ? "dump" : path) + CHECKPOINT_SUFFIX;
+		File checkpoint = new File(Configuration.getString("dump.checkpoint", defaultCheckpoint));
+		DumpIngester ingester = new DumpIngester(store, language,
+				Configuration.getInt("dump.threads", Runtime.getRuntime().availableProcessors()),
+				Configuration.getInt("dump.batchSize", DEFAULT_BATCH_SIZE));
+		try (InputStream in = open(path)) {
+			long pages = ingester.ingest(in, checkpoint);
+			logger.log(Level.INFO, "Done: " + pages + " pages, " + store.getSize() + " articles in the article store, "
+					+ store.getEvictions() + " segments evicted.");
+		}
+		finally {
+			store.close();
+		}
+	}
+
+	/**
+	 * @return number of articles stored.
+	 */
+	long getStored() {
+		return stored.get();
+	}
+
+	/**
+	 * @return number of pages skipped, e.g. redirects and pages of other namespaces.
+	 */
+	long getSkipped() {
+		return skipped.get();
+	}
+
+	/**
+	 * @return number of articles that could not be converted.
+	 */
+	long getFailed() {
+		return failed.get();
+	}
+}
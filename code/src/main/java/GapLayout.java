@@ -0,0 +1,126 @@
+import java.util.Arrays;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Positions of words within a text, each with a number. Used both for the tokens of a text and
+ * for the gaps to create in it; a gap is a word whose number identifies the correct option of
+ * its select element.
+ *
+ * The positions are kept in int arrays, which are only allocated when the first word is added
+ * and grow by doubling; a cleared layout keeps them for reuse. Words are expected to be added in
+ * ascending order of their position. Not thread-safe.
+ */
+final class GapLayout {
+
+	/** Number of a word that has not been assigned a number. */
+	static final int NO_NUMBER = -1;
+
+	/** Initial capacity of the arrays. */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** Shared array of an empty layout. */
+	private static final int[] EMPTY = new int[0];
+
+	/** Index of the first character of each word. */
+	private int[] starts = EMPTY;
+
+	/** Index after the last character of each word. */
+	private int[] ends = EMPTY;
+
+	/** Number of each word. */
+	private int[] numbers = EMPTY;
+
+	/** Number of words. */
+	private int size;
+
+
+	/**
+	 * Adds a word.
+	 *
+	 * @param start - index of the first character of the word.
+	 * @param end - index after the last character of the word.
+	 * @param number - number of the word, or NO_NUMBER.
+	 */
+	void add(int start, int end, int number) {
+		if (size == starts.length) {
+			int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			numbers = Arrays.copyOf(numbers, capacity);
+		}
+		starts[size] = start;
+		ends[size] = end;
+		numbers[size] = number;
+		size++;
+	}
+
+	/**
+	 * Removes all words, keeping the arrays for reuse.
+	 */
+	void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return the number of words.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if there are no words, false otherwise.
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @param i - index of a word.
+	 * @return index of the first character of the word.
+	 */
+	int start(int i) {
+		return starts[i];
+	}
+
+	/**
+	 * @param i - index of a word.
+	 * @return index after the last character of the word.
+	 */
+	int end(int i) {
+		return ends[i];
+	}
+
+	/**
+	 * @param i - index of a word.
+	 * @return the number of the word, or NO_NUMBER.
+	 */
+	int number(int i) {
+		return numbers[i];
+	}
+
+	/**
+	 * Assigns a number to a word.
+	 *
+	 * @param i - index of a word.
+	 * @param number - the new number.
+	 */
+	void setNumber(int i, int number) {
+		numbers[i] = number;
+	}
+}
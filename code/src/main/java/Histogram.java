@@ -0,0 +1,123 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Histogram of durations, or other values, with fixed buckets, exported in the Prometheus text
+ * format. Values are recorded as longs in a fraction of the exported unit, e.g. nanoseconds of
+ * exported seconds. Recording is lock-free: every bucket is a LongAdder, which spreads
+ * concurrent increments over striped cells instead of contending on one counter.
+ *
+ * Thread-safe.
+ */
+final class Histogram {
+
+	/** Upper bounds of the duration buckets in seconds, from 0.5 ms to 10 s. */
+	static final double[] SECONDS = {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+	/** Upper bounds of the buckets in the exported unit. */
+	private final double[] bounds;
+
+	/** Upper bounds of the buckets in the recorded unit. */
+	private final long[] recordedBounds;
+
+	/** Recorded values per exported unit. */
+	private final double scale;
+
+	/** Number of values per bucket (not cumulative); the last bucket is unbounded. */
+	private final LongAdder[] buckets;
+
+	/** Sum of the values in the recorded unit. */
+	private final LongAdder sum = new LongAdder();
+
+
+	/**
+	 * Constructor of a histogram of durations, recorded in nanoseconds and exported in seconds.
+	 */
+	Histogram() {
+		this(SECONDS, 1e9);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param bounds - ascending upper bounds of the buckets in the exported unit.
+	 * @param scale - recorded values per exported unit, e.g. 1e9 for nanoseconds of seconds.
+	 */
+	Histogram(double[] bounds, double scale) {
+		this.bounds = bounds.clone();
+		this.scale = scale;
+		recordedBounds = new long[bounds.length];
+		for (int i=0; i<bounds.length; i++) {
+			recordedBounds[i] = (long) (bounds[i] * scale);
+		}
+		buckets = new LongAdder[bounds.length + 1];
+		for (int i=0; i<buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Records a value, e.g. a duration.
+	 *
+	 * @param value - the value in the recorded unit, e.g. nanoseconds.
+	 */
+	void record(long value) {
+		int bucket = 0;
+		while (bucket < recordedBounds.length && value > recordedBounds[bucket]) {
+			bucket++;
+		}
+		buckets[bucket].increment();
+		sum.add(value);
+	}
+
+	/**
+	 * @return number of recorded values.
+	 */
+	long getCount() {
+		long count = 0;
+		for (LongAdder bucket : buckets) {
+			count += bucket.sum();
+		}
+		return count;
+	}
+
+	/**
+	 * Appends the bucket, sum and count lines of the histogram in the Prometheus text format.
+	 * The HELP and TYPE lines are the caller's.
+	 *
+	 * @param buf - the buffer to append to.
+	 * @param name - name of the metric.
+	 * @param labels - labels of the series without braces, e.g. 'stage="fetch"'.
+	 */
+	void writePrometheus(StringBuilder buf, String name, String labels) {
+		long cumulative = 0;
+		for (int i=0; i<buckets.length; i++) {
+			cumulative += buckets[i].sum();
+			buf.append(name).append("_bucket{").append(labels).append(",le=\"");
+			if (i < bounds.length) {
+				buf.append(bounds[i]);
+			}
+			else {
+				buf.append("+Inf");
+			}
+			buf.append("\"} ").append(cumulative).append('\n');
+		}
+		buf.append(name).append("_sum{").append(labels).append("} ").append(sum.sum() / scale).append('\n');
+		buf.append(name).append("_count{").append(labels).append("} ").append(cumulative).append('\n');
+	}
+}
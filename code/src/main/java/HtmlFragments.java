@@ -0,0 +1,162 @@
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Tag;
+import org.jsoup.select.Elements;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * The HTML markup created by the Parser. The fragments are assembled by plain concatenation
+ * instead of substituting placeholders with String.replaceAll(), which would compile a regular
+ * expression on every call. Gaps are also available as Jsoup elements, so they can be inserted
+ * into a document without running the HTML parser.
+ *
+ * Every select element starts with a disabled prompt option, which is selected until the user
+ * chooses an answer.
+ *
+ * With shared options, a gap only holds a select element with the prompt option, which refers to
+ * a template holding the options once per page. main.js copies the options into the select
+ * element when it gets the focus.
+ */
+final class HtmlFragments {
+
+	/** Name of a select tag. */
+	private static final String TAG_SELECT = "select";
+
+	/** Name of an option tag. */
+	private static final String TAG_OPTION = "option";
+
+	/** Name of a span tag. */
+	private static final String TAG_SPAN = "span";
+
+	/** Name of a template tag. */
+	private static final String TAG_TEMPLATE = "template";
+
+	/** Name of the value attribute. */
+	private static final String ATTRIBUTE_VALUE = "value";
+
+	/** Name of the id attribute. */
+	private static final String ATTRIBUTE_ID = "id";
+
+	/** Name of the selected attribute. */
+	private static final String ATTRIBUTE_SELECTED = "selected";
+
+	/** Name of the disabled attribute. */
+	private static final String ATTRIBUTE_DISABLED = "disabled";
+
+	/** Name of the attribute of a select element referring to the template of its options. */
+	private static final String ATTRIBUTE_OPTIONS = "data-options";
+
+	/** Id of the template of the shared options. */
+	static final String OPTIONS_TEMPLATE_ID = "latwiki-options";
+
+	/** Text of the prompt option. */
+	private static final String PROMPT = "Select";
+
+	/** Message page up to the message. */
+	private static final String MESSAGE_PAGE_OPENING =
+			"<html>" +
+			"<head>" +
+			"</head>" +
+			"<body>" +
+			"<h1>";
+
+	/** Message page after the message. */
+	private static final String MESSAGE_PAGE_CLOSING =
+			"</h1>" +
+			"</body>" +
+			"</html>";
+
+
+	/**
+	 * No instances.
+	 */
+	private HtmlFragments() {
+	}
+
+	/**
+	 * Builds a select element with one option per entry, in the iteration order of the map, as
+	 * Jsoup nodes.
+	 *
+	 * @param options - map from the value of an option to its text.
+	 * @return the select element.
+	 */
+	static Element selectElement(Map<Integer, String> options) {
+		Element select = new Element(Tag.valueOf(TAG_SELECT), "");
+		select.appendElement(TAG_OPTION).attr(ATTRIBUTE_SELECTED, "true").attr(ATTRIBUTE_DISABLED, ATTRIBUTE_DISABLED).appendText(PROMPT);
+		for (Entry<Integer, String> entry : options.entrySet()) {
+			select.appendElement(TAG_OPTION).attr(ATTRIBUTE_VALUE, entry.getKey().toString()).appendText(entry.getValue());
+		}
+		return select;
+	}
+
+	/**
+	 * Builds a select element holding only the prompt option. Its options are copied from the
+	 * shared options template by main.js.
+	 *
+	 * @return the select element.
+	 */
+	static Element sharedSelectElement() {
+		Element select = new Element(Tag.valueOf(TAG_SELECT), "");
+		select.attr(ATTRIBUTE_OPTIONS, OPTIONS_TEMPLATE_ID);
+		select.appendElement(TAG_OPTION).attr(ATTRIBUTE_SELECTED, "true").attr(ATTRIBUTE_DISABLED, ATTRIBUTE_DISABLED).appendText(PROMPT);
+		return select;
+	}
+
+	/**
+	 * Builds the template holding the options shared by all gaps of a page.
+	 *
+	 * @param select - a select element as built by selectElement(); it is not modified.
+	 * @return the template element with copies of the options, without the prompt option.
+	 */
+	static Element optionsTemplate(Element select) {
+		Element template = new Element(Tag.valueOf(TAG_TEMPLATE), "");
+		template.attr(ATTRIBUTE_ID, OPTIONS_TEMPLATE_ID);
+		Elements options = select.children();
+		// Skip the prompt option.
+		for (int i=1; i<options.size(); i++) {
+			template.appendChild(options.get(i).clone());
+		}
+		return template;
+	}
+
+	/**
+	 * Creates the span element of a gap, containing a copy of a select element.
+	 *
+	 * @param number - number of the removed word.
+	 * @param select - the select element to copy; it is not modified.
+	 * @return the span element.
+	 */
+	static Element spanElement(int number, Element select) {
+		Element span = new Element(Tag.valueOf(TAG_SPAN), "");
+		span.attr(ATTRIBUTE_ID, String.valueOf(number));
+		span.appendChild(select.clone());
+		return span;
+	}
+
+	/**
+	 * Builds a page showing a message, used when problems occur.
+	 *
+	 * @param message - the message.
+	 * @return a String containing the page.
+	 */
+	static String messagePage(String message) {
+		return MESSAGE_PAGE_OPENING + message + MESSAGE_PAGE_CLOSING;
+	}
+}
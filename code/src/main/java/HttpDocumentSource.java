@@ -0,0 +1,167 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+
+import org.jsoup.HttpStatusException;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Downloads Wikipedia pages over HTTP.
+ *
+ * Unlike Jsoup.connect(), which disconnects after every request, connections are returned to the
+ * keep-alive cache of the JDK once a page has been read, so consecutive downloads from the same
+ * Wikipedia host reuse their TCP and TLS connections.
+ *
+ * Settings:
+ * - http.maxConnections - idle keep-alive connections kept per host, default 20. A system
+ *   property 'http.maxConnections' takes precedence.
+ * - fetch.connectTimeoutMillis - connect timeout, default 1000.
+ * - fetch.readTimeoutMillis - longest wait for the next bytes of a response, default
+ *   fetch.timeoutMillis, which defaults to 3000 (as for Jsoup).
+ * - fetch.totalTimeoutMillis - longest time to read a whole response, default 10000; it also
+ *   bounds a server that keeps sending bytes very slowly.
+ */
+final class HttpDocumentSource implements DocumentSource {
+
+	/** Default number of idle keep-alive connections kept per host. */
+	private static final int DEFAULT_MAX_CONNECTIONS = 20;
+
+	/** Default connect timeout in milliseconds. */
+	private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 1000;
+
+	/** Default read timeout in milliseconds. */
+	private static final int DEFAULT_TIMEOUT_MILLIS = 3000;
+
+	/** Default time to read a whole response in milliseconds. */
+	private static final long DEFAULT_TOTAL_TIMEOUT_MILLIS = 10000;
+
+	/** Encoding of a page without charset in its content type. */
+	private static final Charset DEFAULT_ENCODING = Charset.forName("UTF-8");
+
+	/** Parameter of the content type naming the encoding. */
+	private static final String CHARSET = "charset=";
+
+	/** Value of the User-Agent header. */
+	private static final String USER_AGENT = "language-learning-with-wiki/1.0";
+
+	/** Size of the read buffer. */
+	private static final int BUFFER_SIZE = 8192;
+
+	/** Connect timeout in milliseconds. */
+	private final int connectTimeoutMillis = Configuration.getInt("fetch.connectTimeoutMillis", DEFAULT_CONNECT_TIMEOUT_MILLIS);
+
+	/** Read timeout in milliseconds. */
+	private final int readTimeoutMillis = Configuration.getInt("fetch.readTimeoutMillis",
+			Configuration.getInt("fetch.timeoutMillis", DEFAULT_TIMEOUT_MILLIS));
+
+	/** Time to read a whole response in milliseconds. */
+	private final long totalTimeoutMillis = Configuration.getLong("fetch.totalTimeoutMillis", DEFAULT_TOTAL_TIMEOUT_MILLIS);
+
+	static {
+		// Read once by the JDK when the keep-alive cache is created, so set it before the first download.
+		if (System.getProperty("http.maxConnections") == null) {
+			System.setProperty("http.maxConnections",
+					String.valueOf(Configuration.getInt("http.maxConnections", DEFAULT_MAX_CONNECTIONS)));
+		}
+	}
+
+	@Override
+	public String load(String url) throws IOException {
+		long deadline = System.currentTimeMillis() + totalTimeoutMillis;
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setConnectTimeout(connectTimeoutMillis);
+		connection.setReadTimeout(readTimeoutMillis);
+		connection.setRequestProperty("User-Agent", USER_AGENT);
+		connection.setRequestProperty("Accept-Encoding", "gzip");
+
+		int status = connection.getResponseCode();
+		if (status < 200 || status >= 300) {
+			// Read the error body, so the connection can still be reused.
+			InputStream error = connection.getErrorStream();
+			if (error != null) {
+				readFully(error, deadline);
+			}
+			throw new HttpStatusException("HTTP error fetching URL", status, url);
+		}
+
+		InputStream in = connection.getInputStream();
+		if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+			in = new GZIPInputStream(in, BUFFER_SIZE);
+		}
+		// Closing the stream after reading it to the end hands the connection to the keep-alive cache.
+		return new String(readFully(in, deadline), charsetOf(connection.getContentType()));
+	}
+
+	/**
+	 * Reads a stream to its end and closes it.
+	 *
+	 * @param in - the stream.
+	 * @param deadline - time by which the stream must be read, in milliseconds since the epoch.
+	 * @return the bytes read.
+	 * @throws IOException - if the stream cannot be read in time.
+	 */
+	private static byte[] readFully(InputStream in, long deadline) throws IOException {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE * 8);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) >= 0) {
+				bytes.write(buffer, 0, read);
+				if (System.currentTimeMillis() > deadline) {
+					throw new SocketTimeoutException("Response not read in time");
+				}
+			}
+			return bytes.toByteArray();
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Extracts the encoding from a content type, e.g. 'text/html; charset=UTF-8'.
+	 *
+	 * @param contentType - the content type, may be null.
+	 * @return the encoding, or UTF-8 if the content type names none or an unknown one.
+	 */
+	private static Charset charsetOf(String contentType) {
+		if (contentType != null) {
+			int start = contentType.toLowerCase().indexOf(CHARSET);
+			if (start >= 0) {
+				String name = contentType.substring(start + CHARSET.length()).trim();
+				int end = name.indexOf(';');
+				if (end >= 0) {
+					name = name.substring(0, end).trim();
+				}
+				name = name.replace("\"", "");
+				try {
+					return Charset.forName(name);
+				}
+				catch (IllegalArgumentException e) {
+					// Fall back to the default.
+				}
+			}
+		}
+		return DEFAULT_ENCODING;
+	}
+}
@@ -0,0 +1,324 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * A minimal JSON reader and writer for the batch API, as the project has no JSON library.
+ * Objects are read into maps, arrays into lists, integral numbers into Longs, other numbers into
+ * Doubles, and true, false and null into Booleans and null.
+ */
+final class Json {
+
+	/** Maximum nesting of arrays and objects, far more than any request needs. */
+	static final int MAX_DEPTH = 64;
+
+	/** The text being read. */
+	private final String text;
+
+	/** Position of the next character to read. */
+	private int position;
+
+	/** Number of arrays and objects around the value being read. */
+	private int depth;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param text - the text to read.
+	 */
+	private Json(String text) {
+		this.text = text;
+	}
+
+	/**
+	 * Reads a JSON value that makes up the whole text, apart from white space.
+	 *
+	 * @param text - the JSON text.
+	 * @return the value.
+	 * @throws IllegalArgumentException - if the text is not valid JSON, or nested deeper than
+	 * MAX_DEPTH.
+	 */
+	static Object parse(String text) {
+		Json json = new Json(text);
+		Object value = json.readValue();
+		json.skipWhitespace();
+		if (json.position < text.length()) {
+			throw json.error("end of input expected");
+		}
+		return value;
+	}
+
+	/**
+	 * Appends a string as a JSON string literal.
+	 *
+	 * @param value - the string, or null.
+	 * @param json - the JSON is appended here.
+	 */
+	static void appendString(String value, StringBuilder json) {
+		if (value == null) {
+			json.append("null");
+			return;
+		}
+		json.append('"');
+		for (int i=0; i<value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"':
+					json.append("\\\"");
+					break;
+				case '\\':
+					json.append("\\\\");
+					break;
+				case '\n':
+					json.append("\\n");
+					break;
+				case '\r':
+					json.append("\\r");
+					break;
+				case '\t':
+					json.append("\\t");
+					break;
+				default:
+					if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+						json.append(String.format("\\u%04x", (int) c));
+					}
+					else {
+						json.append(c);
+					}
+			}
+		}
+		json.append('"');
+	}
+
+	/**
+	 * Reads a value.
+	 *
+	 * @return the value.
+	 */
+	private Object readValue() {
+		skipWhitespace();
+		if (position >= text.length()) {
+			throw error("value expected");
+		}
+		char c = text.charAt(position);
+		if (c == '{' || c == '[') {
+			// Deeper nesting would overflow the stack of the recursive reading.
+			if (depth == MAX_DEPTH) {
+				throw error("nesting deeper than " + MAX_DEPTH);
+			}
+			depth++;
+			Object value = c == '{' ? readObject() : readArray();
+			depth--;
+			return value;
+		}
+		if (c == '"') {
+			return readString();
+		}
+		if (text.startsWith("true", position)) {
+			position += 4;
+			return Boolean.TRUE;
+		}
+		if (text.startsWith("false", position)) {
+			position += 5;
+			return Boolean.FALSE;
+		}
+		if (text.startsWith("null", position)) {
+			position += 4;
+			return null;
+		}
+		return readNumber();
+	}
+
+	/**
+	 * Reads an object.
+	 *
+	 * @return the members by name, in the order of the text.
+	 */
+	private Map<String, Object> readObject() {
+		Map<String, Object> object = new LinkedHashMap<String, Object>();
+		position++;
+		skipWhitespace();
+		if (peek() == '}') {
+			position++;
+			return object;
+		}
+		while (true) {
+			skipWhitespace();
+			if (peek() != '"') {
+				throw error("member name expected");
+			}
+			String name = readString();
+			skipWhitespace();
+			expect(':');
+			object.put(name, readValue());
+			skipWhitespace();
+			if (peek() == ',') {
+				position++;
+			}
+			else {
+				expect('}');
+				return object;
+			}
+		}
+	}
+
+	/**
+	 * Reads an array.
+	 *
+	 * @return the elements.
+	 */
+	private List<Object> readArray() {
+		List<Object> array = new ArrayList<Object>();
+		position++;
+		skipWhitespace();
+		if (peek() == ']') {
+			position++;
+			return array;
+		}
+		while (true) {
+			array.add(readValue());
+			skipWhitespace();
+			if (peek() == ',') {
+				position++;
+			}
+			else {
+				expect(']');
+				return array;
+			}
+		}
+	}
+
+	/**
+	 * Reads a string literal.
+	 *
+	 * @return the string.
+	 */
+	private String readString() {
+		position++;
+		StringBuilder value = new StringBuilder();
+		while (position < text.length()) {
+			char c = text.charAt(position++);
+			if (c == '"') {
+				return value.toString();
+			}
+			if (c != '\\') {
+				value.append(c);
+				continue;
+			}
+			if (position >= text.length()) {
+				break;
+			}
+			char escaped = text.charAt(position++);
+			switch (escaped) {
+				case 'b':
+					value.append('\b');
+					break;
+				case 'f':
+					value.append('\f');
+					break;
+				case 'n':
+					value.append('\n');
+					break;
+				case 'r':
+					value.append('\r');
+					break;
+				case 't':
+					value.append('\t');
+					break;
+				case 'u':
+					if (position + 4 > text.length()) {
+						throw error("incomplete unicode escape");
+					}
+					try {
+						value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+					}
+					catch (NumberFormatException e) {
+						throw error("invalid unicode escape");
+					}
+					position += 4;
+					break;
+				default:
+					value.append(escaped);
+			}
+		}
+		throw error("unterminated string");
+	}
+
+	/**
+	 * Reads a number.
+	 *
+	 * @return a Long if the number is integral, a Double otherwise.
+	 */
+	private Object readNumber() {
+		int start = position;
+		boolean integral = true;
+		while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+			char c = text.charAt(position++);
+			if (c == '.' || c == 'e' || c == 'E') {
+				integral = false;
+			}
+		}
+		String number = text.substring(start, position);
+		try {
+			return integral ? (Object) Long.valueOf(number) : (Object) Double.valueOf(number);
+		}
+		catch (NumberFormatException e) {
+			position = start;
+			throw error("value expected");
+		}
+	}
+
+	/**
+	 * Skips white space.
+	 */
+	private void skipWhitespace() {
+		while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+			position++;
+		}
+	}
+
+	/**
+	 * @return the next character, or 0 at the end of the text.
+	 */
+	private char peek() {
+		return position < text.length() ? text.charAt(position) : 0;
+	}
+
+	/**
+	 * Reads an expected character.
+	 *
+	 * @param c - the character.
+	 */
+	private void expect(char c) {
+		if (peek() != c) {
+			throw error("'" + c + "' expected");
+		}
+		position++;
+	}
+
+	/**
+	 * @param message - what is wrong.
+	 * @return an exception telling what is wrong where.
+	 */
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException("Invalid JSON at position " + position + ": " + message);
+	}
+}
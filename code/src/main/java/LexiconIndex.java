@@ -0,0 +1,156 @@
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Compiled lookup index for the lookup table of one language and word class. Maps a word directly
+ * to its number, instead of comparing it with every entry of the table.
+ *
+ * The index is an open addressing hash table with linear probing. Its hash function is the one of
+ * String.hashCode(), so a word can be looked up as a slice of a larger CharSequence without
+ * creating a String for it. Should a word occur more than once in a table, the lowest number wins.
+ *
+ * Instances are immutable and thus thread-safe.
+ */
+final class LexiconIndex {
+
+	/** Value returned by lookUp() for unknown words. */
+	static final int NOT_FOUND = -1;
+
+	/** Keys of the hash table; null marks an empty slot. */
+	private final String[] words;
+
+	/** Values of the hash table: the numbers of the words. */
+	private final int[] numbers;
+
+	/** Bit mask to map a hash code to a slot; the table size is a power of two. */
+	private final int mask;
+
+	/** Length of the longest word; longer slices can be rejected at once. */
+	private final int maxLength;
+
+	/** A logger instance. */
+	private static final Logger logger = Logger.getLogger(LexiconIndex.class.getName());
+
+
+	/**
+	 * Constructor. Compiles a lookup table.
+	 *
+	 * @param table - lookup table from word number to word.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	LexiconIndex(Map<Integer, String> table) {
+		// Parameter check.
+		if (table == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - table is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  table);
+		}
+
+		// Keep the load factor at or below 0.5, so probe sequences stay short.
+		int size = 2;
+		while (size < table.size() * 2) {
+			size <<= 1;
+		}
+		words = new String[size];
+		numbers = new int[size];
+		mask = size - 1;
+
+		int longest = 0;
+		// Insert in ascending order of the numbers, so duplicates keep the lowest number.
+		for (Map.Entry<Integer, String> entry : new TreeMap<Integer, String>(table).entrySet()) {
+			String word = entry.getValue();
+			int slot = spread(word.hashCode()) & mask;
+			while (words[slot] != null && !words[slot].equals(word)) {
+				slot = (slot + 1) & mask;
+			}
+			if (words[slot] == null) {
+				words[slot] = word;
+				numbers[slot] = entry.getKey();
+				longest = Math.max(longest, word.length());
+			}
+		}
+		maxLength = longest;
+	}
+
+	/**
+	 * Looks up a word.
+	 *
+	 * @param word - the word.
+	 * @return the number of the word, or NOT_FOUND.
+	 */
+	int lookUp(CharSequence word) {
+		return lookUp(word, 0, word.length());
+	}
+
+	/**
+	 * Looks up the word between two positions of a character sequence.
+	 *
+	 * @param text - character sequence containing the word.
+	 * @param start - index of the first character of the word.
+	 * @param end - index after the last character of the word.
+	 * @return the number of the word, or NOT_FOUND.
+	 */
+	int lookUp(CharSequence text, int start, int end) {
+		int length = end - start;
+		if (length > maxLength) {
+			return NOT_FOUND;
+		}
+		int hash = 0;
+		for (int i=start; i<end; i++) {
+			hash = 31 * hash + text.charAt(i);
+		}
+		int slot = spread(hash) & mask;
+		String candidate;
+		while ((candidate = words[slot]) != null) {
+			if (candidate.length() == length && regionMatches(candidate, text, start)) {
+				return numbers[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return NOT_FOUND;
+	}
+
+	/**
+	 * Compares a word with a region of equal length of a character sequence.
+	 *
+	 * @param word - the word.
+	 * @param text - the character sequence.
+	 * @param start - index of the region within text.
+	 * @return true if the characters are equal, false otherwise.
+	 */
+	private static boolean regionMatches(String word, CharSequence text, int start) {
+		for (int i=0; i<word.length(); i++) {
+			if (word.charAt(i) != text.charAt(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Spreads the higher bits of a hash code to the lower ones, which select the slot.
+	 *
+	 * @param hash - a hash code.
+	 * @return the spread hash code.
+	 */
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,486 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jsoup.nodes.Element;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Immutable registry of the lookup tables for all supported languages and word classes. The
+ * registry is loaded once - normally from the classpath, i.e. from inside the jar - and can then
+ * be shared by any number of threads without synchronization. For every lookup table, a compiled
+ * LexiconIndex and the markup of the select element are built at load time, as well as a version
+ * hash of all tables, which changes whenever any table does.
+ *
+ * The registry expects the following configuration files:
+ * - supported_languages
+ * - articles_xx - one for every supported language.
+ * - prepositions_xx - one for every supported language.
+ * - pronouns_xx - one for every supported language.
+ *
+ * The format of supported_languages is just on language code per line, e.g. en
+ * The format for the word categories - e.g. articles_en - is just one word of the language and
+ * category per line e.g. the
+ */
+public final class LexiconRegistry {
+
+	/** Location of the configuration files on the classpath. */
+	private static final String CLASSPATH_LOCATION = "lexicon/";
+
+	/** Name of the configuration file for the language support. */
+	private static final String SUPPORTED_LANGUAGES_FILE = "supported_languages";
+
+	/** Name part of the configuration file for the lookup list of the articles. */
+	private static final String NAME_ARTICLES_FILE = "articles";
+
+	/** Name part of the configuration file for the lookup list of the prepositions. */
+	private static final String NAME_PREPOSITIONS_FILE = "prepositions";
+
+	/** Name part of the configuration file for the lookup list of the pronouns. */
+	private static final String NAME_PRONOUNS_FILE = "pronouns";
+
+	/** Separator between the name part and the language code in the names for the lookup list. */
+	private static final String SEPARATOR_INIT_FILE_NAMES = "_";
+
+	/** Separator used in file paths. */
+	private static final String PATH_SEPARATOR = "/";
+
+	/** The encoding schema. */
+	private static final String ENCODING = "UTF-8";
+
+	/** Set of the supported languages, due to the initialization file 'supported_languages'.*/
+	private final Set<String> supportedLanguages;
+
+	/**
+	 * Lookup tables per word class. The keys of the middle maps are country codes. The keys of the
+	 * inner maps are numbers to identify the words.
+	 */
+	private final Map<WordClass, Map<String, Map<Integer, String>>> lookUpTables;
+
+	/** Compiled lookup indices per word class and language, built from the lookup tables. */
+	private final Map<WordClass, Map<String, LexiconIndex>> lookUpIndices;
+
+	/**
+	 * The select elements as Jsoup nodes, per word class and language. These templates are shared
+	 * by all threads and must only be copied, never modified.
+	 */
+	private final Map<WordClass, Map<String, Element>> selectElements;
+
+	/** Hash of the supported languages and all lookup tables, as hexadecimal digits. */
+	private final String version;
+
+	/** A logger instance. */
+	private static final Logger logger = Logger.getLogger(LexiconRegistry.class.getName());
+
+
+	/**
+	 * Source of the configuration files, either the classpath or a directory.
+	 */
+	private interface ResourceOpener {
+		/**
+		 * Opens a configuration file.
+		 *
+		 * @param name - name of the configuration file.
+		 * @return a stream to read the file from.
+		 * @throws IOException - if the file does not exist or cannot be opened.
+		 */
+		InputStream open(String name) throws IOException;
+	}
+
+	/**
+	 * Constructor. Use one of the factory methods.
+	 *
+	 * @param supportedLanguages - the codes of the supported languages.
+	 * @param lookUpTables - the lookup tables per word class and language.
+	 */
+	private LexiconRegistry(Set<String> supportedLanguages, Map<WordClass, Map<String, Map<Integer, String>>> lookUpTables) {
+		this.supportedLanguages = supportedLanguages;
+		this.lookUpTables = lookUpTables;
+
+		Map<WordClass, Map<String, LexiconIndex>> indices = new EnumMap<WordClass, Map<String, LexiconIndex>>(WordClass.class);
+		Map<WordClass, Map<String, Element>> templates = new EnumMap<WordClass, Map<String, Element>>(WordClass.class);
+		for (Map.Entry<WordClass, Map<String, Map<Integer, String>>> entry : lookUpTables.entrySet()) {
+			Map<String, LexiconIndex> perLanguageIndices = new HashMap<String, LexiconIndex>();
+			Map<String, Element> perLanguageTemplates = new HashMap<String, Element>();
+			for (Map.Entry<String, Map<Integer, String>> table : entry.getValue().entrySet()) {
+				Map<Integer, String> sorted = new TreeMap<Integer, String>(table.getValue());
+				perLanguageIndices.put(table.getKey(), new LexiconIndex(sorted));
+				perLanguageTemplates.put(table.getKey(), HtmlFragments.selectElement(sorted));
+			}
+			indices.put(entry.getKey(), Collections.unmodifiableMap(perLanguageIndices));
+			templates.put(entry.getKey(), Collections.unmodifiableMap(perLanguageTemplates));
+		}
+		this.lookUpIndices = Collections.unmodifiableMap(indices);
+		this.selectElements = Collections.unmodifiableMap(templates);
+		this.version = hash(supportedLanguages, lookUpTables);
+	}
+
+	/**
+	 * Computes the version hash of a registry from every word of the lookup tables together
+	 * with its number.
+	 *
+	 * @param supportedLanguages - the codes of the supported languages.
+	 * @param lookUpTables - the lookup tables per word class and language.
+	 * @return the first 8 bytes of the SHA-256 hash, as hexadecimal digits.
+	 */
+	private static String hash(Set<String> supportedLanguages, Map<WordClass, Map<String, Map<Integer, String>>> lookUpTables) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			// Every Java platform supports SHA-256.
+			throw new IllegalStateException(e);
+		}
+		Charset charset = Charset.forName(ENCODING);
+		for (String language : new TreeSet<String>(supportedLanguages)) {
+			digest.update(language.getBytes(charset));
+			digest.update((byte) '\n');
+		}
+		for (Map.Entry<WordClass, Map<String, Map<Integer, String>>> entry : lookUpTables.entrySet()) {
+			for (Map.Entry<String, Map<Integer, String>> table : new TreeMap<String, Map<Integer, String>>(entry.getValue()).entrySet()) {
+				digest.update((entry.getKey().name() + SEPARATOR_INIT_FILE_NAMES + table.getKey() + '\n').getBytes(charset));
+				for (Map.Entry<Integer, String> word : new TreeMap<Integer, String>(table.getValue()).entrySet()) {
+					digest.update((word.getKey() + "\t" + word.getValue() + '\n').getBytes(charset));
+				}
+			}
+		}
+		byte[] hash = digest.digest();
+		StringBuilder buf = new StringBuilder(16);
+		for (int i=0; i<8; i++) {
+			buf.append(Character.forDigit((hash[i] >> 4) & 0xF, 16)).append(Character.forDigit(hash[i] & 0xF, 16));
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * @return the version hash of the lookup tables; equal tables give equal versions.
+	 */
+	public String getVersion() {
+		return version;
+	}
+
+	/**
+	 * Loads the registry from the classpath, e.g. from inside the jar.
+	 *
+	 * @return a fully initialized registry.
+	 * @throws IOException - if a configuration file is missing or cannot be read.
+	 */
+	public static LexiconRegistry fromClasspath() throws IOException {
+		final ClassLoader loader = LexiconRegistry.class.getClassLoader();
+		return load(CLASSPATH_LOCATION, name -> {
+			InputStream in = loader.getResourceAsStream(CLASSPATH_LOCATION + name);
+			if (in == null) {
+				throw new IOException("Resource: " + CLASSPATH_LOCATION + name + " does not exist!");
+			}
+			return in;
+		});
+	}
+
+	/**
+	 * Loads the registry from a directory of the file system.
+	 *
+	 * @param directoryPath - path to the directory containing the configuration files.
+	 * @return a fully initialized registry.
+	 * @throws IOException - if a configuration file is missing or cannot be read.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	public static LexiconRegistry fromDirectory(String directoryPath) throws IOException {
+		// Parameter check.
+		if (directoryPath == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - directoryPath is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  directoryPath);
+		}
+		if (directoryPath.isEmpty()) {
+			logger.log(Level.SEVERE, "Invalid parameter - directoryPath is empty.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  directoryPath);
+		}
+
+		final File dir = new File(directoryPath);
+		if (!dir.isDirectory()) {
+			logger.log(Level.SEVERE, "Invalid parameter - directory: " + directoryPath + " is not a directory.");
+			throw new IllegalArgumentException(directoryPath + " is not a directory!");
+		}
+		return load(dir.getPath(), name -> new FileInputStream(dir.getPath() + PATH_SEPARATOR + name));
+	}
+
+	/**
+	 * Creates a registry without any supported language.
+	 *
+	 * @return an empty registry.
+	 */
+	public static LexiconRegistry empty() {
+		Map<WordClass, Map<String, Map<Integer, String>>> tables =
+				new EnumMap<WordClass, Map<String, Map<Integer, String>>>(WordClass.class);
+		return new LexiconRegistry(Collections.<String>emptySet(), Collections.unmodifiableMap(tables));
+	}
+
+	/**
+	 * Getter method for the supported languages.
+	 *
+	 * @return an unmodifiable set with the codes of all supported languages.
+	 */
+	public Set<String> getSupportedLanguages() {
+		return supportedLanguages;
+	}
+
+	/**
+	 * Checks if a given language is supported.
+	 *
+	 * @param language - code of a language.
+	 * @return true if the given language is supported, false otherwise.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	public boolean isLanguageSupported(String language) {
+		// Parameter check.
+		if (language == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - language is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  language);
+		}
+
+		return supportedLanguages.contains(language);
+	}
+
+	/**
+	 * Returns the lookup tables of all languages for a word class.
+	 *
+	 * @param wordClass - a word class other than RANDOM.
+	 * @return an unmodifiable map from language code to lookup table, empty for RANDOM.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	public Map<String, Map<Integer, String>> getLookUpTables(WordClass wordClass) {
+		// Parameter check.
+		if (wordClass == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - wordClass is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  wordClass);
+		}
+
+		Map<String, Map<Integer, String>> tables = lookUpTables.get(wordClass);
+		if (tables == null) {
+			return Collections.emptyMap();
+		}
+		return tables;
+	}
+
+	/**
+	 * Returns the lookup table of a language for a word class.
+	 *
+	 * @param language - code of a supported language.
+	 * @param wordClass - a word class other than RANDOM.
+	 * @return an unmodifiable map from word number to word, or null if there is no such table.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	public Map<Integer, String> getLookUpTable(String language, WordClass wordClass) {
+		// Parameter check.
+		if (language == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - language is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  language);
+		}
+
+		return getLookUpTables(wordClass).get(language);
+	}
+
+	/**
+	 * Returns the compiled lookup index of a language for a word class.
+	 *
+	 * @param language - code of a supported language.
+	 * @param wordClass - a word class other than RANDOM.
+	 * @return the index, or null if there is no such table.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	LexiconIndex getLookUpIndex(String language, WordClass wordClass) {
+		// Parameter check.
+		if (language == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - language is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  language);
+		}
+		if (wordClass == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - wordClass is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  wordClass);
+		}
+
+		Map<String, LexiconIndex> indices = lookUpIndices.get(wordClass);
+		if (indices == null) {
+			return null;
+		}
+		return indices.get(language);
+	}
+
+	/**
+	 * Returns the precompiled select element of a language for a word class as a Jsoup element.
+	 * The element is shared; callers must copy it with clone() and never modify it.
+	 *
+	 * @param language - code of a supported language.
+	 * @param wordClass - a word class other than RANDOM.
+	 * @return the select element, or null if there is no such table.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	Element getSelectElement(String language, WordClass wordClass) {
+		// Parameter check.
+		if (language == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - language is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  language);
+		}
+		if (wordClass == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - wordClass is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  wordClass);
+		}
+
+		Map<String, Element> templates = selectElements.get(wordClass);
+		if (templates == null) {
+			return null;
+		}
+		return templates.get(language);
+	}
+
+	/**
+	 * Reads all configuration tables and logs a summary of the loaded data.
+	 *
+	 * @param location - description of the location, only used for logging.
+	 * @param opener - source of the configuration files.
+	 * @return a fully initialized registry.
+	 * @throws IOException - if a configuration file is missing or cannot be read.
+	 */
+	private static LexiconRegistry load(String location, ResourceOpener opener) throws IOException {
+		long start = System.nanoTime();
+
+		Set<String> languages = new LinkedHashSet<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(opener.open(SUPPORTED_LANGUAGES_FILE), ENCODING));
+		try {
+			String line;
+			while((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (!line.isEmpty()) {
+					languages.add(line);
+				}
+			}
+		}
+		finally {
+			reader.close();
+		}
+
+		Map<WordClass, Map<String, Map<Integer, String>>> tables =
+				new EnumMap<WordClass, Map<String, Map<Integer, String>>>(WordClass.class);
+		for (WordClass wordClass : WordClass.values()) {
+			String name = fileName(wordClass);
+			if (name == null) {
+				continue;
+			}
+			Map<String, Map<Integer, String>> perLanguage = new HashMap<String, Map<Integer, String>>();
+			for (String language : languages) {
+				perLanguage.put(language, readInLookUpTable(opener, name + SEPARATOR_INIT_FILE_NAMES + language));
+			}
+			tables.put(wordClass, Collections.unmodifiableMap(perLanguage));
+		}
+
+		LexiconRegistry registry = new LexiconRegistry(Collections.unmodifiableSet(languages), Collections.unmodifiableMap(tables));
+		long elapsed = (System.nanoTime() - start) / 1000000;
+		logger.log(Level.INFO, "Lexicon loaded from " + location + " in " + elapsed + " ms, version " + registry.getVersion()
+				+ ": " + registry.describe());
+		return registry;
+	}
+
+	/**
+	 * Helper method for reading in of a configuration file for the word classes.
+	 *
+	 * @param opener - source of the configuration files.
+	 * @param name - name of the file.
+	 * @return an unmodifiable lookup table from word number to word.
+	 * @throws IOException - if an IO problem occurs.
+	 */
+	private static Map<Integer, String> readInLookUpTable(ResourceOpener opener, String name) throws IOException {
+		Map<Integer, String> table = new HashMap<Integer, String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(opener.open(name), ENCODING));
+		try {
+			String line;
+			int i=0;
+			// Fill the lookup table.
+			while((line = reader.readLine()) != null) {
+				line = line.trim();
+				table.put(i++, line);
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return Collections.unmodifiableMap(table);
+	}
+
+	/**
+	 * Maps a word class to the name part of its configuration files.
+	 *
+	 * @param wordClass - a word class.
+	 * @return the name part, or null for word classes without a lookup table.
+	 */
+	private static String fileName(WordClass wordClass) {
+		switch (wordClass) {
+		case ARTICLES:
+			return NAME_ARTICLES_FILE;
+		case PREPOSITIONS:
+			return NAME_PREPOSITIONS_FILE;
+		case PRONOUNS:
+			return NAME_PRONOUNS_FILE;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Creates a short summary of the entry counts per language and word class, e.g.
+	 * "de[articles=11, prepositions=28, pronouns=24]".
+	 *
+	 * @return the summary.
+	 */
+	private String describe() {
+		StringBuilder buf = new StringBuilder();
+		for (String language : supportedLanguages) {
+			if (buf.length() > 0) {
+				buf.append(", ");
+			}
+			buf.append(language).append('[');
+			boolean firstTime = true;
+			for (Map.Entry<WordClass, Map<String, Map<Integer, String>>> entry : lookUpTables.entrySet()) {
+				if (!firstTime) {
+					buf.append(", ");
+				}
+				else {
+					firstTime = false;
+				}
+				buf.append(fileName(entry.getKey())).append('=').append(entry.getValue().get(language).size());
+			}
+			buf.append(']');
+		}
+		return buf.toString();
+	}
+}
@@ -0,0 +1,330 @@
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * In-memory cache of fetched Wikipedia pages, keyed by normalized URL. The HTML of a page is kept
+ * gzip compressed, rather than as a Jsoup document, to keep the heap small. The parser uses a
+ * second instance for the rendered exercise pages, whose compressed bytes can be sent to clients
+ * accepting gzip as they are.
+ *
+ * The cache is bounded by the total size of the compressed pages; when it is full, the least
+ * recently used pages are evicted. Pages older than the time to live are treated as missing,
+ * unless the caller accepts stale pages for a while. Every page records the Wikipedia revision
+ * it was made from, if known. Hits, stale hits, misses and evictions are counted.
+ *
+ * All methods are thread-safe.
+ */
+final class PageCache {
+
+	/** Maximum total size of the compressed pages in bytes. */
+	private final long maxBytes;
+
+	/** Time to live of a page in milliseconds. */
+	private final long ttlMillis;
+
+	/** The cached pages in access order, least recently used first. Guarded by itself. */
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+	/** Total size of the compressed pages in bytes. Guarded by entries. */
+	private long totalBytes;
+
+	/** Number of lookups that found a fresh page. */
+	private final AtomicLong hits = new AtomicLong();
+
+	/** Number of lookups that found no page or an expired one. */
+	private final AtomicLong misses = new AtomicLong();
+
+	/** Number of pages evicted to stay within maxBytes. */
+	private final AtomicLong evictions = new AtomicLong();
+
+	/** Number of lookups that found an expired page still allowed to be served. */
+	private final AtomicLong staleHits = new AtomicLong();
+
+	/** The encoding schema. */
+	private static final Charset ENCODING = Charset.forName("UTF-8");
+
+	/** A logger instance. */
+	private static final Logger logger = Logger.getLogger(PageCache.class.getName());
+
+
+	/**
+	 * A cached page.
+	 */
+	static final class Entry {
+
+		/** The gzip compressed HTML of the page. */
+		private final byte[] compressedHtml;
+
+		/** Size of the uncompressed UTF-8 HTML in bytes. */
+		private final int size;
+
+		/** Time the page was fetched, in milliseconds since the epoch. */
+		private final long fetchedAt;
+
+		/** Wikipedia revision id of the page, or RevisionId.UNKNOWN. */
+		private final long revision;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param compressedHtml - the gzip compressed HTML of the page.
+		 * @param size - size of the uncompressed HTML in bytes.
+		 * @param fetchedAt - time the page was fetched.
+		 * @param revision - Wikipedia revision id of the page.
+		 */
+		private Entry(byte[] compressedHtml, int size, long fetchedAt, long revision) {
+			this.compressedHtml = compressedHtml;
+			this.size = size;
+			this.fetchedAt = fetchedAt;
+			this.revision = revision;
+		}
+
+		/**
+		 * @return the decompressed HTML of the page.
+		 */
+		String getHtml() {
+			return Compression.decompress(compressedHtml);
+		}
+
+		/**
+		 * @return the gzip compressed UTF-8 HTML of the page; it must not be modified.
+		 */
+		byte[] getCompressedHtml() {
+			return compressedHtml;
+		}
+
+		/**
+		 * @return the size of the uncompressed UTF-8 HTML in bytes.
+		 */
+		int getSize() {
+			return size;
+		}
+
+		/**
+		 * @return time the page was fetched, in milliseconds since the epoch.
+		 */
+		long getFetchedAt() {
+			return fetchedAt;
+		}
+
+		/**
+		 * @return Wikipedia revision id of the page, or RevisionId.UNKNOWN.
+		 */
+		long getRevision() {
+			return revision;
+		}
+
+		/**
+		 * @return the size of the compressed HTML in bytes.
+		 */
+		int getCompressedSize() {
+			return compressedHtml.length;
+		}
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxBytes - maximum total size of the compressed pages in bytes.
+	 * @param ttlMillis - time to live of a page in milliseconds.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	PageCache(long maxBytes, long ttlMillis) {
+		// Parameter check.
+		if (maxBytes < 0) {
+			logger.log(Level.SEVERE, "Invalid parameter - maxBytes is negative: " + maxBytes);
+			throw new IllegalArgumentException("Invalid Parameter: " +  maxBytes);
+		}
+		if (ttlMillis < 0) {
+			logger.log(Level.SEVERE, "Invalid parameter - ttlMillis is negative: " + ttlMillis);
+			throw new IllegalArgumentException("Invalid Parameter: " +  ttlMillis);
+		}
+
+		this.maxBytes = maxBytes;
+		this.ttlMillis = ttlMillis;
+	}
+
+	/**
+	 * Looks up a page.
+	 *
+	 * @param key - the normalized URL of the page.
+	 * @return the cached page, or null if it is missing or expired.
+	 */
+	Entry get(String key) {
+		return get(key, 0);
+	}
+
+	/**
+	 * Looks up a page, accepting a page that expired a while ago. Whether the result is still
+	 * fresh can be checked with isFresh().
+	 *
+	 * @param key - the normalized URL of the page.
+	 * @param maxStaleMillis - how long after its expiry a page is still returned.
+	 * @return the cached page, or null if it is missing or expired for longer.
+	 */
+	Entry get(String key, long maxStaleMillis) {
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+		}
+		if (entry == null || System.currentTimeMillis() - entry.fetchedAt > ttlMillis + maxStaleMillis) {
+			misses.incrementAndGet();
+			return null;
+		}
+		if (!isFresh(entry)) {
+			staleHits.incrementAndGet();
+			return entry;
+		}
+		hits.incrementAndGet();
+		return entry;
+	}
+
+	/**
+	 * Tells whether a page is cached, like get(), but without counting a hit or miss.
+	 *
+	 * @param key - the normalized URL of the page.
+	 * @param maxStaleMillis - how long after its expiry a page still counts.
+	 * @return true if get() would return the page.
+	 */
+	boolean contains(String key, long maxStaleMillis) {
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+		}
+		return entry != null && System.currentTimeMillis() - entry.fetchedAt <= ttlMillis + maxStaleMillis;
+	}
+
+	/**
+	 * @param entry - a cached page.
+	 * @return true if the page has not expired yet.
+	 */
+	boolean isFresh(Entry entry) {
+		return System.currentTimeMillis() - entry.fetchedAt <= ttlMillis;
+	}
+
+	/**
+	 * Adds a page, replacing an older version. Evicts the least recently used pages if
+	 * necessary. A page larger than the whole cache is not added.
+	 *
+	 * @param key - the normalized URL of the page.
+	 * @param html - the HTML of the page.
+	 * @param fetchedAt - time the page was fetched.
+	 */
+	void put(String key, String html, long fetchedAt) {
+		put(key, html, fetchedAt, RevisionId.UNKNOWN);
+	}
+
+	/**
+	 * Adds a page with its revision id, replacing an older version. Evicts the least recently
+	 * used pages if necessary. A page larger than the whole cache is not added.
+	 *
+	 * @param key - the normalized URL of the page.
+	 * @param html - the HTML of the page.
+	 * @param fetchedAt - time the page was fetched.
+	 * @param revision - Wikipedia revision id of the page, or RevisionId.UNKNOWN.
+	 */
+	void put(String key, String html, long fetchedAt, long revision) {
+		// Compress outside of the lock.
+		byte[] bytes = html.getBytes(ENCODING);
+		putCompressed(key, Compression.compress(bytes), bytes.length, fetchedAt, revision);
+	}
+
+	/**
+	 * Adds a page that is already compressed, replacing an older version. Evicts the least
+	 * recently used pages if necessary. A page larger than the whole cache is not added.
+	 *
+	 * @param key - the normalized URL of the page.
+	 * @param compressedHtml - the HTML of the page as compressed by Compression; it must not be
+	 * modified afterwards.
+	 * @param size - size of the uncompressed UTF-8 HTML in bytes.
+	 * @param fetchedAt - time the page was fetched.
+	 * @param revision - Wikipedia revision id of the page, or RevisionId.UNKNOWN.
+	 */
+	void putCompressed(String key, byte[] compressedHtml, int size, long fetchedAt, long revision) {
+		Entry entry = new Entry(compressedHtml, size, fetchedAt, revision);
+		if (entry.getCompressedSize() > maxBytes) {
+			return;
+		}
+		synchronized (entries) {
+			Entry old = entries.put(key, entry);
+			if (old != null) {
+				totalBytes -= old.getCompressedSize();
+			}
+			totalBytes += entry.getCompressedSize();
+			Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+			while (totalBytes > maxBytes && eldest.hasNext()) {
+				Entry evicted = eldest.next().getValue();
+				eldest.remove();
+				totalBytes -= evicted.getCompressedSize();
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * @return number of lookups that found a fresh page.
+	 */
+	long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return number of lookups that found no page or an expired one.
+	 */
+	long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return number of lookups that found an expired page still allowed to be served.
+	 */
+	long getStaleHits() {
+		return staleHits.get();
+	}
+
+	/**
+	 * @return number of pages evicted to stay within the size limit.
+	 */
+	long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return number of cached pages, including expired ones not yet evicted.
+	 */
+	int getSize() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * @return total size of the compressed pages in bytes.
+	 */
+	long getTotalBytes() {
+		synchronized (entries) {
+			return totalBytes;
+		}
+	}
+}
@@ -0,0 +1,702 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jsoup.HttpStatusException;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Fetches Wikipedia pages for the Parser. Pages are looked up in a PageCache first, then in the
+ * persistent ArticleStore, and only loaded from the DocumentSource, normally by downloading them,
+ * if both miss. Every call returns the HTML of the page, which the caller parses itself.
+ *
+ * Concurrent fetches of the same page are coalesced: the first caller (the leader) loads the
+ * page, the others wait for its result and only parse the shared HTML themselves.
+ *
+ * An expired page that is still in the page cache or the article store is returned at once
+ * (stale-while-revalidate), and a fresh copy is loaded in the background, so a slow Wikipedia
+ * does not slow down pages seen before. Loads from the document source go through a
+ * CircuitBreaker per host: after repeated timeouts or server errors, the host is not asked
+ * again for a while, and fetches fail at once instead of waiting for timeouts.
+ *
+ * Settings:
+ * - page.cache.maxBytes - maximum total size of the compressed cached pages, default 64 MB.
+ * - page.cache.ttlSeconds - time to live of a cached page, default one hour.
+ * - article.store.enabled - whether to keep pages on disk across restarts, default true.
+ * - article.store.dir - directory of the article store, default 'article-store'.
+ * - article.store.maxBytes - maximum total size of the article store, default 512 MB.
+ * - article.store.segmentBytes - size of a segment file of the article store, default 16 MB.
+ * - article.store.ttlSeconds - time to live of a stored page, default one day.
+ * - document.source - where pages are loaded from: 'http' (default) downloads them, 'record'
+ *   downloads them and saves them to document.source.dir, 'replay' only reads them from there.
+ *   The article store is not used for 'replay'. 'offline' only serves the pages in the article
+ *   store, e.g. those ingested from a dump by DumpIngester, which never expire then.
+ * - document.source.dir - directory of saved pages, default 'fixtures'.
+ * - page.cache.staleSeconds - how long after its expiry a cached or stored page is still
+ *   returned while it is refreshed, default one day; 0 turns it off.
+ * - breaker.failureThreshold - consecutive failures that open the circuit of a host, default 5.
+ * - breaker.openSeconds - time an open circuit refuses fetches before a trial fetch, default 30.
+ *
+ * Thread-safe.
+ */
+final class PageFetcher {
+
+	/** Default maximum total size of the compressed cached pages in bytes. */
+	private static final long DEFAULT_CACHE_MAX_BYTES = 64L * 1024 * 1024;
+
+	/** Default time to live of a cached page in seconds. */
+	private static final long DEFAULT_CACHE_TTL_SECONDS = 60 * 60;
+
+	/** Default directory of the article store. */
+	private static final String DEFAULT_STORE_DIR = "article-store";
+
+	/** Default maximum total size of the article store in bytes. */
+	private static final long DEFAULT_STORE_MAX_BYTES = 512L * 1024 * 1024;
+
+	/** Default size of a segment file of the article store in bytes. */
+	private static final long DEFAULT_STORE_SEGMENT_BYTES = 16L * 1024 * 1024;
+
+	/** Default time to live of a stored page in seconds. */
+	private static final long DEFAULT_STORE_TTL_SECONDS = 24 * 60 * 60;
+
+	/** Default directory of saved pages for recording and replaying. */
+	private static final String DEFAULT_SOURCE_DIR = "fixtures";
+
+	/** Value of the setting 'document.source' for downloading pages. */
+	private static final String SOURCE_HTTP = "http";
+
+	/** Value of the setting 'document.source' for downloading and saving pages. */
+	private static final String SOURCE_RECORD = "record";
+
+	/** Value of the setting 'document.source' for replaying saved pages. */
+	private static final String SOURCE_REPLAY = "replay";
+
+	/** Value of the setting 'document.source' for serving the article store only. */
+	private static final String SOURCE_OFFLINE = "offline";
+
+	/** Default time an expired page is still returned while it is refreshed, in seconds. */
+	private static final long DEFAULT_STALE_SECONDS = 24 * 60 * 60;
+
+	/** Default number of consecutive failures that open the circuit of a host. */
+	private static final int DEFAULT_BREAKER_FAILURE_THRESHOLD = 5;
+
+	/** Default time an open circuit refuses fetches, in seconds. */
+	private static final long DEFAULT_BREAKER_OPEN_SECONDS = 30;
+
+	/** HTTP status of a rate limited request. */
+	private static final int STATUS_TOO_MANY_REQUESTS = 429;
+
+	/** Smallest HTTP status of a server error. */
+	private static final int STATUS_SERVER_ERROR = 500;
+
+	/** Separator of the protocol and the host in a URL. */
+	private static final String PROTOCOL_SEPARATOR = "://";
+
+	/** The cache of fetched pages. */
+	private final PageCache pageCache;
+
+	/** The persistent store of fetched pages, or null if there is none. */
+	private final ArticleStore articleStore;
+
+	/** Where pages are loaded from if they are neither cached nor stored. */
+	private final DocumentSource documentSource;
+
+	/** Executor of the background refreshes of expired pages. */
+	private final Executor refreshExecutor;
+
+	/** How long after its expiry a page is still returned while it is refreshed, in milliseconds. */
+	private final long staleMillis = Configuration.getLong("page.cache.staleSeconds", DEFAULT_STALE_SECONDS) * 1000;
+
+	/** Number of consecutive failures that open the circuit of a host. */
+	private final int breakerFailureThreshold = Configuration.getInt("breaker.failureThreshold",
+			DEFAULT_BREAKER_FAILURE_THRESHOLD);
+
+	/** Time an open circuit refuses fetches, in milliseconds. */
+	private final long breakerOpenMillis = Configuration.getLong("breaker.openSeconds", DEFAULT_BREAKER_OPEN_SECONDS) * 1000;
+
+	/** Circuit breakers by host. */
+	private final ConcurrentHashMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<String, CircuitBreaker>();
+
+	/** Normalized URLs of the pages being refreshed in the background. */
+	private final ConcurrentHashMap<String, Boolean> refreshing = new ConcurrentHashMap<String, Boolean>();
+
+	/** HTML of the pages being loaded by fetches that accept an expired page, by normalized URL. */
+	private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight =
+			new ConcurrentHashMap<String, CompletableFuture<String>>();
+
+	/**
+	 * HTML of the pages being loaded by fetches that do not accept an expired page. They are
+	 * not coalesced with the others, which might return an expired page.
+	 */
+	private final ConcurrentHashMap<String, CompletableFuture<String>> inFlightFresh =
+			new ConcurrentHashMap<String, CompletableFuture<String>>();
+
+	/** HTML of the pages being downloaded by fetchNewHtml(), by normalized URL. */
+	private final ConcurrentHashMap<String, CompletableFuture<String>> inFlightNew =
+			new ConcurrentHashMap<String, CompletableFuture<String>>();
+
+	/** Number of fetches that loaded a page themselves after a cache miss. */
+	private final AtomicLong leaders = new AtomicLong();
+
+	/** Number of fetches that waited for another fetch of the same page. */
+	private final AtomicLong coalesced = new AtomicLong();
+
+	/** Number of fetches that returned an expired page. */
+	private final AtomicLong staleServed = new AtomicLong();
+
+	/** Number of background refreshes of expired pages that failed. */
+	private final AtomicLong refreshFailures = new AtomicLong();
+
+	/** Number of loads refused because the circuit of the host was open. */
+	private final AtomicLong shortCircuited = new AtomicLong();
+
+	/** A logger instance. */
+	private static final Logger logger = Logger.getLogger(PageFetcher.class.getName());
+
+
+	/**
+	 * Constructor using the configured settings.
+	 */
+	PageFetcher() {
+		this(createPageCache(), isReplay() ? null : openArticleStore(), createDocumentSource());
+	}
+
+	/**
+	 * Constructor using the configured page cache and no article store, e.g. to replay saved
+	 * pages.
+	 *
+	 * @param documentSource - where pages are loaded from.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	PageFetcher(DocumentSource documentSource) {
+		this(createPageCache(), null, documentSource);
+	}
+
+	/**
+	 * Constructor downloading pages, without article store.
+	 *
+	 * @param pageCache - the cache of fetched pages.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	PageFetcher(PageCache pageCache) {
+		this(pageCache, null, new HttpDocumentSource());
+	}
+
+	/**
+	 * Constructor refreshing expired pages on the configured refresh executor.
+	 *
+	 * @param pageCache - the cache of fetched pages.
+	 * @param articleStore - the persistent store of fetched pages, or null for none.
+	 * @param documentSource - where pages are loaded from if they are neither cached nor stored.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	PageFetcher(PageCache pageCache, ArticleStore articleStore, DocumentSource documentSource) {
+		this(pageCache, articleStore, documentSource, WorkerPools.newRefreshExecutor());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pageCache - the cache of fetched pages.
+	 * @param articleStore - the persistent store of fetched pages, or null for none.
+	 * @param documentSource - where pages are loaded from if they are neither cached nor stored.
+	 * @param refreshExecutor - executor of the background refreshes of expired pages.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	PageFetcher(PageCache pageCache, ArticleStore articleStore, DocumentSource documentSource, Executor refreshExecutor) {
+		// Parameter check.
+		if (pageCache == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - pageCache is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  pageCache);
+		}
+		if (documentSource == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - documentSource is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  documentSource);
+		}
+		if (refreshExecutor == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - refreshExecutor is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  refreshExecutor);
+		}
+
+		this.pageCache = pageCache;
+		this.articleStore = articleStore;
+		this.documentSource = documentSource;
+		this.refreshExecutor = refreshExecutor;
+	}
+
+	/**
+	 * Creates the page cache with the configured settings.
+	 *
+	 * @return the page cache.
+	 */
+	private static PageCache createPageCache() {
+		return new PageCache(Configuration.getLong("page.cache.maxBytes", DEFAULT_CACHE_MAX_BYTES),
+				Configuration.getLong("page.cache.ttlSeconds", DEFAULT_CACHE_TTL_SECONDS) * 1000);
+	}
+
+	/**
+	 * @return whether the setting 'document.source' selects replaying saved pages.
+	 */
+	private static boolean isReplay() {
+		return SOURCE_REPLAY.equalsIgnoreCase(Configuration.getString("document.source", SOURCE_HTTP));
+	}
+
+	/**
+	 * @return whether the setting 'document.source' selects serving the article store only.
+	 */
+	private static boolean isOffline() {
+		return SOURCE_OFFLINE.equalsIgnoreCase(Configuration.getString("document.source", SOURCE_HTTP));
+	}
+
+	/**
+	 * Creates the document source selected by the setting 'document.source'.
+	 *
+	 * @return the document source.
+	 * @throws IllegalArgumentExcpetion - if the setting has an unknown value.
+	 */
+	private static DocumentSource createDocumentSource() {
+		String source = Configuration.getString("document.source", SOURCE_HTTP);
+		File directory = new File(Configuration.getString("document.source.dir", DEFAULT_SOURCE_DIR));
+		if (SOURCE_HTTP.equalsIgnoreCase(source)) {
+			return new HttpDocumentSource();
+		}
+		if (SOURCE_RECORD.equalsIgnoreCase(source)) {
+			return new RecordingDocumentSource(new HttpDocumentSource(), directory);
+		}
+		if (SOURCE_REPLAY.equalsIgnoreCase(source)) {
+			return new DirectoryDocumentSource(directory);
+		}
+		if (SOURCE_OFFLINE.equalsIgnoreCase(source)) {
+			return url -> {
+				throw new FileNotFoundException("Not in the article store: " + url);
+			};
+		}
+		logger.log(Level.SEVERE, "Invalid setting - document.source is unknown: " + source);
+		throw new IllegalArgumentException("Invalid Setting: " +  source);
+	}
+
+	/**
+	 * Opens the article store with the configured settings. Its pages never expire when serving
+	 * the article store only.
+	 *
+	 * @return the article store, or null if it is disabled or cannot be opened.
+	 */
+	private static ArticleStore openArticleStore() {
+		return openArticleStore(isOffline() ? ArticleStore.NEVER_EXPIRES
+				: Configuration.getLong("article.store.ttlSeconds", DEFAULT_STORE_TTL_SECONDS) * 1000);
+	}
+
+	/**
+	 * Opens the article store with the configured settings, but the given time to live.
+	 *
+	 * @param ttlMillis - time to live of a page in milliseconds.
+	 * @return the article store, or null if it is disabled or cannot be opened.
+	 */
+	static ArticleStore openArticleStore(long ttlMillis) {
+		if (!Configuration.getBoolean("article.store.enabled", true)) {
+			return null;
+		}
+		File directory = new File(Configuration.getString("article.store.dir", DEFAULT_STORE_DIR));
+		try {
+			return new ArticleStore(directory,
+					Configuration.getLong("article.store.maxBytes", DEFAULT_STORE_MAX_BYTES),
+					Configuration.getLong("article.store.segmentBytes", DEFAULT_STORE_SEGMENT_BYTES), ttlMillis);
+		}
+		catch (IOException e) {
+			// The store only saves downloads; run without it.
+			logger.log(Level.WARNING, "Could not open article store " + directory, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Fetches the HTML of a page, from the cache or the article store if possible. An expired
+	 * page is returned while a fresh one is loaded in the background.
+	 *
+	 * @param url - URL of the page.
+	 * @return the HTML of the page.
+	 * @throws IOException - if the page cannot be loaded.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	String fetchHtml(String url) throws IOException {
+		return fetchHtml(url, true);
+	}
+
+	/**
+	 * Fetches the HTML of a page, from the cache or the article store if possible.
+	 *
+	 * @param url - URL of the page.
+	 * @param allowStale - whether an expired page may be returned while a fresh one is loaded in
+	 * the background; otherwise an expired page is loaded again before returning.
+	 * @return the HTML of the page.
+	 * @throws IOException - if the page cannot be loaded.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	String fetchHtml(String url, boolean allowStale) throws IOException {
+		// Parameter check.
+		if (url == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - url is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  url);
+		}
+		if (url.isEmpty()) {
+			logger.log(Level.SEVERE, "Invalid parameter - url is empty.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  url);
+		}
+
+		String key = UrlNormalizer.normalize(url);
+		long maxStaleMillis = allowStale ? staleMillis : 0;
+		PageCache.Entry entry = pageCache.get(key, maxStaleMillis);
+		if (entry != null) {
+			if (!pageCache.isFresh(entry)) {
+				staleServed.incrementAndGet();
+				refresh(key);
+			}
+			return entry.getHtml();
+		}
+
+		return coalesce(allowStale ? inFlight : inFlightFresh, key, k -> load(k, maxStaleMillis));
+	}
+
+	/**
+	 * Fetches a copy of a page that was loaded after a given time, e.g. to find out whether a
+	 * page rendered at that time has changed since. Older copies in the cache and the article
+	 * store, even if they have not expired yet, are passed over and the page is downloaded.
+	 *
+	 * @param url - URL of the page.
+	 * @param fetchedAfter - the copy must have been loaded after this time.
+	 * @return the HTML of the page.
+	 * @throws IOException - if the page cannot be downloaded.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	String fetchNewHtml(String url, long fetchedAfter) throws IOException {
+		// Parameter check.
+		if (url == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - url is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  url);
+		}
+		if (url.isEmpty()) {
+			logger.log(Level.SEVERE, "Invalid parameter - url is empty.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  url);
+		}
+
+		String key = UrlNormalizer.normalize(url);
+		PageCache.Entry entry = pageCache.get(key, 0);
+		if (entry != null && entry.getFetchedAt() > fetchedAfter) {
+			return entry.getHtml();
+		}
+		if (articleStore != null) {
+			ArticleStore.Entry stored = articleStore.get(key);
+			if (stored != null && stored.getFetchedAt() > fetchedAfter) {
+				String storedHtml = stored.getHtml();
+				pageCache.put(key, storedHtml, stored.getFetchedAt(), RevisionId.parse(storedHtml));
+				return storedHtml;
+			}
+		}
+		// Any download in flight started after the time, so it is new enough.
+		return coalesce(inFlightNew, key, this::download);
+	}
+
+	/**
+	 * Loads a page, unless another fetch of the same kind is loading it already; then that
+	 * fetch is waited for.
+	 *
+	 * @param flights - the pages being loaded by fetches of the same kind.
+	 * @param key - the normalized URL of the page.
+	 * @param loader - loads the page.
+	 * @return the HTML of the page.
+	 * @throws IOException - if the page cannot be loaded.
+	 */
+	private String coalesce(ConcurrentHashMap<String, CompletableFuture<String>> flights, String key, DocumentSource loader)
+			throws IOException {
+		CompletableFuture<String> future = new CompletableFuture<String>();
+		CompletableFuture<String> leader = flights.putIfAbsent(key, future);
+		if (leader != null) {
+			coalesced.incrementAndGet();
+			return await(leader);
+		}
+		leaders.incrementAndGet();
+		try {
+			String html = loader.load(key);
+			future.complete(html);
+			return html;
+		}
+		catch (IOException | RuntimeException e) {
+			future.completeExceptionally(e);
+			throw e;
+		}
+		finally {
+			// The page is in the cache now, so later fetches do not need the future.
+			flights.remove(key, future);
+		}
+	}
+
+	/**
+	 * Fails if fetchHtml() would fail at once because the page is neither cached nor stored
+	 * and the circuit of its host is open. Callers that must commit to a status before the
+	 * page is fetched can answer with an error this way. Nothing is loaded.
+	 *
+	 * @param url - the URL of the page.
+	 * @throws IOException - if the page could only be downloaded and the circuit is open.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	void checkAvailable(String url) throws IOException {
+		// Parameter check.
+		if (url == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - url is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  url);
+		}
+
+		String key = UrlNormalizer.normalize(url);
+		String host = hostOf(key);
+		CircuitBreaker breaker = breakers.get(host);
+		if (breaker == null || !breaker.isOpen() || pageCache.contains(key, staleMillis)
+				|| (articleStore != null && articleStore.contains(key, staleMillis))) {
+			return;
+		}
+		shortCircuited.incrementAndGet();
+		throw new IOException("Circuit open for " + host + ", not fetching " + key);
+	}
+
+	/**
+	 * Loads a page from the article store or the document source, and adds it to the cache.
+	 *
+	 * @param key - the normalized URL of the page.
+	 * @param maxStaleMillis - how long after its expiry a stored page is still returned; it is
+	 * refreshed in the background then.
+	 * @return the HTML of the page.
+	 * @throws IOException - if the page cannot be loaded.
+	 */
+	private String load(String key, long maxStaleMillis) throws IOException {
+		if (articleStore != null) {
+			ArticleStore.Entry stored = articleStore.get(key, maxStaleMillis);
+			if (stored != null) {
+				String storedHtml = stored.getHtml();
+				pageCache.put(key, storedHtml, stored.getFetchedAt(), RevisionId.parse(storedHtml));
+				if (!articleStore.isFresh(stored)) {
+					staleServed.incrementAndGet();
+					refresh(key);
+				}
+				return storedHtml;
+			}
+		}
+		return download(key);
+	}
+
+	/**
+	 * Loads a page from the document source through the circuit breaker of its host, and adds it
+	 * to the cache and the article store.
+	 *
+	 * @param key - the normalized URL of the page.
+	 * @return the HTML of the page.
+	 * @throws IOException - if the page cannot be loaded or the circuit of the host is open.
+	 */
+	private String download(String key) throws IOException {
+		String host = hostOf(key);
+		CircuitBreaker breaker = breakers.computeIfAbsent(host,
+				h -> new CircuitBreaker(breakerFailureThreshold, breakerOpenMillis));
+		if (!breaker.allowRequest()) {
+			shortCircuited.incrementAndGet();
+			throw new IOException("Circuit open for " + host + ", not fetching " + key);
+		}
+		String html;
+		try {
+			html = documentSource.load(key);
+			breaker.recordSuccess();
+		}
+		catch (IOException | RuntimeException e) {
+			if (isUpstreamFailure(e)) {
+				breaker.recordFailure();
+			}
+			else {
+				// The host answered, the page just does not exist.
+				breaker.recordSuccess();
+			}
+			throw e;
+		}
+
+		long fetchedAt = System.currentTimeMillis();
+		pageCache.put(key, html, fetchedAt, RevisionId.parse(html));
+		if (articleStore != null) {
+			try {
+				articleStore.put(key, html, fetchedAt);
+			}
+			catch (IOException e) {
+				// The store only saves downloads; the page is served anyway.
+				logger.log(Level.WARNING, "Could not store page " + key, e);
+			}
+		}
+		return html;
+	}
+
+	/**
+	 * Loads a fresh copy of an expired page in the background, unless it is being refreshed
+	 * already or the refresh executor is full. Failures are only counted; the expired page stays.
+	 *
+	 * @param key - the normalized URL of the page.
+	 */
+	private void refresh(String key) {
+		if (refreshing.putIfAbsent(key, Boolean.TRUE) != null) {
+			return;
+		}
+		try {
+			refreshExecutor.execute(() -> {
+				try {
+					download(key);
+				}
+				catch (IOException | RuntimeException e) {
+					refreshFailures.incrementAndGet();
+					logger.log(Level.FINE, "Could not refresh " + key, e);
+				}
+				finally {
+					refreshing.remove(key);
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			// A later fetch of the page tries again.
+			refreshing.remove(key);
+		}
+	}
+
+	/**
+	 * Decides whether a failed load counts against the circuit of the host: timeouts, connection
+	 * problems, rate limiting and server errors do, a missing page does not.
+	 *
+	 * @param e - the failure.
+	 * @return true if the host is likely in trouble.
+	 */
+	private static boolean isUpstreamFailure(Exception e) {
+		if (e instanceof HttpStatusException) {
+			int status = ((HttpStatusException) e).getStatusCode();
+			return status == STATUS_TOO_MANY_REQUESTS || status >= STATUS_SERVER_ERROR;
+		}
+		return !(e instanceof FileNotFoundException);
+	}
+
+	/**
+	 * Extracts the host of a normalized URL, e.g. 'de.wikipedia.org'.
+	 *
+	 * @param key - the normalized URL.
+	 * @return the host.
+	 */
+	private static String hostOf(String key) {
+		int start = key.indexOf(PROTOCOL_SEPARATOR);
+		start = start < 0 ? 0 : start + PROTOCOL_SEPARATOR.length();
+		int end = key.indexOf('/', start);
+		return end < 0 ? key.substring(start) : key.substring(start, end);
+	}
+
+	/**
+	 * Waits for the HTML loaded by another fetch.
+	 *
+	 * @param leader - result of the other fetch.
+	 * @return the HTML of the page.
+	 * @throws IOException - if the other fetch failed or the wait was interrupted.
+	 */
+	private static String await(CompletableFuture<String> leader) throws IOException {
+		try {
+			return leader.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the page");
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause.getMessage(), cause);
+		}
+	}
+
+	/**
+	 * Getter for the cache of fetched pages, e.g. to read its counters.
+	 *
+	 * @return the page cache.
+	 */
+	PageCache getPageCache() {
+		return pageCache;
+	}
+
+	/**
+	 * Getter for the persistent store of fetched pages, e.g. to read its counters.
+	 *
+	 * @return the article store, or null if there is none.
+	 */
+	ArticleStore getArticleStore() {
+		return articleStore;
+	}
+
+	/**
+	 * @return number of fetches that loaded a page themselves after a cache miss.
+	 */
+	long getLeaders() {
+		return leaders.get();
+	}
+
+	/**
+	 * @return number of fetches that waited for another fetch of the same page.
+	 */
+	long getCoalesced() {
+		return coalesced.get();
+	}
+
+	/**
+	 * @return number of fetches that returned an expired page.
+	 */
+	long getStaleServed() {
+		return staleServed.get();
+	}
+
+	/**
+	 * @return number of background refreshes of expired pages that failed.
+	 */
+	long getRefreshFailures() {
+		return refreshFailures.get();
+	}
+
+	/**
+	 * @return number of loads refused because the circuit of the host was open.
+	 */
+	long getShortCircuited() {
+		return shortCircuited.get();
+	}
+
+	/**
+	 * @return number of hosts whose circuit is not closed.
+	 */
+	int getOpenCircuits() {
+		int open = 0;
+		for (CircuitBreaker breaker : breakers.values()) {
+			if (breaker.getState() != CircuitBreaker.State.CLOSED) {
+				open++;
+			}
+		}
+		return open;
+	}
+}
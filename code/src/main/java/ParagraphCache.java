@@ -0,0 +1,256 @@
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * In-memory cache of the gaps of paragraphs, so a paragraph seen before - in another revision of
+ * the same article, or in boilerplate shared by many articles - is not tokenized and looked up
+ * again. The key is a 64-bit FNV-1a hash of the language, the word class and the texts of the
+ * text nodes of the paragraph; the total length of the texts is compared as well.
+ *
+ * The cache is bounded by an estimate of the memory of the gap layouts; when it is full, the
+ * least recently used paragraphs are evicted. Hits, misses and evictions are counted.
+ *
+ * The cached layouts are shared and must not be modified. All methods are thread-safe.
+ */
+final class ParagraphCache {
+
+	/** Initial value of the FNV-1a hash. */
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+	/** Multiplier of the FNV-1a hash. */
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	/** Estimated memory of an entry without its gap layouts in bytes. */
+	private static final int ENTRY_BYTES = 96;
+
+	/** Estimated memory of a gap layout without its words in bytes. */
+	private static final int LAYOUT_BYTES = 64;
+
+	/** Estimated memory of a word of a gap layout in bytes: start, end and number. */
+	private static final int WORD_BYTES = 12;
+
+	/** Maximum estimated memory of the cached layouts in bytes. */
+	private final long maxBytes;
+
+	/** The cached paragraphs in access order, least recently used first. Guarded by itself. */
+	private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<Long, Entry>(1024, 0.75f, true);
+
+	/** Estimated memory of the cached layouts in bytes. Guarded by entries. */
+	private long totalBytes;
+
+	/** Number of lookups that found the paragraph. */
+	private final AtomicLong hits = new AtomicLong();
+
+	/** Number of lookups that did not find the paragraph. */
+	private final AtomicLong misses = new AtomicLong();
+
+	/** Number of paragraphs evicted to stay within maxBytes. */
+	private final AtomicLong evictions = new AtomicLong();
+
+	/** A logger instance. */
+	private static final Logger logger = Logger.getLogger(ParagraphCache.class.getName());
+
+
+	/**
+	 * A cached paragraph.
+	 */
+	private static final class Entry {
+
+		/** Total length of the texts of the paragraph, to reduce the chance of a collision. */
+		private final int length;
+
+		/** The gaps per text node. */
+		private final List<GapLayout> gaps;
+
+		/** Estimated memory in bytes. */
+		private final long bytes;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param length - total length of the texts of the paragraph.
+		 * @param gaps - the gaps per text node.
+		 */
+		private Entry(int length, List<GapLayout> gaps) {
+			this.length = length;
+			this.gaps = Collections.unmodifiableList(gaps);
+			long estimate = ENTRY_BYTES;
+			for (GapLayout layout : gaps) {
+				estimate += LAYOUT_BYTES + (long) layout.size() * WORD_BYTES;
+			}
+			this.bytes = estimate;
+		}
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxBytes - maximum estimated memory of the cached layouts in bytes.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	ParagraphCache(long maxBytes) {
+		// Parameter check.
+		if (maxBytes < 0) {
+			logger.log(Level.SEVERE, "Invalid parameter - maxBytes is negative: " + maxBytes);
+			throw new IllegalArgumentException("Invalid Parameter: " +  maxBytes);
+		}
+
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Computes the key of a paragraph.
+	 *
+	 * @param language - code of the language of the page.
+	 * @param wordClass - the class of the removed words.
+	 * @param texts - the texts of the text nodes of the paragraph.
+	 * @return the hash of the paragraph.
+	 */
+	static long key(String language, WordClass wordClass, List<String> texts) {
+		long hash = FNV_OFFSET_BASIS;
+		hash = (hash ^ wordClass.ordinal()) * FNV_PRIME;
+		hash = update(hash, language);
+		for (String text : texts) {
+			hash = update(hash, text);
+		}
+		return hash;
+	}
+
+	/**
+	 * Adds the characters of a text and a separator to a hash.
+	 *
+	 * @param hash - the hash so far.
+	 * @param text - the text.
+	 * @return the new hash.
+	 */
+	private static long update(long hash, String text) {
+		int length = text.length();
+		for (int i=0; i<length; i++) {
+			hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+		}
+		// Separator, so that "ab" + "c" differs from "a" + "bc".
+		return (hash ^ 0xFFFF0000L) * FNV_PRIME;
+	}
+
+	/**
+	 * @param texts - the texts of the text nodes of a paragraph.
+	 * @return the total length of the texts.
+	 */
+	static int length(List<String> texts) {
+		int length = 0;
+		for (String text : texts) {
+			length += text.length();
+		}
+		return length;
+	}
+
+	/**
+	 * Looks up the gaps of a paragraph.
+	 *
+	 * @param key - the key of the paragraph, as computed by key().
+	 * @param length - total length of the texts of the paragraph.
+	 * @return the gaps per text node, or null if the paragraph is not cached. The list and its
+	 * layouts must not be modified.
+	 */
+	List<GapLayout> get(long key, int length) {
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+		}
+		if (entry == null || entry.length != length) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return entry.gaps;
+	}
+
+	/**
+	 * Adds the gaps of a paragraph. Evicts the least recently used paragraphs if necessary.
+	 *
+	 * @param key - the key of the paragraph, as computed by key().
+	 * @param length - total length of the texts of the paragraph.
+	 * @param gaps - the gaps per text node; they must not be modified afterwards.
+	 */
+	void put(long key, int length, List<GapLayout> gaps) {
+		Entry entry = new Entry(length, gaps);
+		if (entry.bytes > maxBytes) {
+			return;
+		}
+		synchronized (entries) {
+			Entry old = entries.put(key, entry);
+			if (old != null) {
+				totalBytes -= old.bytes;
+			}
+			totalBytes += entry.bytes;
+			Iterator<Map.Entry<Long, Entry>> eldest = entries.entrySet().iterator();
+			while (totalBytes > maxBytes && eldest.hasNext()) {
+				Entry evicted = eldest.next().getValue();
+				eldest.remove();
+				totalBytes -= evicted.bytes;
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * @return number of lookups that found the paragraph.
+	 */
+	long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return number of lookups that did not find the paragraph.
+	 */
+	long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return number of paragraphs evicted to stay within the size limit.
+	 */
+	long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return number of cached paragraphs.
+	 */
+	int getSize() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * @return estimated memory of the cached layouts in bytes.
+	 */
+	long getTotalBytes() {
+		synchronized (entries) {
+			return totalBytes;
+		}
+	}
+}
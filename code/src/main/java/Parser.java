@@ -1,23 +1,37 @@
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.Map.Entry;
 import java.util.logging.Level;
+import java.util.zip.GZIPOutputStream;
 import java.util.logging.Logger;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
 import org.jsoup.select.Elements;
+import org.jsoup.select.NodeVisitor;
 
 /**
  * ==========================================
@@ -40,69 +54,17 @@ import org.jsoup.select.Elements;
  * prepositions or pronouns from a supported language and substitutes them with an HTML <selection>
  * element that contains all possible alternatives of the respective word category.
  *
- * This class expects a set of configuration files at a specified location:
- * - supported_languages
- * - articles_xx - one for every supported language.
- * - prepositions_xx - one for every supported language.
- * - pronoun_xx - one for every supported language.
+ * The lookup tables of the word categories are provided by a LexiconRegistry, which is loaded
+ * once and can be shared by many parsers.
  *
- * The format of supported_languages is just on language code per line, e.g. en
- * The format for the word categories - e.g. articles_en - is just one word of the language and
- * category per line e.g. the
+ * A Parser holds no per-request state; everything belonging to the processing of one page lives
+ * in a ProcessingContext. Thus one instance can be used by any number of threads concurrently.
+ *
+ * The steps of the processing are package-private rather than private, so that the benchmarks in
+ * code/benchmarks can measure them one by one.
  */
 public class Parser {
 
-	/** Name of the configuration file for the language support. */
-	private static final String SUPPORTED_LANGUAGES_FILE = "supported_languages";
-
-	/** Name part of the configuration file for the lookup list of the articles. */
-	private static final String NAME_ARTICLES_FILE = "articles";
-
-	/** Name part of the configuration file for the lookup list of the prepositions. */
-	private static final String NAME_PREPOSITIONS_FILE = "prepositions";
-
-	/** Name part of the configuration file for the lookup list of the pronouns. */
-	private static final String NAME_PRONOUNS_FILE = "pronouns";
-
-	/** Separator between the name part and the language code in the names for the lookup list. */
-	private static final String SEPARATOR_INIT_FILE_NAMES = "_";
-
-	/** Supported punctuation signs - period. */
-	private static final String PUNCTUATION_PERIOD = ".";
-
-	/** Supported punctuation signs - question mark. */
-	private static final String PUNCTUATION_QUESTION = "?";
-
-	/** Supported punctuation signs - exclamation sign. */
-	private static final String PUNCTUATION_EXCLAMATION = "!";
-
-	/** Supported punctuation signs - comma. */
-	private static final String PUNCTUATION_COMMA = ",";
-
-	/** Supported punctuation signs - semicolon. */
-	private static final String PUNCTUATION_SEMICOLON = ";";
-
-	/** Supported punctuation signs - colon. */
-	private static final String PUNCTUATION_COLON = ":";
-
-	/** Supported punctuation signs - apostrophe. */
-	private static final String PUNCTUATION_APOSTROPHE = "'";
-
-	/** Supported punctuation signs - quote. */
-	private static final String PUNCTUATION_QUOTE = ".";
-
-	/** Index into the part of the name of the lookup list, that specify the word classes. */
-	private static final int INDEX_WORD_CLASS = 0;
-
-	/** Index into the part of the language code of the lookup list, that specify the word classes. */
-	private static final int INDEX_LANGUAGE_CODE = 1;
-
-	/** The encoding schema. */
-	private static final String ENCODING = "UTF-8";
-
-	/** Placeholder; used to be replaced later on. */
-	private static final String PLACE_HOLDER = "##";
-
 	/** Base path of Wikipedia pages. */
 	private static final String BASE_PATH = ".wikipedia.org";
 
@@ -118,61 +80,15 @@ public class Parser {
 	/** Index of the language part of the URL, after removing the protocol part.*/
 	private static final int LANGUAGE_PART_URL = 0;
 
-	/** Separator used in file paths. */
-	private static final String PATH_SEPARATOR = "/";
-
-	/** Regular expression for finding any white space. */
-	private static final String REGEX_WHITE_SPACE = "\\s+";
-
 	/** An empty string. */
 	private static final String EMPTY_STRING = "";
 
-	/** A space, used to separate words in a sentence. */
-	private static final String SPACE = " ";
-
 	/** The number of words per one random removal on average. */
 	private static final int WORDS_PER_REMOVAL = 10;
 
-	/** Opening select tag. */
-	private static final String SELECT_OPENING = "<select>";
-
-	/** Closing select tag. */
-	private static final String SELECT_CLOSING = "</select>";
-
-	/** Opening option tag, with a place holder for later substitution. */
-	private static final String OPTION_OPENING = "<option value=\"" + PLACE_HOLDER + "\">";
-
-	/** Closing option tag. */
-	private static final String OPTION_CLOSING = "</option>";
-
-	/** Opening span tag, with a place holder for later substitution. */
-	private static final String SPAN_OPENING = "<span id=\"" + PLACE_HOLDER + "\">";
-
-	/** Closing span tag. */
-	private static final String SPAN_CLOSING = "</span>";
-
 	/** Name of a paragraph tag. */
 	private static final String PARAGRAPH = "p";
 
-	/** Opening part of an occurrence marker. Used to mark and number occurrences of replaced words. */
-	private static final String MARKER_OCCURRENCE_OPENING = "<";
-
-	/** Closing part of an occurrence marker. Used to mark and number occurrences of replaced words. */
-	private static final String MARKER_OCCURRENCE_CLOSING = ">";
-
-	/**
-	 * Message page to be return, when problems occur. Maybe the only way to communicate with the
-	 * end user, since he could be someone other then the one responsible for running the service.
-	 */
-	private static final String MESSAGE_PAGE =
-			"<html>" +
-			"<head>" +
-			"</head>" +
-			"<body>" +
-			"<h1>" + PLACE_HOLDER + "</h1>" +
-			"</body>" +
-			"</html>";
-
 	/** Message shown in case of pages other then Wikipedia. */
 	private static final String MESSAGE_ONLY_WIKI_SUPPORTED = "No processing possible. Only Wikipedia pages supported!";
 
@@ -180,13 +96,16 @@ public class Parser {
 	private static final String MESSAGE_LANGUAGE_NOT_SUPPORTED = "No processing possible. Language not supported!";
 
 	/** Message shown in case of unsupported languages. */
-	private static final String MESSAGE_INVALID_PARAMETER = "No processing possible. Parameter invalid!";
+	static final String MESSAGE_INVALID_PARAMETER = "No processing possible. Parameter invalid!";
 
-	/**
-	 *  Occurrence marker, used to mark and number occurrences of replaced words. Contains a placeholder for later
-	 *  substitution with the number of the occurred word.
-	 */
-	private static final String MARKER_OCCURRENCE = MARKER_OCCURRENCE_OPENING + PLACE_HOLDER + MARKER_OCCURRENCE_CLOSING;
+	/** Encoding of the streamed pages. */
+	private static final Charset ENCODING = Charset.forName("UTF-8");
+
+	/** Size of the chunks in which streamed pages are handed to the output stream. */
+	private static final int CHUNK_SIZE = 8192;
+
+	/** Message if the page cannot be loaded from Wikipedia. */
+	static final String MESSAGE_PAGE_NOT_LOADED = "No processing possible. The page could not be loaded!";
 
 	/** Reference part of a link. */
 	private static final String REFERENCE_LINK = "href";
@@ -194,51 +113,94 @@ public class Parser {
 	/** Link to a style sheet. */
 	private static final String LINK_TO_STYLESHEET = "link[rel='stylesheet']";
 
-	/** Class of the words to remove. */
-	private WordClass wordClass;
+	/** The lookup tables of all supported languages and word classes. */
+	private final LexiconRegistry lexicon;
 
-	/** Language of the Wikipedia page to process. */
-	private String language;
+	/** Fetches the Wikipedia pages, using a cache. */
+	private final PageFetcher pageFetcher;
 
-	/** Select element with dynamically created option tags. */
-	private String select;
+	/**
+	 * Whether words are looked up in the compiled lookup index (default) or by comparing them with
+	 * every entry of the lookup table. The latter is only kept for benchmarking; it can be selected
+	 * with the setting 'lookup.index=false'.
+	 */
+	private final boolean useLookUpIndex = Configuration.getBoolean("lookup.index", true);
 
-	/** Set of the supported punctuation signs. */
-	private Set<String> punctuationSigns = new HashSet<String>();
+	/**
+	 * Whether the options of the ARTICLES, PREPOSITIONS and PRONOUNS gaps are written once per page
+	 * and copied into a gap by main.js on focus (default), rather than repeated at every gap. The
+	 * latter can be selected with the setting 'output.sharedOptions=false'.
+	 */
+	private final boolean sharedOptions = Configuration.getBoolean("output.sharedOptions", true);
+
+	/** Select element of every gap with shared options; it is only cloned. */
+	private static final Element SHARED_SELECT = HtmlFragments.sharedSelectElement();
+
+	/** Default maximum total size of the compressed rendered pages in bytes. */
+	private static final long DEFAULT_RENDER_CACHE_MAX_BYTES = 64L * 1024 * 1024;
 
-	/** Set of the supported languages, due to the initialization file 'supported_languages'.*/
-	private Set<String> supportedLanguages = new HashSet<String>();
+	/** Default time to live of a rendered page in seconds, that of a fetched page. */
+	private static final long DEFAULT_RENDER_CACHE_TTL_SECONDS = 60 * 60;
+
+	/** Default time an expired rendered page is still served while it is revalidated, in seconds. */
+	private static final long DEFAULT_RENDER_CACHE_STALE_SECONDS = 24 * 60 * 60;
+
+	/** Separator of the parts of a render cache key. */
+	private static final char KEY_SEPARATOR = '|';
 
 	/**
-	 * Map containing maps of articles. The keys of the outer map are country codes. The keys of the
-	 * inner maps are numbers to identify the words.
+	 * Cache of the rendered pages, keyed by normalized URL, word class and lexicon version. A hit
+	 * skips parsing, transforming and serializing the page.
 	 */
-	private Map<String, Map<Integer, String>> mapArticles = new HashMap<String, Map<Integer, String>>();
+	private final PageCache renderCache = new PageCache(
+			Configuration.getLong("render.cache.maxBytes", DEFAULT_RENDER_CACHE_MAX_BYTES),
+			Configuration.getLong("render.cache.ttlSeconds", DEFAULT_RENDER_CACHE_TTL_SECONDS) * 1000);
 
 	/**
-	 * Map containing maps of prepositions. The keys of the outer map are country codes. The keys of the
-	 * inner maps are numbers to identify the words.
+	 * How long after its expiry a rendered page is still served while a fresh one is made in the
+	 * background, in milliseconds; set with 'render.cache.staleSeconds', 0 turns it off.
 	 */
-	private Map<String, Map<Integer, String>> mapPrepositions = new HashMap<String, Map<Integer, String>>();
+	private final long renderStaleMillis = Configuration.getLong("render.cache.staleSeconds",
+			DEFAULT_RENDER_CACHE_STALE_SECONDS) * 1000;
+
+	/** Render cache keys of the pages being revalidated, so a page is revalidated only once at a time. */
+	private final ConcurrentMap<String, Boolean> revalidating = new ConcurrentHashMap<String, Boolean>();
+
+	/** Number of revalidations that found the page at the revision it was rendered from. */
+	private final AtomicLong revalidationsUnchanged = new AtomicLong();
+
+	/** Number of revalidations that found a new revision and rendered the page again. */
+	private final AtomicLong revalidationsChanged = new AtomicLong();
+
+	/** Number of revalidations that failed; the stale page stays in the cache. */
+	private final AtomicLong revalidationsFailed = new AtomicLong();
 
 	/**
-	 * Map containing maps of pronouns. The keys of the outer map are country codes. The keys of the
-	 * inner maps are numbers to identify the words.
+	 * Removes the navigation, sidebars, footer and the noise within the article before the
+	 * words are transformed; null if pruning is turned off with the setting 'prune.enabled=false'.
+	 * The noise selectors can be changed with the setting 'prune.noise'.
 	 */
-	private Map<String, Map<Integer, String>> mapPronouns = new HashMap<String, Map<Integer, String>>();
+	private final ContentPruner pruner = Configuration.getBoolean("prune.enabled", true)
+			? new ContentPruner(Configuration.getString("prune.noise", ContentPruner.DEFAULT_NOISE)) : null;
+
+	/** Default maximum estimated memory of the cached paragraph gaps in bytes. */
+	private static final long DEFAULT_PARAGRAPH_CACHE_MAX_BYTES = 32L * 1024 * 1024;
 
 	/**
-	 * Reference to a map with the words to remove. This depends on the chosen word class and could be
-	 * either mapArticles, mapPrepositions or mapPronouns.
+	 * Cache of the gaps of paragraphs seen before, for all word classes but RANDOM; null if
+	 * turned off with the setting 'paragraph.cache.maxBytes=0'.
 	 */
-	private Map<String, Map<Integer, String>> mapWordsToRemove;
+	private final ParagraphCache paragraphCache = createParagraphCache();
+
+	/** Durations of the stages and counters of the processed pages. */
+	private final PipelineMetrics metrics = new PipelineMetrics();
 
 	/** A logger instance. */
 	private static final Logger logger = Logger.getLogger(Parser.class.getName());
 
 
 	/**
-	 * Constructor. No default constructor exists.
+	 * Constructor reading the lookup tables from a directory.
 	 *
 	 * @param path to the directory containing the initialization file 'supported_languages', as well as
 	 * the various files 'articles_xx', 'preposition_xx' and 'pronouns_xx'.
@@ -250,17 +212,62 @@ public class Parser {
 			throw new IllegalArgumentException("Invalid Parameter: " +  path);
 		}
 
+		LexiconRegistry registry;
 		try {
-			initialize(path);
+			registry = LexiconRegistry.fromDirectory(path);
 		}
 		catch (Exception e) {
 			logger.log(Level.SEVERE, "Exception occurred: " + e.getMessage());
+			registry = LexiconRegistry.empty();
 		}
+		this.lexicon = registry;
+		this.pageFetcher = new PageFetcher();
+	}
+
+	/**
+	 * Constructor using an already loaded, shared lexicon.
+	 *
+	 * @param lexicon - the lookup tables of all supported languages and word classes.
+	 */
+	public Parser(LexiconRegistry lexicon) {
+		this(lexicon, new PageFetcher());
+	}
+
+	/**
+	 * Constructor using an already loaded, shared lexicon and a given source of pages, e.g. saved
+	 * pages for tests and benchmarks without network access.
+	 *
+	 * @param lexicon - the lookup tables of all supported languages and word classes.
+	 * @param documentSource - where the Wikipedia pages are loaded from.
+	 */
+	Parser(LexiconRegistry lexicon, DocumentSource documentSource) {
+		this(lexicon, new PageFetcher(documentSource));
+	}
+
+	/**
+	 * Constructor using an already loaded, shared lexicon and a given page fetcher.
+	 *
+	 * @param lexicon - the lookup tables of all supported languages and word classes.
+	 * @param pageFetcher - fetches the Wikipedia pages.
+	 */
+	Parser(LexiconRegistry lexicon, PageFetcher pageFetcher) {
+		// Parameter check.
+		if (lexicon == null) {
+			logger.log(Level.SEVERE, "Parameter is invalid: " + lexicon);
+			throw new IllegalArgumentException("Invalid Parameter: " +  lexicon);
+		}
+		if (pageFetcher == null) {
+			logger.log(Level.SEVERE, "Parameter is invalid: " + pageFetcher);
+			throw new IllegalArgumentException("Invalid Parameter: " +  pageFetcher);
+		}
+
+		this.lexicon = lexicon;
+		this.pageFetcher = pageFetcher;
 	}
 
 	/**
 	 * The main access method. Converts a Wikipedia page into an enhanced version for language
-	 * learning purposes.
+	 * learning purposes. Thread-safe.
 	 *
 	 * @param url - a URL of a Wikipedia page of a supported language.
 	 * @param wordClass - the class of the words to remove.
@@ -268,252 +275,504 @@ public class Parser {
 	 * @throws IOException
 	 */
 	public String processSite(String url, WordClass wordClass) throws IOException {
+		return processSite(url, wordClass, null);
+	}
+
+	/**
+	 * Converts a Wikipedia page into an enhanced version for language learning purposes. With a
+	 * seed, the gaps of random word removal are reproducible: the same page and seed always give
+	 * the same output. Thread-safe.
+	 *
+	 * @param url - a URL of a Wikipedia page of a supported language.
+	 * @param wordClass - the class of the words to remove.
+	 * @param seed - seed of the random word removal, or null for different gaps every time.
+	 * @return enhanced Wikipedia page or a page with a message, should an error occur.
+	 * @throws IOException
+	 */
+	public String processSite(String url, WordClass wordClass, Long seed) throws IOException {
+		String message = checkRequest(url, wordClass);
+		if (message != null) {
+			return message;
+		}
+
+		PageCache.Entry rendered = lookUpRendered(url, wordClass, seed);
+		if (rendered != null) {
+			return rendered.getHtml();
+		}
+
+		// Initialization of processing.
+		ProcessingContext context = createContext(url, wordClass, seed);
+
+		// Processing of document.
+		return transform(extractHtml(url, context), url, seed, context);
+	}
+
+	/**
+	 * Asynchronous version of processSite(). The page is fetched on the fetch executor and
+	 * transformed on the transform executor, so the calling thread is never blocked. Unlike
+	 * processSite(), it does not look up the render cache, so the caller can serve a cached page
+	 * without leaving its thread, see lookUpRendered(); the result is put into the cache, though.
+	 * Thread-safe.
+	 *
+	 * @param url - a URL of a Wikipedia page of a supported language.
+	 * @param wordClass - the class of the words to remove.
+	 * @param seed - seed of the random word removal, or null for different gaps every time.
+	 * @param fetchExecutor - executor of the fetch stage, which waits for Wikipedia.
+	 * @param transformExecutor - executor of the CPU-bound parse and transform stage.
+	 * @return future of the enhanced Wikipedia page, or a page with a message if the request
+	 * is not valid. The future fails if the page cannot be loaded or processed, so the caller
+	 * can answer with the right status, like the exception of processSite().
+	 */
+	CompletableFuture<String> processSiteAsync(String url, WordClass wordClass, Long seed, Executor fetchExecutor,
+			Executor transformExecutor) {
+		String message = checkRequest(url, wordClass);
+		if (message != null) {
+			return CompletableFuture.completedFuture(message);
+		}
+
+		return renderAsync(url, wordClass, seed, fetchExecutor, transformExecutor);
+	}
+
+	/**
+	 * Variant of processSiteAsync() for requests that have passed checkRequest(). Thread-safe.
+	 *
+	 * @param url - a URL of a Wikipedia page of a supported language.
+	 * @param wordClass - the class of the words to remove.
+	 * @param seed - seed of the random word removal, or null for different gaps every time.
+	 * @param fetchExecutor - executor of the fetch stage, which waits for Wikipedia.
+	 * @param transformExecutor - executor of the CPU-bound parse and transform stage.
+	 * @return future of the enhanced Wikipedia page.
+	 * @throws RejectedExecutionException - if the fetch executor is full.
+	 */
+	CompletableFuture<String> renderAsync(String url, WordClass wordClass, Long seed, Executor fetchExecutor,
+			Executor transformExecutor) {
+		ProcessingContext context = createContext(url, wordClass, seed);
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return extractHtml(url, context);
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, fetchExecutor).thenApplyAsync(html -> transform(html, url, seed, context), transformExecutor);
+	}
+
+	/**
+	 * Streaming version of processSiteAsync(). The enhanced page is not built as a String but
+	 * serialized straight to the output stream in chunks, without pretty printing, as soon as it
+	 * is transformed. Like processSiteAsync(), it leaves the render cache lookup to the caller.
+	 * Thread-safe.
+	 *
+	 * @param url - a URL of a Wikipedia page of a supported language.
+	 * @param wordClass - the class of the words to remove.
+	 * @param seed - seed of the random word removal, or null for different gaps every time.
+	 * @param fetchExecutor - executor of the fetch stage, which waits for Wikipedia.
+	 * @param transformExecutor - executor of the CPU-bound parse, transform and write stage.
+	 * @param out - stream the enhanced page, or a page with a message if the request is not
+	 * valid, is written to. It is flushed but not closed.
+	 * @return future completed when the page has been written; if the client goes away, the
+	 * rest of the page is dropped. The future fails if the page cannot be loaded or processed,
+	 * before anything is written, so the caller can still answer with the right status.
+	 */
+	CompletableFuture<Void> processSiteAsync(String url, WordClass wordClass, Long seed, Executor fetchExecutor,
+			Executor transformExecutor, OutputStream out) {
+		String message = checkRequest(url, wordClass);
+		if (message != null) {
+			writeMessage(message, out);
+			return CompletableFuture.completedFuture(null);
+		}
+
+		ProcessingContext context = createContext(url, wordClass, seed);
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return extractHtml(url, context);
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, fetchExecutor).thenApplyAsync(html -> transformDocument(html, url, context), transformExecutor)
+				.thenAccept(doc -> writePage(doc, url, seed, context, out));
+	}
+
+	/**
+	 * Checks the parameters of a request.
+	 *
+	 * @param url - a URL of a Wikipedia page of a supported language.
+	 * @param wordClass - the class of the words to remove.
+	 * @return a page with a message if the request cannot be processed, null otherwise.
+	 */
+	String checkRequest(String url, WordClass wordClass) {
 		// Checking of parameters.
 		if (url == null) {
 			logger.log(Level.SEVERE, "Invalid parameter - url is null.");
-			return MESSAGE_PAGE.replaceAll(PLACE_HOLDER, MESSAGE_INVALID_PARAMETER);
+			return HtmlFragments.messagePage(MESSAGE_INVALID_PARAMETER);
+		}
+		if (url.isEmpty()) {
+			logger.log(Level.SEVERE, "Invalid parameter - url is empty.");
+			return HtmlFragments.messagePage(MESSAGE_INVALID_PARAMETER);
 		}
 		if (wordClass == null) {
 			logger.log(Level.SEVERE, "Invalid parameter - wordClass is null.");
-			return MESSAGE_PAGE.replaceAll(PLACE_HOLDER, MESSAGE_INVALID_PARAMETER);
+			return HtmlFragments.messagePage(MESSAGE_INVALID_PARAMETER);
 		}
 		if (!isWikiPage(url)) {
 			logger.log(Level.SEVERE, "Invalid parameter (url) - only Wikipedia pages supported.");
-			return MESSAGE_PAGE.replaceAll(PLACE_HOLDER, MESSAGE_ONLY_WIKI_SUPPORTED);
+			return HtmlFragments.messagePage(MESSAGE_ONLY_WIKI_SUPPORTED);
 		}
 		String language = extractLanguage(url);
 		if (!isLanguageSupported(language)) {
 			logger.log(Level.SEVERE, "Invalid parameter (url). Language: " + language + " not supported.");
-			return MESSAGE_PAGE.replaceAll(PLACE_HOLDER, MESSAGE_LANGUAGE_NOT_SUPPORTED);
+			return HtmlFragments.messagePage(MESSAGE_LANGUAGE_NOT_SUPPORTED);
 		}
+		return null;
+	}
 
-		// Initialization of processing.
-		setLanguage(language);
-		setWordClass(wordClass);
-		selectCorrespondigMap(wordClass);
+	/**
+	 * Turns a fetched Wikipedia page into the enhanced version.
+	 *
+	 * @param html - the HTML of the fetched page.
+	 * @param url - URL of the page, the base URI of relative links.
+	 * @param seed - seed of the random word removal, or null.
+	 * @param context - the state of the processing of the page.
+	 * @return the enhanced page.
+	 */
+	private String transform(String html, String url, Long seed, ProcessingContext context) {
+		Document doc = transformDocument(html, url, context);
+		long start = System.nanoTime();
+		// Serialized as writePage() does, so the render cache holds the same page either way.
+		doc.outputSettings().prettyPrint(false).charset(ENCODING);
+		String page = doc.outerHtml();
+		countPage(context, System.nanoTime() - start, PipelineMetrics.utf8Length(page));
+		String key = renderKey(url, context.getWordClass(), seed);
+		if (key != null) {
+			renderCache.put(key, page, System.currentTimeMillis(), context.getRevision());
+		}
+		return page;
+	}
 
-		// Processing of document.
-		Document doc = extractDocument(url);
-		processParagraphs(doc);
-		processLinks(doc);
+	/**
+	 * Parses a fetched Wikipedia page, prunes it to the article and enhances the document. The
+	 * duration of every stage is recorded in the metrics.
+	 *
+	 * @param html - the HTML of the fetched page.
+	 * @param url - URL of the page, the base URI of relative links.
+	 * @param context - the state of the processing of the page.
+	 * @return the enhanced document.
+	 */
+	private Document transformDocument(String html, String url, ProcessingContext context) {
+		long start = System.nanoTime();
+		Document doc = Jsoup.parse(html, UrlNormalizer.normalize(url));
+		long parsed = System.nanoTime();
+		if (pruner != null) {
+			pruner.prune(doc);
+		}
+		long pruned = System.nanoTime();
+		int gaps = processParagraphs(doc, context);
+		context.addGaps(gaps);
+		long paragraphsDone = System.nanoTime();
+		processLinks(doc, context);
 
 		Elements body = doc.getElementsByTag("body");
+		if (gaps > 0 && usesSharedOptions(context)) {
+			body.first().appendChild(HtmlFragments.optionsTemplate(context.getSelect()));
+		}
 		Elements head = doc.getElementsByTag("head");
-		Elements select = doc.getElementsByTag("select");
-		select.prepend("<option selected='true' disabled='disabled'>Select</option>");
 		head.append("<link rel='stylesheet' href='stylesheets/wiki.css'>");
 		body.append("<script src='http://code.jquery.com/jquery-1.10.2.min.js'>");
 		body.append("<script src='javascripts/main.js'>");
+		long linksDone = System.nanoTime();
+
+		String language = context.getLanguage();
+		WordClass wordClass = context.getWordClass();
+		metrics.record(PipelineMetrics.Stage.PARSE, language, wordClass, parsed - start);
+		metrics.record(PipelineMetrics.Stage.PRUNE, language, wordClass, pruned - parsed);
+		metrics.record(PipelineMetrics.Stage.PARAGRAPHS, language, wordClass, paragraphsDone - pruned);
+		metrics.record(PipelineMetrics.Stage.LINKS, language, wordClass, linksDone - paragraphsDone);
+		return doc;
+	}
 
-		return doc.outerHtml();
+	/**
+	 * Serializes an enhanced document to a stream in chunks, without pretty printing. A gzip
+	 * compressed copy is collected on the way and put into the render cache, unless the client
+	 * goes away first.
+	 *
+	 * @param doc - the enhanced document.
+	 * @param url - URL of the page.
+	 * @param seed - seed of the random word removal, or null.
+	 * @param context - the state of the processing of the page.
+	 * @param out - the stream; it is flushed but not closed.
+	 */
+	private void writePage(Document doc, String url, Long seed, ProcessingContext context, OutputStream out) {
+		long start = System.nanoTime();
+		doc.outputSettings().prettyPrint(false).charset(ENCODING);
+		CountingOutputStream counter = new CountingOutputStream(out);
+		String key = renderKey(url, context.getWordClass(), seed);
+		try {
+			OutputStream target = counter;
+			ByteArrayOutputStream compressed = null;
+			GZIPOutputStream copy = null;
+			if (key != null) {
+				compressed = new ByteArrayOutputStream(CHUNK_SIZE);
+				copy = new GZIPOutputStream(compressed, CHUNK_SIZE);
+				target = new TeeOutputStream(counter, copy);
+			}
+			Writer writer = new BufferedWriter(new OutputStreamWriter(target, ENCODING), CHUNK_SIZE);
+			doc.html(writer);
+			writer.flush();
+			if (copy != null) {
+				copy.finish();
+				renderCache.putCompressed(key, compressed.toByteArray(), (int) counter.getCount(), System.currentTimeMillis(),
+						context.getRevision());
+			}
+		}
+		catch (IOException e) {
+			logger.log(Level.FINE, "Client went away while writing the page.", e);
+		}
+		countPage(context, System.nanoTime() - start, counter.getCount());
 	}
 
 	/**
-	 * Getter method for the supported languages.
+	 * Looks up the rendered page of a request in the render cache. Thread-safe.
 	 *
-	 * @return a set with the codes of all supported languages.
+	 * @param url - a URL of a Wikipedia page, as given by the client.
+	 * @param wordClass - the class of the words to remove.
+	 * @param seed - seed of the random word removal, or null.
+	 * @return the rendered page, or null if it is not cached or cannot be cached.
 	 */
-	public Set<String> getSupportedLanguages() {
-		return supportedLanguages;
+	PageCache.Entry lookUpRendered(String url, WordClass wordClass, Long seed) {
+		String key = renderKey(url, wordClass, seed);
+		return key == null ? null : renderCache.get(key);
 	}
 
 	/**
-	 * Checks if a given language is supported at the moment.
+	 * Looks up the rendered page of a request in the render cache, accepting an expired page for
+	 * a while (stale-while-revalidate). An expired page is returned as it is, and a fresh one is
+	 * made in the background, see revalidate(). Thread-safe.
 	 *
-	 * @param language - code of a language.
-	 * @return true if the given method is supported, false otherwise;
-	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 * @param url - a URL of a Wikipedia page, as given by the client.
+	 * @param wordClass - the class of the words to remove.
+	 * @param seed - seed of the random word removal, or null.
+	 * @param fetchExecutor - executor of the fetch stage of a revalidation.
+	 * @param transformExecutor - executor of the transform stage of a revalidation.
+	 * @return the rendered page, or null if it is not cached, expired too long ago or cannot be
+	 * cached.
 	 */
-	public boolean isLanguageSupported(String language) {
-		// Parameter check.
-		if (language == null) {
-			logger.log(Level.SEVERE, "Invalid parameter - language is null.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  language);
+	PageCache.Entry lookUpRendered(String url, WordClass wordClass, Long seed, Executor fetchExecutor,
+			Executor transformExecutor) {
+		String key = renderKey(url, wordClass, seed);
+		if (key == null) {
+			return null;
 		}
-
-		return supportedLanguages.contains(language);
+		PageCache.Entry entry = renderCache.get(key, renderStaleMillis);
+		if (entry != null && !renderCache.isFresh(entry)) {
+			revalidate(url, wordClass, seed, key, entry, fetchExecutor, transformExecutor);
+		}
+		return entry;
 	}
 
 	/**
-	 * Reads the configuration tables into the system.
+	 * Refreshes an expired rendered page in the background. The page is fetched again; if
+	 * Wikipedia still has the revision it was rendered from, the cached render is kept and only
+	 * its time is renewed, without any transforming. Otherwise the page is rendered again, where
+	 * the paragraph cache supplies the gaps of all paragraphs the edit did not touch, so only the
+	 * changed paragraphs are transformed. Only one revalidation of a page runs at a time, and
+	 * none is started if the executors are full.
 	 *
-	 * @param directoryPath - path to the directory containing the configuration files.
-	 * @throws IOException - if problems with IO occur.
-	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 * @param url - a URL of a Wikipedia page of a supported language.
+	 * @param wordClass - the class of the words to remove.
+	 * @param seed - seed of the random word removal, or null.
+	 * @param key - the render cache key of the page.
+	 * @param stale - the expired rendered page.
+	 * @param fetchExecutor - executor of the fetch stage.
+	 * @param transformExecutor - executor of the transform stage.
 	 */
-	private void initialize(String directoryPath) throws IOException {
-		// Parameter check.
-		if (directoryPath == null) {
-			logger.log(Level.SEVERE, "Invalid parameter - directoryPath is null.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  directoryPath);
+	private void revalidate(String url, WordClass wordClass, Long seed, String key, PageCache.Entry stale,
+			Executor fetchExecutor, Executor transformExecutor) {
+		if (revalidating.putIfAbsent(key, Boolean.TRUE) != null) {
+			return;
+		}
+		ProcessingContext context = createContext(url, wordClass, seed);
+		try {
+			CompletableFuture.supplyAsync(() -> {
+				try {
+					// A copy of the page loaded before the render, even an unexpired one from the
+					// article store, would only renew the stale render.
+					return extractNewHtml(url, context, stale.getFetchedAt());
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, fetchExecutor).thenAcceptAsync(html -> {
+				long revision = context.getRevision();
+				if (revision != RevisionId.UNKNOWN && revision == stale.getRevision()) {
+					renderCache.putCompressed(key, stale.getCompressedHtml(), stale.getSize(), System.currentTimeMillis(), revision);
+					revalidationsUnchanged.incrementAndGet();
+				}
+				else {
+					transform(html, url, seed, context);
+					revalidationsChanged.incrementAndGet();
+				}
+			}, transformExecutor).whenComplete((result, e) -> {
+				revalidating.remove(key);
+				if (e != null) {
+					revalidationsFailed.incrementAndGet();
+					logger.log(Level.WARNING, "Could not revalidate " + url, e);
+				}
+			});
 		}
-		if (directoryPath.isEmpty()) {
-			logger.log(Level.SEVERE, "Invalid parameter - directoryPath is empty.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  directoryPath);
+		catch (RejectedExecutionException e) {
+			// The executors are busy with requests; a later lookup tries again.
+			revalidating.remove(key);
+			logger.log(Level.FINE, "Revalidation of " + url + " skipped, executor full.", e);
 		}
+	}
 
-		initPunctuationSigns();
-		initSupportedLanguages(directoryPath + PATH_SEPARATOR + SUPPORTED_LANGUAGES_FILE);
-		File dir = initDirectory(directoryPath);
-		initLookUpTables(dir);
+	/**
+	 * Builds the render cache key of a request. The lexicon version is part of the key, so a
+	 * changed lexicon never serves renders made with the old one. The seed only matters for
+	 * RANDOM pages; without one, they are meant to differ on every request and are not cached.
+	 *
+	 * @param url - a URL of a Wikipedia page.
+	 * @param wordClass - the class of the words to remove.
+	 * @param seed - seed of the random word removal, or null.
+	 * @return the key, or null if the page cannot be cached.
+	 */
+	private String renderKey(String url, WordClass wordClass, Long seed) {
+		if (url == null || wordClass == null || (wordClass == WordClass.RANDOM && seed == null)) {
+			return null;
+		}
+		StringBuilder key = new StringBuilder(url.length() + 48).append(UrlNormalizer.normalize(url))
+				.append(KEY_SEPARATOR).append(wordClass.name())
+				.append(KEY_SEPARATOR).append(lexicon.getVersion());
+		if (wordClass == WordClass.RANDOM) {
+			key.append(KEY_SEPARATOR).append(seed.longValue());
+		}
+		return key.toString();
 	}
 
 	/**
-	 * Initializes a set containing the supported punctuation signs.
+	 * Creates the context of the processing of a page.
+	 *
+	 * @param url - a URL of a Wikipedia page of a supported language.
+	 * @param wordClass - the class of the words to remove.
+	 * @param seed - seed of the random word removal, or null for a random seed.
+	 * @return the context.
 	 */
-	private void initPunctuationSigns() {
-		punctuationSigns.add(PUNCTUATION_PERIOD);
-		punctuationSigns.add(PUNCTUATION_QUESTION);
-		punctuationSigns.add(PUNCTUATION_EXCLAMATION);
-		punctuationSigns.add(PUNCTUATION_COMMA);
-		punctuationSigns.add(PUNCTUATION_SEMICOLON);
-		punctuationSigns.add(PUNCTUATION_COLON);
-		punctuationSigns.add(PUNCTUATION_APOSTROPHE);
-		punctuationSigns.add(PUNCTUATION_QUOTE);
+	private ProcessingContext createContext(String url, WordClass wordClass, Long seed) {
+		SplittableRandom random = seed == null ? new SplittableRandom() : new SplittableRandom(seed.longValue());
+		return new ProcessingContext(extractLanguage(url), wordClass, lexicon, random);
 	}
 
 	/**
-	 * Reads in the configuration file 'supported_languages'.
+	 * Writes a page with a message to a stream.
 	 *
-	 * @param filename - name of the file including path if necessary.
-	 * @throws IOException - if problems with IO occur.
-	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 * @param message - the page with the message.
+	 * @param out - the stream; it is flushed but not closed.
 	 */
-	private void initSupportedLanguages(String filename) throws IOException {
-		// Parameter check.
-		if (filename == null) {
-			logger.log(Level.SEVERE, "Invalid parameter - filename is null.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  filename);
+	private static void writeMessage(String message, OutputStream out) {
+		try {
+			out.write(message.getBytes(ENCODING));
+			out.flush();
 		}
-		if (filename.isEmpty()) {
-			logger.log(Level.SEVERE, "Invalid parameter - filename is empty.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  filename);
+		catch (IOException e) {
+			logger.log(Level.FINE, "Client went away while writing the message.", e);
 		}
+	}
 
-		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(filename), ENCODING));
-		String line;
-		while((line = reader.readLine()) != null) {
-			line = line.trim();
-			supportedLanguages.add(line);
-		}
-		reader.close();
+	/**
+	 * Records the serialization of a page and counts the page in the metrics.
+	 *
+	 * @param context - the state of the processing of the page.
+	 * @param serializeNanos - duration of the serialization in nanoseconds.
+	 * @param bytes - size of the emitted page in bytes.
+	 */
+	private void countPage(ProcessingContext context, long serializeNanos, long bytes) {
+		metrics.record(PipelineMetrics.Stage.SERIALIZE, context.getLanguage(), context.getWordClass(), serializeNanos);
+		metrics.countPage(context.getLanguage(), context.getWordClass(), context.getGapCount(), bytes);
 	}
 
 	/**
-	 * Initializes the File for the directory.
+	 * Creates the paragraph cache with the configured settings.
 	 *
-	 * @param directory - path to the directory.
-	 * @return an initialized File object for the directory.
-	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 * @return the paragraph cache, or null if it is turned off.
 	 */
-	private File initDirectory(String directory) {
-		// Parameter check.
-		if (directory == null) {
-			logger.log(Level.SEVERE, "Invalid parameter - directory is null.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  directory);
-		}
-		if (directory.isEmpty()) {
-			logger.log(Level.SEVERE, "Invalid parameter - directory is empty.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  directory);
-		}
+	private static ParagraphCache createParagraphCache() {
+		long maxBytes = Configuration.getLong("paragraph.cache.maxBytes", DEFAULT_PARAGRAPH_CACHE_MAX_BYTES);
+		return maxBytes > 0 ? new ParagraphCache(maxBytes) : null;
+	}
 
-		File dir = new File(directory);
-		if (!dir.exists()) {
-			logger.log(Level.SEVERE, "Invalid parameter - directory: " + directory + " does not exist.");
-			throw new IllegalArgumentException("File: " + directory + " does not exist!");
-		}
-		if (!dir.isDirectory()) {
-			logger.log(Level.SEVERE, "Invalid parameter - directory: " + directory + " is not a directory.");
-			throw new IllegalArgumentException(directory + " is not a directory!");
-		}
-		return dir;
+	/**
+	 * Getter for the cache of the gaps of paragraphs.
+	 *
+	 * @return the paragraph cache, or null if it is turned off.
+	 */
+	ParagraphCache getParagraphCache() {
+		return paragraphCache;
 	}
 
 	/**
-	 * Reads in the configuration files 'articles_xx', 'prepositions_xx' and 'pronouns_xx'.
+	 * Getter for the cache of the rendered pages.
 	 *
-	 * @param dir - File object for the directory containing the configuration files.
-	 * @throws IOException - if an IO problem occurs.
-	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 * @return the render cache.
 	 */
-	private void initLookUpTables(File dir) throws IOException {
-		// Parameter check.
-		if (dir == null) {
-			logger.log(Level.SEVERE, "Invalid parameter - dir is null.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  dir);
-		}
+	PageCache getRenderCache() {
+		return renderCache;
+	}
 
-		// Loop over all files contained in the directory.
-		for (String file : dir.list()) {
-			// The respective files should have a name of the format <word-class>_<language_code>
-			String[] parts = file.split(SEPARATOR_INIT_FILE_NAMES);
-			if (parts.length != 2) {
-				// Must be a different file.
-				continue;
-			}
-			switch (parts[INDEX_WORD_CLASS]) {
-			case NAME_ARTICLES_FILE:
-				readInLookUpTable(dir.getPath() + PATH_SEPARATOR + file, mapArticles);
-				break;
-			case NAME_PREPOSITIONS_FILE:
-				readInLookUpTable(dir.getPath() + PATH_SEPARATOR + file, mapPrepositions);
-				break;
-			case NAME_PRONOUNS_FILE:
-				readInLookUpTable(dir.getPath() + PATH_SEPARATOR + file, mapPronouns);
-				break;
-			default:
-				continue;
-			}
-		}
+	/**
+	 * @return number of revalidations that found the page at the revision it was rendered from.
+	 */
+	long getRevalidationsUnchanged() {
+		return revalidationsUnchanged.get();
 	}
 
 	/**
-	 * Helper method for reading in of a configuration file for the word classes.
+	 * @return number of revalidations that found a new revision and rendered the page again.
+	 */
+	long getRevalidationsChanged() {
+		return revalidationsChanged.get();
+	}
+
+	/**
+	 * @return number of revalidations that failed.
+	 */
+	long getRevalidationsFailed() {
+		return revalidationsFailed.get();
+	}
+
+	/**
+	 * Getter for the metrics of the processed pages.
 	 *
-	 * @param filename - name of the file.
-	 * @param map - the respective map containing all lookup table for a certain word class.
-	 * @throws IOException - if an IO problem occurs.
+	 * @return the metrics.
+	 */
+	PipelineMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Getter method for the supported languages.
+	 *
+	 * @return a set with the codes of all supported languages.
+	 */
+	public Set<String> getSupportedLanguages() {
+		return lexicon.getSupportedLanguages();
+	}
+
+	/**
+	 * Checks if a given language is supported at the moment.
+	 *
+	 * @param language - code of a language.
+	 * @return true if the given method is supported, false otherwise;
 	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
 	 */
-	private void readInLookUpTable(String filename, Map<String, Map<Integer, String>> map) throws IOException {
+	public boolean isLanguageSupported(String language) {
 		// Parameter check.
-		if (filename == null) {
-			logger.log(Level.SEVERE, "Invalid parameter - filename is null.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  filename);
-		}
-		if (filename.isEmpty()) {
-			logger.log(Level.SEVERE, "Invalid parameter - filename is empty.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  filename);
-		}
-		if (map == null) {
-			logger.log(Level.SEVERE, "Invalid parameter - map is null.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  map);
-		}
-
-		// The respective files should have name of the format <word-class>_<language_code>
-		String[] parts = filename.split(SEPARATOR_INIT_FILE_NAMES);
-		if (parts.length != 2) {
-			// Must be a different file.
-			return;
-		}
-		String language_table = parts[INDEX_LANGUAGE_CODE];
-		if (!isLanguageSupported(language_table)) {
-			return;
+		if (language == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - language is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  language);
 		}
 
-		// Initialize new lookup table for words of a certain class of a certain language.
-		Map<Integer, String> table = new HashMap<Integer, String>();
-		String line;
-		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(filename), ENCODING));
-		int i=0;
-		// Fill the lookup table.
-		while((line = reader.readLine()) != null) {
-			line = line.trim();
-			table.put(i++, line);
-		}
-		reader.close();
-		// Add the lookup table to the map.
-		map.put(language_table, table);
+		return lexicon.isLanguageSupported(language);
 	}
 
 	/**
@@ -562,42 +821,17 @@ public class Parser {
 	}
 
 	/**
-	 * Selects the respective map containing the lookup table for the given word class.
-	 *
-	 * @param wordClass - the word class to make the selection for.
-	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
-	 */
-	private void selectCorrespondigMap(WordClass wordClass) {
-		// Parameter check.
-		if (wordClass == null) {
-			logger.log(Level.SEVERE, "Invalid parameter - wordClass is null.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  wordClass);
-		}
-
-		switch (wordClass) {
-		case ARTICLES:
-			mapWordsToRemove = mapArticles;
-			break;
-		case PREPOSITIONS:
-			mapWordsToRemove = mapPrepositions;
-			break;
-		case PRONOUNS:
-			mapWordsToRemove = mapPronouns;
-			break;
-		case RANDOM:
-			break;
-		}
-	}
-
-	/**
-	 * Extract a Jsoup document from a give URL.
+	 * Extract the HTML of a page from a give URL. The page is only downloaded if it
+	 * is not in the page cache; an expired cached page is used while it is refreshed.
+	 * The duration is recorded in the metrics.
 	 *
-	 * @param url - a URL to extract a Jsoup document from.
-	 * @return a Jsoup document.
+	 * @param url - a URL to extract the HTML from.
+	 * @param context - the state of the processing of the page.
+	 * @return the HTML of the page.
 	 * @throws IOException - if an IO problem occurs.
 	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
 	 */
-	private Document extractDocument(String url) throws IOException {
+	private String extractHtml(String url, ProcessingContext context) throws IOException {
 		// Parameter check.
 		if (url == null) {
 			logger.log(Level.SEVERE, "Invalid parameter - url is null.");
@@ -608,403 +842,440 @@ public class Parser {
 			throw new IllegalArgumentException("Invalid Parameter: " +  url);
 		}
 
-		return Jsoup.connect(url).get();
+		long start = System.nanoTime();
+		String html = pageFetcher.fetchHtml(url);
+		context.setRevision(RevisionId.parse(html));
+		metrics.record(PipelineMetrics.Stage.FETCH, context.getLanguage(), context.getWordClass(), System.nanoTime() - start);
+		return html;
+	}
+
+	/**
+	 * Extract the HTML of a page as loaded after a given time, for revalidation. The duration
+	 * is recorded in the metrics.
+	 *
+	 * @param url - a URL to extract the HTML from.
+	 * @param context - the state of the processing of the page.
+	 * @param fetchedAfter - the page must have been loaded after this time.
+	 * @return the HTML of the page.
+	 * @throws IOException - if an IO problem occurs.
+	 */
+	private String extractNewHtml(String url, ProcessingContext context, long fetchedAfter) throws IOException {
+		long start = System.nanoTime();
+		String html = pageFetcher.fetchNewHtml(url, fetchedAfter);
+		context.setRevision(RevisionId.parse(html));
+		metrics.record(PipelineMetrics.Stage.FETCH, context.getLanguage(), context.getWordClass(), System.nanoTime() - start);
+		return html;
 	}
 
 	/**
 	 * Processes the paragraphs of an HTML document (<p>...</p>).
 	 * Within these paragraphs it removes certain words and substitutes them
-	 * with dynamically created select elements.
+	 * with select elements. The text nodes of a paragraph are changed in place,
+	 * so inline markup like links or formatting is kept.
 	 *
 	 * @param doc - a Jsoup document.
+	 * @param context - the state of the processing of the current page.
+	 * @return number of gaps inserted.
 	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
 	 */
-	private void processParagraphs(Document doc) {
+	int processParagraphs(Document doc, ProcessingContext context) {
 		// Parameter check.
 		if (doc == null) {
 			logger.log(Level.SEVERE, "Invalid parameter - doc is null.");
 			throw new IllegalArgumentException("Invalid Parameter: " +  doc);
 		}
+		if (context == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - context is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  context);
+		}
 
+		int count = 0;
 		Elements paragraphs = doc.select(PARAGRAPH);
 		// Loop over all HTML paragraphs.
 		for (Element paragraph : paragraphs) {
-			// Call change text to replace certain words with a placeholder and a
-			// numerical marker for the occurrence.
-			String text = paragraph.text();
-			if (text.isEmpty()) {
+			List<TextNode> textNodes = collectTextNodes(paragraph);
+			if (textNodes.isEmpty()) {
 				continue;
 			}
-			String changedText = changeText(paragraph.text());
-			paragraph.text(EMPTY_STRING);
-			boolean firstTime = true;
-			// Split the changed text at the placeholders.
-			for (String part : changedText.split(PLACE_HOLDER)) {
-				if (part.isEmpty()) {
-					continue;
-				}
-				// Look for the occurrence marker at the beginning of a word
-				int begin = part.indexOf(MARKER_OCCURRENCE_OPENING);
-				int end = part.indexOf(MARKER_OCCURRENCE_CLOSING);
-				// Skip, if no occurrence marker can be found.
-				if (begin < 0 || end < 0) {
-					paragraph.append(part);
-					continue;
-				}
-				// Extract the number from the occurrence marker.
-				String tmp = part.substring(begin+1, end);
-				int number = Integer.parseInt(tmp);
-				part = part.substring(end+1);
-				// Insert a selection element containing all respective options inside a span tag with the occurrence number.
-				if (!firstTime) {
-					paragraph.append(SPAN_OPENING.replaceAll(PLACE_HOLDER, String.valueOf(number)) + getSelect() + SPAN_CLOSING);
-				}
-				else {
-					firstTime = false;
-				}
-				paragraph.append(part);
+			// Find the words to replace in every text node, then substitute them.
+			List<GapLayout> gaps = changeTextMemoized(textNodes, context);
+			for (int i=0; i<textNodes.size(); i++) {
+				insertGaps(textNodes.get(i), gaps.get(i), getSelect(context));
+				count += gaps.get(i).size();
 			}
 		}
+		return count;
 	}
 
 	/**
-	 * Change text, substituting certain words with placeholders and occurrence markers containing an identification number.
+	 * Collects all non-blank text nodes of an element, including those of nested elements.
 	 *
-	 * @param text - text to be processed.
-	 * @return processed text.
-	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 * @param element - the element.
+	 * @return the text nodes in document order.
 	 */
-	private String changeText(String text) {
-		// Parameter check.
-		if (text == null) {
-			logger.log(Level.SEVERE, "Invalid parameter - text is null.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  text);
-		}
-		if (text.isEmpty()) {
-			logger.log(Level.SEVERE, "Invalid parameter - text is empty.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  text);
-		}
+	private List<TextNode> collectTextNodes(Element element) {
+		final List<TextNode> textNodes = new ArrayList<TextNode>();
+		element.traverse(new NodeVisitor() {
+			@Override
+			public void head(Node node, int depth) {
+				if (node instanceof TextNode && !((TextNode) node).isBlank()) {
+					textNodes.add((TextNode) node);
+				}
+			}
 
-		// Choose the respective method.
-		if (wordClass == WordClass.RANDOM) {
-			return changeTextRandom(text);
-		}
-		return changeTextArticlesAndPronouns(text);
+			@Override
+			public void tail(Node node, int depth) {
+			}
+		});
+		return textNodes;
 	}
 
 	/**
-	 * Change text, substituting random words with placeholders and occurrence markers containing an identification number.
+	 * Replaces the gaps of a text node by span elements containing a copy of a select element.
+	 * The text between the gaps is kept as new text nodes.
 	 *
-	 * @param text - text to be processed.
-	 * @return processed text.
-	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 * @param textNode - the text node to change.
+	 * @param gaps - the gaps within the text of the node, in ascending order.
+	 * @param select - the select element to copy into every gap.
 	 */
-	private String changeTextRandom(String text){
-		// Parameter check.
-		if (text == null) {
-			logger.log(Level.SEVERE, "Invalid parameter - text is null.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  text);
+	private void insertGaps(TextNode textNode, GapLayout gaps, Element select) {
+		if (gaps.isEmpty()) {
+			return;
 		}
-		if (text.isEmpty()) {
-			logger.log(Level.SEVERE, "Invalid parameter - text is empty.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  text);
+		String text = textNode.getWholeText();
+		String baseUri = textNode.baseUri();
+		List<Node> nodes = new ArrayList<Node>(gaps.size() * 2 + 1);
+		int position = 0;
+		for (int i=0; i<gaps.size(); i++) {
+			if (gaps.start(i) > position) {
+				nodes.add(new TextNode(text.substring(position, gaps.start(i)), baseUri));
+			}
+			nodes.add(HtmlFragments.spanElement(gaps.number(i), select));
+			position = gaps.end(i);
 		}
-
-		List<String> wordList = tokenizeText(text);
-		Map<Integer, String> removedWords = removeWordsRandomly(wordList);
-		setSelect(buildSelectTag(removedWords));
-
-		return  wordListToString(wordList);
+		if (position < text.length()) {
+			nodes.add(new TextNode(text.substring(position), baseUri));
+		}
+		Element parent = (Element) textNode.parent();
+		parent.insertChildren(textNode.siblingIndex(), nodes);
+		textNode.remove();
 	}
 
 	/**
-	 * Tokenizes text.
+	 * Finds the words to substitute in the text nodes of one paragraph.
 	 *
-	 * @param text - text to be tokenized.
-	 * @return a list containing the tokens.
+	 * @param textNodes - the text nodes of a paragraph.
+	 * @param context - the state of the processing of the current page.
+	 * @return the gaps per text node, in the same order as the text nodes.
 	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
 	 */
-	private List<String> tokenizeText(String text) {
+	private List<GapLayout> changeText(List<TextNode> textNodes, ProcessingContext context) {
 		// Parameter check.
-		if (text == null) {
-			logger.log(Level.SEVERE, "Invalid parameter - text is null.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  text);
+		if (textNodes == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - textNodes is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  textNodes);
 		}
-		if (text.isEmpty()) {
-			logger.log(Level.SEVERE, "Invalid parameter - text is empty.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  text);
-		}
-
-		List<String> wordList = new ArrayList<String>();
-		for (String word : text.split(REGEX_WHITE_SPACE)) {
-			int length = word.length();
-
-			String punctuationSign = "";
-			if (isPunctuationSign(word.charAt(length-1))) {
-				word = word.substring(0, length-1);
-				punctuationSign = word.substring(length-1);
 
-				if (!word.isEmpty()) {
-					wordList.add(word);
-				}
-				wordList.add(punctuationSign);
-			}
-			else {
-				wordList.add(word);
-			}
+		// Choose the respective method.
+		if (context.getWordClass() == WordClass.RANDOM) {
+			return changeTextRandom(textNodes, context);
+		}
+		List<GapLayout> gaps = new ArrayList<GapLayout>(textNodes.size());
+		for (TextNode textNode : textNodes) {
+			gaps.add(changeTextArticlesAndPronouns(textNode.getWholeText(), context));
 		}
-		return wordList;
+		return gaps;
 	}
 
 	/**
-	 * Change text, substituting certain words of class article,  prepositions or pronouns
-	 * with placeholders and occurrence markers containing an identification number.
+	 * Finds the words to substitute in the text nodes of one paragraph, taking the gaps of a
+	 * paragraph seen before from the paragraph cache. Random gaps are never cached.
 	 *
-	 * @param text - text to be processed.
-	 * @return processed text.
-	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 * @param textNodes - the text nodes of a paragraph.
+	 * @param context - the state of the processing of the current page.
+	 * @return the gaps per text node, in the same order as the text nodes; not to be modified.
 	 */
-	private String changeTextArticlesAndPronouns(String text) {
-		// Parameter check.
-		if (text == null) {
-			logger.log(Level.SEVERE, "Invalid parameter - text is null.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  text);
+	private List<GapLayout> changeTextMemoized(List<TextNode> textNodes, ProcessingContext context) {
+		if (paragraphCache == null || context.getWordClass() == WordClass.RANDOM) {
+			return changeText(textNodes, context);
 		}
-		if (text.isEmpty()) {
-			logger.log(Level.SEVERE, "Invalid parameter - text is empty.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  text);
+		List<String> texts = new ArrayList<String>(textNodes.size());
+		for (TextNode textNode : textNodes) {
+			texts.add(textNode.getWholeText());
 		}
+		long key = ParagraphCache.key(context.getLanguage(), context.getWordClass(), texts);
+		int length = ParagraphCache.length(texts);
+		List<GapLayout> gaps = paragraphCache.get(key, length);
+		if (gaps == null || gaps.size() != textNodes.size()) {
+			gaps = changeText(textNodes, context);
+			paragraphCache.put(key, length, gaps);
+		}
+		return gaps;
+	}
 
-		StringBuffer buf = new StringBuffer();
-		boolean firstTime = true;
-		// Tokenize words.
-		for (String word : text.split(REGEX_WHITE_SPACE)) {
-			if (!firstTime) {
-				buf.append(SPACE);
-			}
-			else {
-				firstTime = false;
-			}
-			boolean found = false;
-			// Look the word up in the respective lookup table.
-			for (Entry<Integer, String> entry : mapWordsToRemove.get(language).entrySet()) {
-				// Replace it by a placeholder and an occurrence marker with the respective number.
-				if (entry.getValue().equals(word)) {
-					found = true;
-					buf.append(PLACE_HOLDER + MARKER_OCCURRENCE.replaceAll(PLACE_HOLDER, entry.getKey().toString()));
+	/**
+	 * Chooses random words of the text nodes of one paragraph as gaps. Creates the
+	 * corresponding select element and stores it in the context.
+	 *
+	 * @param textNodes - the text nodes of a paragraph.
+	 * @param context - the state of the processing of the current page.
+	 * @return the gaps per text node, in the same order as the text nodes.
+	 */
+	private List<GapLayout> changeTextRandom(List<TextNode> textNodes, ProcessingContext context) {
+		List<GapLayout> wordLists = new ArrayList<GapLayout>(textNodes.size());
+		List<String> texts = new ArrayList<String>(textNodes.size());
+		for (TextNode textNode : textNodes) {
+			String text = textNode.getWholeText();
+			texts.add(text);
+			wordLists.add(tokenizeText(text, new GapLayout()));
+		}
+		Map<Integer, String> removedWords = removeWordsRandomly(wordLists, texts, context.getRandom());
+		context.setSelect(HtmlFragments.selectElement(removedWords));
+
+		// Keep only the removed words as gaps.
+		List<GapLayout> gaps = new ArrayList<GapLayout>(wordLists.size());
+		for (GapLayout wordList : wordLists) {
+			GapLayout removed = new GapLayout();
+			for (int i=0; i<wordList.size(); i++) {
+				if (wordList.number(i) != GapLayout.NO_NUMBER) {
+					removed.add(wordList.start(i), wordList.end(i), wordList.number(i));
 				}
 			}
-			// If word is not contained in the lookup table, just copy it to the output.
-			if (!found) {
-				buf.append(word);
-			}
+			gaps.add(removed);
 		}
-		return buf.toString();
+		return gaps;
 	}
 
 	/**
-	 * Processes links of Wikipedia pages, since they have to be slightly adapted.
-	 * @param doc - a Jsoup document
+	 * Tokenizes text. Words are separated by white space; a trailing punctuation
+	 * sign does not belong to a word.
+	 *
+	 * @param text - text to be tokenized.
+	 * @param words - layout to write the positions of the words to; it is cleared first.
+	 * @return the positions of the words, none of them numbered yet.
 	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
 	 */
-	private void processLinks(Document doc) {
+	GapLayout tokenizeText(String text, GapLayout words) {
 		// Parameter check.
-		if (doc == null) {
-			logger.log(Level.SEVERE, "Invalid parameter - doc is null.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  doc);
+		if (text == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - text is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  text);
 		}
-
-		Elements links = doc.select(LINK_TO_STYLESHEET);
-		for (Element link : links) {
-			String href = link.attr(REFERENCE_LINK);
-			link.attr(REFERENCE_LINK, PROTOCOL + language + BASE_PATH + href);
+		if (words == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - words is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  words);
 		}
+
+		return Tokenizer.tokenize(text, words);
 	}
 
 	/**
-	 * Removes words from a list and substitutes them with placeholders containing
-	 * an identifying number. Returns a list with the randomly removed words.
+	 * Finds the words of class article, prepositions or pronouns in a text. Every word
+	 * is looked up in the respective lookup table. If a word followed by a punctuation
+	 * sign is not found, it is looked up once more together with the sign, since some
+	 * entries end with one, e.g. the Italian dell'.
 	 *
-	 * @param wordList - list of words to randomly remove words from.
-	 * @return list of randomly removed words.
+	 * @param text - text to be processed.
+	 * @param context - the state of the processing of the current page.
+	 * @return the gaps, numbered with the number of the word in the lookup table.
 	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
 	 */
-	private Map<Integer, String> removeWordsRandomly(List<String> wordList) {
+	GapLayout changeTextArticlesAndPronouns(String text, ProcessingContext context) {
 		// Parameter check.
-		if (wordList == null) {
-			logger.log(Level.SEVERE, "Invalid parameter - wordList is null.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  wordList);
+		if (text == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - text is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  text);
 		}
 
-		Map<Integer, String> removedWords = new HashMap<Integer, String>();
-		int size = wordList.size();
-		for (int i=0; i<size/WORDS_PER_REMOVAL; i++) {
-			int random = randomNumber(size);
-			String wordToRemove = wordList.get(random);
-			if (wordToRemove.startsWith(PLACE_HOLDER)) {
-				continue;
+		GapLayout words = tokenizeText(text, context.getTokens());
+		GapLayout gaps = new GapLayout();
+		for (int i=0; i<words.size(); i++) {
+			int start = words.start(i);
+			int end = words.end(i);
+			int number = lookUp(text, start, end, context);
+			if (number == LexiconIndex.NOT_FOUND && end < text.length() && Tokenizer.isPunctuationSign(text.charAt(end))) {
+				end++;
+				number = lookUp(text, start, end, context);
+			}
+			if (number != LexiconIndex.NOT_FOUND) {
+				gaps.add(start, end, number);
 			}
-			wordList.set(random, PLACE_HOLDER + MARKER_OCCURRENCE.replaceAll(PLACE_HOLDER, String.valueOf(i)));
-			removedWords.put(new Integer(i), wordToRemove);
 		}
-		return removedWords;
+		return gaps;
 	}
 
 	/**
-	 * Dynamically builds a select element from a list of removed words.
+	 * Looks up the word between two positions of a text, either in the compiled lookup
+	 * index or by scanning the lookup table.
 	 *
-	 * @param removedWords - list of removed words.
-	 * @return a String containing a select element with the removed words as options and the numbers as values.
-	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 * @param text - text containing the word.
+	 * @param start - index of the first character of the word.
+	 * @param end - index after the last character of the word.
+	 * @param context - the state of the processing of the current page.
+	 * @return the number of the word in the lookup table, or LexiconIndex.NOT_FOUND.
 	 */
-	private String buildSelectTag(Map<Integer, String> removedWords) {
-		// Parameter check.
-		if (removedWords == null) {
-			logger.log(Level.SEVERE, "Invalid parameter - removedWords is null.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  removedWords);
+	private int lookUp(String text, int start, int end, ProcessingContext context) {
+		if (useLookUpIndex) {
+			return context.getWordsToRemoveIndex().lookUp(text, start, end);
 		}
-
-		StringBuffer buf = new StringBuffer();
-		buf.append(SELECT_OPENING);
-		for (Entry<Integer, String> entry : removedWords.entrySet()) {
-			buf.append(OPTION_OPENING.replaceAll(PLACE_HOLDER, entry.getKey().toString()) + entry.getValue() + OPTION_CLOSING);
-		}
-		buf.append(SELECT_CLOSING);
-
-		return buf.toString();
+		return lookUpByScan(text.substring(start, end), context);
 	}
 
 	/**
-	 * Creates from a word list a string of words with spaces between them.
+	 * Looks a word up by comparing it with every entry of the lookup table. Only used,
+	 * if the compiled lookup index is switched off for benchmarking.
 	 *
-	 * @param wordList - list of words
-	 * @return String of words with spaces between them.
-	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 * @param word - the word.
+	 * @param context - the state of the processing of the current page.
+	 * @return the lowest number of the word in the lookup table, or LexiconIndex.NOT_FOUND.
 	 */
-	private String wordListToString(List<String> wordList) {
-		// Parameter check.
-		if (wordList == null) {
-			logger.log(Level.SEVERE, "Invalid parameter - wordList is null.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  wordList);
-		}
-
-		StringBuffer buf = new StringBuffer();
-		boolean firstTime = true;
-		for (String word : wordList) {
-			if (!firstTime) {
-				buf.append(SPACE);
+	private int lookUpByScan(String word, ProcessingContext context) {
+		int found = LexiconIndex.NOT_FOUND;
+		for (Entry<Integer, String> entry : context.getWordsToRemove().entrySet()) {
+			if (entry.getValue().equals(word) && (found == LexiconIndex.NOT_FOUND || entry.getKey() < found)) {
+				found = entry.getKey();
 			}
-			else {
-				firstTime = false;
-			}
-			buf.append(word);
 		}
-		return buf.toString();
+		return found;
 	}
 
 	/**
-	 * Calculates a random number between zero and max exclusively.
-	 *
-	 * @param max - the maximum the random number can reach.
-	 * @return the random number.
+	 * Processes links of Wikipedia pages, since they have to be slightly adapted.
+	 * @param doc - a Jsoup document
+	 * @param context - the state of the processing of the current page.
 	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
 	 */
-	private static int randomNumber(int max) {
+	private void processLinks(Document doc, ProcessingContext context) {
 		// Parameter check.
-		if (max < 0) {
-			logger.log(Level.SEVERE, "Invalid parameter - max is negativ: " + max);
-			throw new IllegalArgumentException("Invalid Parameter: " +  max);
+		if (doc == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - doc is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  doc);
 		}
 
-		Random randomizer = new Random();
-		int randomNumber = randomizer.nextInt(max);
-
-		return randomNumber;
+		Elements links = doc.select(LINK_TO_STYLESHEET);
+		for (Element link : links) {
+			String href = link.attr(REFERENCE_LINK);
+			link.attr(REFERENCE_LINK, PROTOCOL + context.getLanguage() + BASE_PATH + href);
+		}
 	}
 
 	/**
-	 * Returns a String containing a select element for the current stage of
-	 * processing. In case of random word removal, method changeTextRandom()
-	 * creates the corresponding select element and stores it in the attribute
-	 * 'select'.
+	 * Numbers random words of a paragraph, which are then substituted by gaps.
+	 * Returns a map with the randomly removed words.
 	 *
-	 * In all other cases, the select is created on the fly from elements of the
-	 * respective lookup table.
+	 * Every WORDS_PER_REMOVAL-th word on average is removed: exactly that many distinct
+	 * words are sampled with Floyd's algorithm, which takes one random number per removed
+	 * word, however long the paragraph. The words are numbered in random order, so the
+	 * options of the select element do not give away the order of the gaps.
 	 *
-	 * @return a String containing a select element with removed words.
+	 * @param wordLists - the words of the text nodes of a paragraph.
+	 * @param texts - the texts of the text nodes, in the same order.
+	 * @param random - source of the random choices.
+	 * @return map from the number of a removed word to the word.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
 	 */
-	private String getSelect() {
-		if (wordClass == WordClass.RANDOM) {
-			return select;
+	Map<Integer, String> removeWordsRandomly(List<GapLayout> wordLists, List<String> texts, SplittableRandom random) {
+		// Parameter check.
+		if (wordLists == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - wordLists is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  wordLists);
 		}
-
-		StringBuffer buf = new StringBuffer();
-		buf.append(SELECT_OPENING);
-		for (Entry<Integer, String> entry : mapWordsToRemove.get(language).entrySet()) {
-			buf.append(OPTION_OPENING.replaceAll(PLACE_HOLDER, entry.getKey().toString()) + entry.getValue() + OPTION_CLOSING);
+		if (random == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - random is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  random);
 		}
-		buf.append(SELECT_CLOSING);
 
-		return buf.toString();
+		Map<Integer, String> removedWords = new HashMap<Integer, String>();
+		int size = 0;
+		for (GapLayout wordList : wordLists) {
+			size += wordList.size();
+		}
+		int count = size / WORDS_PER_REMOVAL;
+		int[] chosen = sampleWithoutReplacement(size, count, random);
+		Arrays.sort(chosen);
+		int[] numbers = shuffledNumbers(count, random);
+
+		// Walk through the text nodes once, as the chosen words are in ascending order.
+		int node = 0;
+		int offset = 0;
+		for (int i=0; i<count; i++) {
+			while (chosen[i] - offset >= wordLists.get(node).size()) {
+				offset += wordLists.get(node).size();
+				node++;
+			}
+			GapLayout wordList = wordLists.get(node);
+			int word = chosen[i] - offset;
+			wordList.setNumber(word, numbers[i]);
+			removedWords.put(numbers[i], texts.get(node).substring(wordList.start(word), wordList.end(word)));
+		}
+		return removedWords;
 	}
 
 	/**
-	 * Setter for the current language.
+	 * Chooses distinct random numbers between zero and max exclusively (Floyd's algorithm).
 	 *
-	 * @param language - code of the current language.
-	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 * @param max - the maximum the random numbers can reach.
+	 * @param count - how many numbers to choose; at most max.
+	 * @param random - source of the random choices.
+	 * @return the chosen numbers, in no particular order.
 	 */
-	private void setLanguage(String language) {
-		// Parameter check.
-		if (language == null) {
-			logger.log(Level.SEVERE, "Invalid parameter - language is null.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  language);
-		}
-		if (language.isEmpty()) {
-			logger.log(Level.SEVERE, "Invalid parameter - language is empty.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  language);
+	private static int[] sampleWithoutReplacement(int max, int count, SplittableRandom random) {
+		Set<Integer> chosen = new HashSet<Integer>(count * 2);
+		int[] result = new int[count];
+		int i = 0;
+		for (int j=max-count; j<max; j++) {
+			int number = random.nextInt(j + 1);
+			if (!chosen.add(number)) {
+				// Taken already; j itself cannot have been chosen yet.
+				number = j;
+				chosen.add(number);
+			}
+			result[i++] = number;
 		}
-		this.language = language;
+		return result;
 	}
 
 	/**
-	 * Setter for the dynamically created select element.
+	 * Shuffles the numbers from zero to count exclusively (Fisher-Yates).
 	 *
-	 * @param select - a select element
-	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 * @param count - how many numbers.
+	 * @param random - source of the random choices.
+	 * @return the numbers in random order.
 	 */
-	private void setSelect(String select) {
-		// Parameter check.
-		if (select == null) {
-			logger.log(Level.SEVERE, "Invalid parameter - select is null.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  select);
+	private static int[] shuffledNumbers(int count, SplittableRandom random) {
+		int[] numbers = new int[count];
+		for (int i=0; i<count; i++) {
+			int j = random.nextInt(i + 1);
+			numbers[i] = numbers[j];
+			numbers[j] = i;
 		}
-		this.select = select;
+		return numbers;
 	}
 
 	/**
-	 * Setter for wordClass.
+	 * Returns the select element for the current stage of processing. In case
+	 * of random word removal, method changeTextRandom() creates the corresponding
+	 * select element and stores it in the context.
 	 *
-	 * @param wordClass - a word class.
-	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 * In all other cases, the select is the one precompiled by the lexicon for
+	 * the respective lookup table, or, with shared options, an empty select
+	 * referring to the options template of the page.
+	 *
+	 * @param context - the state of the processing of the current page.
+	 * @return a select element with removed words; to be copied, not modified.
 	 */
-	private void setWordClass(WordClass wordClass) {
-		// Parameter check.
-		if (wordClass == null) {
-			logger.log(Level.SEVERE, "Invalid parameter - wordClass is null.");
-			throw new IllegalArgumentException("Invalid Parameter: " +  wordClass);
-		}
-		this.wordClass = wordClass;
+	Element getSelect(ProcessingContext context) {
+		return usesSharedOptions(context) ? SHARED_SELECT : context.getSelect();
 	}
 
 	/**
-	 * Checks if a given character is a supported punctuation sign
+	 * Tells whether the gaps of a page refer to shared options. The options of RANDOM gaps differ
+	 * from paragraph to paragraph, so they are always inlined.
 	 *
-	 * @param c - a character to be checked for punctuation sign
-	 * @return true if the character is a supported punctuation sign, false otherwise.
+	 * @param context - the state of the processing of the current page.
+	 * @return true if the options are written once per page.
 	 */
-	private boolean isPunctuationSign(char c) {
-		String character = String.valueOf(c);
-		return punctuationSigns.contains(character);
+	private boolean usesSharedOptions(ProcessingContext context) {
+		return sharedOptions && context.getWordClass() != WordClass.RANDOM && context.getSelect() != null;
 	}
 }
@@ -0,0 +1,248 @@
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Metrics of Parser.processSite(): a duration histogram per stage, and counters of processed
+ * pages, generated gaps and emitted bytes, all per language and word class. Exported at /metrics
+ * in the Prometheus text format.
+ *
+ * Thread-safe; recording is lock-free.
+ */
+final class PipelineMetrics {
+
+	/**
+	 * The stages of processSite().
+	 */
+	enum Stage {
+		/** Fetching the HTML from a cache, the article store or Wikipedia. */
+		FETCH,
+		/** Parsing the HTML into a Jsoup document. */
+		PARSE,
+		/** Removing everything but the article from the document. */
+		PRUNE,
+		/** Inserting the gaps into the paragraphs. */
+		PARAGRAPHS,
+		/** Rewriting the links. */
+		LINKS,
+		/** Serializing the document to HTML. */
+		SERIALIZE
+	}
+
+	/** Number of word classes. */
+	private static final int WORD_CLASSES = WordClass.values().length;
+
+	/** Upper bounds of the compression ratio buckets, compressed size over uncompressed size. */
+	private static final double[] RATIOS = {0.05, 0.1, 0.15, 0.2, 0.25, 0.3, 0.4, 0.5, 0.75, 1};
+
+	/** Recorded units per compression ratio of 1. */
+	private static final int RATIO_SCALE = 1000;
+
+	/** The metrics of each language. */
+	private final Map<String, Series> languages = new ConcurrentHashMap<String, Series>();
+
+	/** Compression ratios of the compressed responses, in thousandths. */
+	private final Histogram compressionRatios = new Histogram(RATIOS, RATIO_SCALE);
+
+	/** Bytes sent in response bodies, uncompressed (0) and gzip compressed (1). */
+	private final LongAdder[] responseBytes = {new LongAdder(), new LongAdder()};
+
+
+	/**
+	 * The metrics of one language.
+	 */
+	private static final class Series {
+
+		/** Durations, indexed by stage and word class. */
+		private final Histogram[] durations = new Histogram[Stage.values().length * WORD_CLASSES];
+
+		/** Processed pages by word class. */
+		private final LongAdder[] pages = new LongAdder[WORD_CLASSES];
+
+		/** Generated gaps by word class. */
+		private final LongAdder[] gaps = new LongAdder[WORD_CLASSES];
+
+		/** Emitted bytes by word class. */
+		private final LongAdder[] bytes = new LongAdder[WORD_CLASSES];
+
+		/**
+		 * Constructor.
+		 */
+		private Series() {
+			for (int i=0; i<durations.length; i++) {
+				durations[i] = new Histogram();
+			}
+			for (int i=0; i<WORD_CLASSES; i++) {
+				pages[i] = new LongAdder();
+				gaps[i] = new LongAdder();
+				bytes[i] = new LongAdder();
+			}
+		}
+	}
+
+	/**
+	 * Records the duration of a stage.
+	 *
+	 * @param stage - the stage.
+	 * @param language - code of the language of the page.
+	 * @param wordClass - the class of the removed words.
+	 * @param nanos - the duration in nanoseconds.
+	 */
+	void record(Stage stage, String language, WordClass wordClass, long nanos) {
+		series(language).durations[stage.ordinal() * WORD_CLASSES + wordClass.ordinal()].record(nanos);
+	}
+
+	/**
+	 * Counts a processed page.
+	 *
+	 * @param language - code of the language of the page.
+	 * @param wordClass - the class of the removed words.
+	 * @param gaps - number of gaps generated in the page.
+	 * @param bytes - size of the emitted page in bytes.
+	 */
+	void countPage(String language, WordClass wordClass, int gaps, long bytes) {
+		Series series = series(language);
+		series.pages[wordClass.ordinal()].increment();
+		series.gaps[wordClass.ordinal()].add(gaps);
+		series.bytes[wordClass.ordinal()].add(bytes);
+	}
+
+	/**
+	 * Counts a page sent to a client.
+	 *
+	 * @param bytes - size of the page in bytes.
+	 * @param sentBytes - size of the sent response body in bytes.
+	 * @param compressed - whether the body is gzip compressed.
+	 */
+	void countResponse(long bytes, long sentBytes, boolean compressed) {
+		responseBytes[compressed ? 1 : 0].add(sentBytes);
+		if (compressed && bytes > 0) {
+			compressionRatios.record(sentBytes * RATIO_SCALE / bytes);
+		}
+	}
+
+	/**
+	 * Returns the metrics of a language, creating them on first use.
+	 *
+	 * @param language - code of the language.
+	 * @return the metrics.
+	 */
+	private Series series(String language) {
+		Series series = languages.get(language);
+		if (series == null) {
+			series = languages.computeIfAbsent(language, key -> new Series());
+		}
+		return series;
+	}
+
+	/**
+	 * Appends all metrics in the Prometheus text format. Series without any recorded value are
+	 * left out.
+	 *
+	 * @param buf - the buffer to append to.
+	 */
+	void writePrometheus(StringBuilder buf) {
+		String name = "latwiki_stage_seconds";
+		buf.append("# HELP ").append(name).append(" Duration of the stages of processing a page.\n");
+		buf.append("# TYPE ").append(name).append(" histogram\n");
+		for (Map.Entry<String, Series> entry : languages.entrySet()) {
+			for (Stage stage : Stage.values()) {
+				for (WordClass wordClass : WordClass.values()) {
+					Histogram histogram = entry.getValue().durations[stage.ordinal() * WORD_CLASSES + wordClass.ordinal()];
+					if (histogram.getCount() > 0) {
+						histogram.writePrometheus(buf, name, "stage=\"" + stage.name().toLowerCase(Locale.ROOT) + "\","
+								+ labels(entry.getKey(), wordClass));
+					}
+				}
+			}
+		}
+		writeCounter(buf, "latwiki_pages_total", "Pages processed.", 0);
+		writeCounter(buf, "latwiki_gaps_total", "Gaps generated.", 1);
+		writeCounter(buf, "latwiki_output_bytes_total", "Bytes of the processed pages emitted.", 2);
+
+		name = "latwiki_response_bytes_total";
+		buf.append("# HELP ").append(name).append(" Bytes of response bodies sent, by content encoding.\n");
+		buf.append("# TYPE ").append(name).append(" counter\n");
+		buf.append(name).append("{encoding=\"identity\"} ").append(responseBytes[0].sum()).append('\n');
+		buf.append(name).append("{encoding=\"gzip\"} ").append(responseBytes[1].sum()).append('\n');
+		name = "latwiki_response_compression_ratio";
+		buf.append("# HELP ").append(name).append(" Compressed size over uncompressed size of the compressed responses.\n");
+		buf.append("# TYPE ").append(name).append(" histogram\n");
+		compressionRatios.writePrometheus(buf, name, "encoding=\"gzip\"");
+	}
+
+	/**
+	 * Appends one of the counters in the Prometheus text format.
+	 *
+	 * @param buf - the buffer to append to.
+	 * @param name - name of the metric.
+	 * @param help - description of the metric.
+	 * @param counter - 0 for pages, 1 for gaps, 2 for bytes.
+	 */
+	private void writeCounter(StringBuilder buf, String name, String help, int counter) {
+		buf.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		buf.append("# TYPE ").append(name).append(" counter\n");
+		for (Map.Entry<String, Series> entry : languages.entrySet()) {
+			Series series = entry.getValue();
+			LongAdder[] values = counter == 0 ? series.pages : counter == 1 ? series.gaps : series.bytes;
+			for (WordClass wordClass : WordClass.values()) {
+				long value = values[wordClass.ordinal()].sum();
+				if (value > 0) {
+					buf.append(name).append('{').append(labels(entry.getKey(), wordClass)).append("} ").append(value).append('\n');
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the language and word class labels of a series.
+	 */
+	private static String labels(String language, WordClass wordClass) {
+		return "language=\"" + language + "\",word_class=\"" + wordClass.name().toLowerCase(Locale.ROOT) + "\"";
+	}
+
+	/**
+	 * Computes the size of a text in UTF-8 without encoding it.
+	 *
+	 * @param text - the text.
+	 * @return the size in bytes.
+	 */
+	static long utf8Length(CharSequence text) {
+		long bytes = 0;
+		int length = text.length();
+		for (int i=0; i<length; i++) {
+			char c = text.charAt(i);
+			if (c < 0x80) {
+				bytes++;
+			}
+			else if (c < 0x800) {
+				bytes += 2;
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+				bytes += 4;
+				i++;
+			}
+			else {
+				bytes += 3;
+			}
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,228 @@
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jsoup.nodes.Element;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * State of the processing of one Wikipedia page. A new context is created for every call of
+ * Parser.processSite(), so that one Parser can serve any number of concurrent requests.
+ * A context itself is confined to the thread processing the page.
+ */
+final class ProcessingContext {
+
+	/** Language of the Wikipedia page to process. */
+	private final String language;
+
+	/** Class of the words to remove. */
+	private final WordClass wordClass;
+
+	/**
+	 * Lookup table with the words to remove. Depends on language and word class, null in case of
+	 * random word removal.
+	 */
+	private final Map<Integer, String> wordsToRemove;
+
+	/** Compiled index of wordsToRemove, null in case of random word removal. */
+	private final LexiconIndex wordsToRemoveIndex;
+
+	/**
+	 * Select element for the gaps. For random word removal, it is created dynamically for every
+	 * paragraph; otherwise it is the template precompiled by the lexicon. Only to be copied.
+	 */
+	private Element select;
+
+	/** Reusable buffer for the words of the text currently processed. */
+	private final GapLayout tokens = new GapLayout();
+
+	/** Number of gaps inserted into the page so far. */
+	private int gapCount;
+
+	/** Source of the random choices of random word removal. */
+	private final SplittableRandom random;
+
+	/** Wikipedia revision id of the fetched page, or RevisionId.UNKNOWN. */
+	private long revision = RevisionId.UNKNOWN;
+
+	/** A logger instance. */
+	private static final Logger logger = Logger.getLogger(ProcessingContext.class.getName());
+
+
+	/**
+	 * Constructor with random choices that differ from page to page.
+	 *
+	 * @param language - code of the language of the page.
+	 * @param wordClass - the class of the words to remove.
+	 * @param lexicon - the lookup tables of all supported languages and word classes.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	ProcessingContext(String language, WordClass wordClass, LexiconRegistry lexicon) {
+		this(language, wordClass, lexicon, new SplittableRandom());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param language - code of the language of the page.
+	 * @param wordClass - the class of the words to remove.
+	 * @param lexicon - the lookup tables of all supported languages and word classes.
+	 * @param random - source of the random choices; a generator with a given seed makes the
+	 * processing of a page reproducible.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	ProcessingContext(String language, WordClass wordClass, LexiconRegistry lexicon, SplittableRandom random) {
+		// Parameter check.
+		if (language == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - language is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  language);
+		}
+		if (language.isEmpty()) {
+			logger.log(Level.SEVERE, "Invalid parameter - language is empty.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  language);
+		}
+		if (wordClass == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - wordClass is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  wordClass);
+		}
+		if (lexicon == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - lexicon is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  lexicon);
+		}
+		if (random == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - random is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  random);
+		}
+
+		this.language = language;
+		this.wordClass = wordClass;
+		this.wordsToRemove = wordClass == WordClass.RANDOM ? null : lexicon.getLookUpTable(language, wordClass);
+		this.wordsToRemoveIndex = wordClass == WordClass.RANDOM ? null : lexicon.getLookUpIndex(language, wordClass);
+		this.select = wordClass == WordClass.RANDOM ? null : lexicon.getSelectElement(language, wordClass);
+		this.random = random;
+	}
+
+	/**
+	 * Getter for the current language.
+	 *
+	 * @return code of the current language.
+	 */
+	String getLanguage() {
+		return language;
+	}
+
+	/**
+	 * Getter for the word class.
+	 *
+	 * @return the class of the words to remove.
+	 */
+	WordClass getWordClass() {
+		return wordClass;
+	}
+
+	/**
+	 * Getter for the lookup table of the words to remove.
+	 *
+	 * @return the lookup table, or null in case of random word removal.
+	 */
+	Map<Integer, String> getWordsToRemove() {
+		return wordsToRemove;
+	}
+
+	/**
+	 * Getter for the compiled index of the lookup table of the words to remove.
+	 *
+	 * @return the index, or null in case of random word removal.
+	 */
+	LexiconIndex getWordsToRemoveIndex() {
+		return wordsToRemoveIndex;
+	}
+
+	/**
+	 * Getter for the reusable buffer for the words of a text. Its content is only valid until the
+	 * next text is tokenized.
+	 *
+	 * @return the buffer.
+	 */
+	GapLayout getTokens() {
+		return tokens;
+	}
+
+	/**
+	 * Counts inserted gaps.
+	 *
+	 * @param gaps - number of gaps inserted.
+	 */
+	void addGaps(int gaps) {
+		gapCount += gaps;
+	}
+
+	/**
+	 * @return number of gaps inserted into the page so far.
+	 */
+	int getGapCount() {
+		return gapCount;
+	}
+
+	/**
+	 * @return source of the random choices of random word removal.
+	 */
+	SplittableRandom getRandom() {
+		return random;
+	}
+
+	/**
+	 * @return Wikipedia revision id of the fetched page, or RevisionId.UNKNOWN.
+	 */
+	long getRevision() {
+		return revision;
+	}
+
+	/**
+	 * @param revision - Wikipedia revision id of the fetched page, or RevisionId.UNKNOWN.
+	 */
+	void setRevision(long revision) {
+		this.revision = revision;
+	}
+
+	/**
+	 * Getter for the dynamically created select element.
+	 *
+	 * @return the select element of the lookup table, or of the paragraph processed last in case of
+	 * random word removal.
+	 */
+	Element getSelect() {
+		return select;
+	}
+
+	/**
+	 * Setter for the dynamically created select element.
+	 *
+	 * @param select - a select element
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	void setSelect(Element select) {
+		// Parameter check.
+		if (select == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - select is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  select);
+		}
+		this.select = select;
+	}
+}
@@ -0,0 +1,83 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Loads Wikipedia pages from another source, usually an HttpDocumentSource, and saves them to a
+ * directory, so that a DirectoryDocumentSource can replay them later without network access.
+ */
+final class RecordingDocumentSource implements DocumentSource {
+
+	/** The encoding schema. */
+	private static final Charset ENCODING = Charset.forName("UTF-8");
+
+	/** The source the pages are loaded from. */
+	private final DocumentSource source;
+
+	/** Directory the pages are saved to. */
+	private final File directory;
+
+	/** A logger instance. */
+	private static final Logger logger = Logger.getLogger(RecordingDocumentSource.class.getName());
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param source - the source the pages are loaded from.
+	 * @param directory - directory the pages are saved to. It is created if necessary.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	RecordingDocumentSource(DocumentSource source, File directory) {
+		// Parameter check.
+		if (source == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - source is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  source);
+		}
+		if (directory == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - directory is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  directory);
+		}
+
+		this.source = source;
+		this.directory = directory;
+	}
+
+	@Override
+	public String load(String url) throws IOException {
+		String html = source.load(url);
+		File file = DirectoryDocumentSource.file(directory, url);
+		Files.createDirectories(directory.toPath());
+		// Write to a temporary file first, so a replay never sees half a page.
+		File tmp = File.createTempFile("recording", ".tmp", directory);
+		try {
+			Files.write(tmp.toPath(), html.getBytes(ENCODING));
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		finally {
+			tmp.delete();
+		}
+		logger.log(Level.INFO, "Recorded " + url + " to " + file);
+		return html;
+	}
+}
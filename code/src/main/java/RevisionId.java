@@ -0,0 +1,65 @@
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Extraction of the revision id of a Wikipedia page. MediaWiki writes it into the configuration
+ * script in the head of every page, e.g. RLCONF={"wgRevisionId":123456,...}; it changes with
+ * every edit of the page.
+ */
+final class RevisionId {
+
+	/** Revision id of a page that has none, e.g. a page that is not a rendered article. */
+	static final long UNKNOWN = -1;
+
+	/** The configuration entry of the revision id, up to the number. */
+	private static final String MARKER = "\"wgRevisionId\":";
+
+
+	/**
+	 * No instances.
+	 */
+	private RevisionId() {
+	}
+
+	/**
+	 * Extracts the revision id of a page.
+	 *
+	 * @param html - the HTML of the page.
+	 * @return the revision id, or UNKNOWN if the page has none.
+	 */
+	static long parse(String html) {
+		if (html == null) {
+			return UNKNOWN;
+		}
+		int position = html.indexOf(MARKER);
+		if (position < 0) {
+			return UNKNOWN;
+		}
+		position += MARKER.length();
+		long revision = 0;
+		int digits = 0;
+		while (position < html.length() && digits < 18) {
+			char c = html.charAt(position);
+			if (c < '0' || c > '9') {
+				break;
+			}
+			revision = revision * 10 + (c - '0');
+			digits++;
+			position++;
+		}
+		return digits == 0 ? UNKNOWN : revision;
+	}
+}
@@ -0,0 +1,60 @@
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Output stream writing everything to two streams, e.g. to a client and to a copy for a cache.
+ * A failure of the first stream stops the writing to the second one.
+ */
+final class TeeOutputStream extends FilterOutputStream {
+
+	/** The second stream. */
+	private final OutputStream copy;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param out - the first stream.
+	 * @param copy - the second stream.
+	 */
+	TeeOutputStream(OutputStream out, OutputStream copy) {
+		super(out);
+		this.copy = copy;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		out.write(b);
+		copy.write(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		// FilterOutputStream would write byte by byte.
+		out.write(b, off, len);
+		copy.write(b, off, len);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+		copy.flush();
+	}
+}
@@ -0,0 +1,115 @@
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Splits text into words. Words are separated by white space; a trailing punctuation sign does
+ * not belong to a word. The text is scanned once, character by character, and the positions of
+ * the words are written into a GapLayout that can be reused, so tokenizing does not create any
+ * objects per word.
+ *
+ * The class of a character is looked up in a table computed once. Characters outside of the
+ * table are always part of a word.
+ */
+final class Tokenizer {
+
+	/** Class of characters belonging to words. */
+	static final byte CLASS_WORD = 0;
+
+	/** Class of white space characters, the same as matched by the regular expression \s. */
+	static final byte CLASS_WHITE_SPACE = 1;
+
+	/** Class of the supported punctuation signs. */
+	static final byte CLASS_PUNCTUATION = 2;
+
+	/** White space characters. */
+	private static final String WHITE_SPACE = " \t\n\u000B\f\r";
+
+	/** Supported punctuation signs: period, question mark, exclamation sign, comma, semicolon, colon, apostrophe and quote. */
+	private static final String PUNCTUATION_SIGNS = ".?!,;:'\"";
+
+	/** Size of the table of character classes; covers ASCII. */
+	private static final int TABLE_SIZE = 128;
+
+	/** The class of every character below TABLE_SIZE. */
+	private static final byte[] CLASSES = new byte[TABLE_SIZE];
+
+	static {
+		for (int i=0; i<WHITE_SPACE.length(); i++) {
+			CLASSES[WHITE_SPACE.charAt(i)] = CLASS_WHITE_SPACE;
+		}
+		for (int i=0; i<PUNCTUATION_SIGNS.length(); i++) {
+			CLASSES[PUNCTUATION_SIGNS.charAt(i)] = CLASS_PUNCTUATION;
+		}
+	}
+
+
+	/**
+	 * No instances.
+	 */
+	private Tokenizer() {
+	}
+
+	/**
+	 * Tokenizes text.
+	 *
+	 * @param text - text to be tokenized.
+	 * @param words - layout to write the positions of the words to; it is cleared first. The
+	 * words are not numbered.
+	 * @return the parameter words, for convenience.
+	 */
+	static GapLayout tokenize(CharSequence text, GapLayout words) {
+		words.clear();
+		int length = text.length();
+		int start = 0;
+		while (start < length) {
+			// Skip white space, then find the end of the word.
+			if (classOf(text.charAt(start)) == CLASS_WHITE_SPACE) {
+				start++;
+				continue;
+			}
+			int end = start + 1;
+			while (end < length && classOf(text.charAt(end)) != CLASS_WHITE_SPACE) {
+				end++;
+			}
+			int wordEnd = classOf(text.charAt(end-1)) == CLASS_PUNCTUATION ? end-1 : end;
+			if (wordEnd > start) {
+				words.add(start, wordEnd, GapLayout.NO_NUMBER);
+			}
+			start = end;
+		}
+		return words;
+	}
+
+	/**
+	 * Returns the class of a character.
+	 *
+	 * @param c - a character.
+	 * @return CLASS_WORD, CLASS_WHITE_SPACE or CLASS_PUNCTUATION.
+	 */
+	static byte classOf(char c) {
+		return c < TABLE_SIZE ? CLASSES[c] : CLASS_WORD;
+	}
+
+	/**
+	 * Checks if a given character is a supported punctuation sign
+	 *
+	 * @param c - a character to be checked for punctuation sign
+	 * @return true if the character is a supported punctuation sign, false otherwise.
+	 */
+	static boolean isPunctuationSign(char c) {
+		return classOf(c) == CLASS_PUNCTUATION;
+	}
+}
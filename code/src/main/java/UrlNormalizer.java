@@ -0,0 +1,144 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Normalizes URLs of Wikipedia pages, so that different spellings of the same page share one
+ * cache entry. The normalized URL always uses https, has a lower case host and no fragment.
+ * The title of an article (/wiki/...) is written as Wikipedia writes it, see
+ * WikitextConverter.titleToPath(), so 'wiki/hund', 'wiki/Deutscher Schäferhund' and
+ * 'wiki/Deutscher_Sch%C3%A4ferhund' are one page each, as are the keys of ingested dumps.
+ */
+final class UrlNormalizer {
+
+	/** Protocol part of a URL. */
+	private static final String PROTOCOL = "http://";
+
+	/** Extended protocol part of a URL. */
+	private static final String PROTOCOL_EXT = "https://";
+
+	/** Encoding of percent encoded titles. */
+	private static final Charset ENCODING = Charset.forName("UTF-8");
+
+	/** A logger instance. */
+	private static final Logger logger = Logger.getLogger(UrlNormalizer.class.getName());
+
+
+	/**
+	 * No instances.
+	 */
+	private UrlNormalizer() {
+	}
+
+	/**
+	 * Normalizes a URL.
+	 *
+	 * @param url - a URL, with or without protocol.
+	 * @return the normalized URL.
+	 * @throws IllegalArgumentExcpetion - if parameter is not valid.
+	 */
+	static String normalize(String url) {
+		// Parameter check.
+		if (url == null) {
+			logger.log(Level.SEVERE, "Invalid parameter - url is null.");
+			throw new IllegalArgumentException("Invalid Parameter: " +  url);
+		}
+
+		String rest = url.trim();
+		int fragment = rest.indexOf('#');
+		if (fragment >= 0) {
+			rest = rest.substring(0, fragment);
+		}
+		if (rest.regionMatches(true, 0, PROTOCOL_EXT, 0, PROTOCOL_EXT.length())) {
+			rest = rest.substring(PROTOCOL_EXT.length());
+		}
+		else if (rest.regionMatches(true, 0, PROTOCOL, 0, PROTOCOL.length())) {
+			rest = rest.substring(PROTOCOL.length());
+		}
+
+		// The host ends at the first slash or question mark.
+		int endOfHost = rest.length();
+		for (int i=0; i<rest.length(); i++) {
+			char c = rest.charAt(i);
+			if (c == '/' || c == '?') {
+				endOfHost = i;
+				break;
+			}
+		}
+		String host = rest.substring(0, endOfHost).toLowerCase(Locale.ROOT);
+		String path = rest.substring(endOfHost);
+		if (path.startsWith(WikitextConverter.ARTICLE_PATH)) {
+			int query = path.indexOf('?');
+			int endOfTitle = query < 0 ? path.length() : query;
+			String title = decode(path.substring(WikitextConverter.ARTICLE_PATH.length(), endOfTitle));
+			if (title != null) {
+				path = WikitextConverter.ARTICLE_PATH + WikitextConverter.titleToPath(title) + path.substring(endOfTitle);
+			}
+		}
+		return PROTOCOL_EXT + host + path;
+	}
+
+	/**
+	 * Decodes the percent encoded (UTF-8) characters of a title. Unlike URLDecoder, a plus sign
+	 * is kept, as it is part of titles such as 'C++'.
+	 *
+	 * @param title - the title part of a URL.
+	 * @return the decoded title, or null if the title is not validly encoded.
+	 */
+	private static String decode(String title) {
+		if (title.indexOf('%') < 0) {
+			return title;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(title.length());
+		for (int i=0; i<title.length(); i++) {
+			char c = title.charAt(i);
+			if (c != '%') {
+				byte[] encoded = String.valueOf(c).getBytes(ENCODING);
+				if (Character.isHighSurrogate(c) && i + 1 < title.length()) {
+					encoded = title.substring(i, i + 2).getBytes(ENCODING);
+					i++;
+				}
+				bytes.write(encoded, 0, encoded.length);
+				continue;
+			}
+			if (i + 2 >= title.length()) {
+				return null;
+			}
+			int high = Character.digit(title.charAt(i + 1), 16);
+			int low = Character.digit(title.charAt(i + 2), 16);
+			if (high < 0 || low < 0) {
+				return null;
+			}
+			bytes.write(high << 4 | low);
+			i += 2;
+		}
+		try {
+			return ENCODING.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+					.decode(ByteBuffer.wrap(bytes.toByteArray())).toString();
+		}
+		catch (CharacterCodingException e) {
+			return null;
+		}
+	}
+}
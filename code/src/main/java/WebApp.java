@@ -1,7 +1,26 @@
 import java.util.HashMap;
-import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletResponse;
 
 import spark.ModelAndView;
+import spark.Request;
+import spark.Response;
 import spark.template.mustache.MustacheTemplateEngine;
 
 import static spark.Spark.*;
@@ -38,12 +57,71 @@ import static spark.Spark.*;
 
 public class WebApp {
 
+    /** Message if a stage of the pipeline is full. */
+    private static final String MESSAGE_BUSY = "The server is busy. Please try again in a moment.";
+
+    /** Media type of the pages. */
+    private static final String PAGE_TYPE = "text/html; charset=utf-8";
+
+    /** Media type of the results of a batch, one JSON object per line. */
+    private static final String BATCH_TYPE = "application/x-ndjson; charset=utf-8";
+
+    /** Size of the buffer of the on-the-fly gzip compression, about one streamed chunk. */
+    private static final int GZIP_BUFFER_SIZE = 8192;
+
+    /** Seconds a client should wait before retrying a request that was shed. */
+    private static final String RETRY_AFTER = String.valueOf(Configuration.getInt("server.retryAfterSeconds", 2));
+
+    /** Time an asynchronous request may take, longer than the timeouts of the fetch stage. */
+    private static final long ASYNC_TIMEOUT_MILLIS = Configuration.getInt("server.asyncTimeoutSeconds", 60) * 1000L;
+
+    /** A logger instance. */
+    private static final Logger logger = Logger.getLogger(WebApp.class.getName());
+
     /**
      * Sets up the routes and settings of the web application.
      *
+     * @throws IOException - if the lexicon cannot be loaded.
      */
-    public static void main(String[] args) {
-        exception(Exception.class, (e, req, res) -> e.printStackTrace()); // print all exceptions
+    public static void main(String[] args) throws IOException {
+        // Load the lookup tables once; they are shared by all requests, as is the thread-safe parser.
+        LexiconRegistry lexicon = LexiconRegistry.fromClasspath();
+        PageFetcher pageFetcher = new PageFetcher();
+        Parser parser = new Parser(lexicon, pageFetcher);
+
+        // Pages are fetched and transformed off the Jetty request threads, unless 'server.async=false'.
+        // Async responses are committed before the fetch, so a page that cannot be loaded gets a
+        // 502 only if that is known before (the circuit of its host is open); otherwise it gets
+        // a 200 with the message page, where a synchronous request gets a 502.
+        boolean async = Configuration.getBoolean("server.async", true);
+        // Async pages are streamed to the client as they are serialized, unless 'server.streaming=false'.
+        boolean streaming = Configuration.getBoolean("server.streaming", true);
+        Bulkhead fetchExecutor = WorkerPools.newFetchExecutor();
+        Bulkhead transformExecutor = WorkerPools.newTransformExecutor();
+        // A batch runs at most 'batch.parallelism' of its jobs at a time.
+        BatchProcessor batchProcessor = new BatchProcessor(parser, fetchExecutor, transformExecutor,
+                Configuration.getInt("batch.parallelism", 4));
+        int maxBatchJobs = Configuration.getInt("batch.maxJobs", 100);
+        int maxBatchBytes = Configuration.getInt("batch.maxBytes", 1 << 20);
+
+        // Answer with a message page rather than an empty one.
+        exception(Exception.class, (e, req, res) -> {
+            logger.log(Level.SEVERE, "Could not answer " + req.url(), e);
+            res.status(500);
+            res.body(HtmlFragments.messagePage(Parser.MESSAGE_PAGE_NOT_LOADED));
+        });
+        // Wikipedia could not be reached, and there is no copy of the page, not even an expired one.
+        exception(IOException.class, (e, req, res) -> {
+            logger.log(Level.WARNING, "Could not load page for " + req.url() + ": " + e.getMessage());
+            res.status(502);
+            res.body(HtmlFragments.messagePage(Parser.MESSAGE_PAGE_NOT_LOADED));
+        });
+        // Shed load quickly if a stage of the pipeline is full.
+        exception(RejectedExecutionException.class, (e, req, res) -> {
+            res.status(503);
+            res.header("Retry-After", RETRY_AFTER);
+            res.body(HtmlFragments.messagePage(MESSAGE_BUSY));
+        });
 
         // Configure Spark
         port(4567); // http://localhost:4567/ for local
@@ -53,14 +131,109 @@ public class WebApp {
         // Routes
 
         // http://localhosts:4567/wiki?url=WIKIPEDIA_URL?articles=ARTICLES
+        // An optional '&seed=NUMBER' makes the gaps of RANDOM reproducible.
         get("/wiki", (request, response) -> {
-            String path = new File("src/main/java").getAbsolutePath();
-
-            Parser parser = new Parser(path);
             String url = request.queryParams("url");
             String cloze = request.queryParams("cloze").toUpperCase();
+            String seedParam = request.queryParams("seed");
+            Long seed;
+            try {
+                seed = seedParam == null || seedParam.isEmpty() ? null : Long.valueOf(seedParam.trim());
+            }
+            catch (NumberFormatException e) {
+                return respond(request, response, HtmlFragments.messagePage(Parser.MESSAGE_INVALID_PARAMETER), parser.getMetrics());
+            }
+
+            if (!async) {
+                return respond(request, response, parser.processSite(url, WordClass.valueOf(cloze), seed), parser.getMetrics());
+            }
+            // A rendered page is sent right away, compressed as cached if possible; an expired one
+            // is still sent while a fresh one is made in the background.
+            PageCache.Entry rendered = parser.lookUpRendered(url, WordClass.valueOf(cloze), seed, fetchExecutor, transformExecutor);
+            if (rendered != null) {
+                return respond(request, response, rendered, parser.getMetrics());
+            }
+            // Reject now if the transform stage is full, or if the page can only come from a host
+            // whose circuit is open, while a 503 or 502 can still be sent.
+            transformExecutor.checkCapacity();
+            if (url != null) {
+                pageFetcher.checkAvailable(url);
+            }
+            if (streaming) {
+                fetchExecutor.checkCapacity();
+                return respondStreaming(request, PAGE_TYPE, out -> parser.processSiteAsync(url, WordClass.valueOf(cloze), seed, fetchExecutor, transformExecutor, out),
+                        parser.getMetrics());
+            }
+            return respondAsync(request, parser.processSiteAsync(url, WordClass.valueOf(cloze), seed, fetchExecutor, transformExecutor),
+                    parser.getMetrics());
+        });
+
+        // POST http://localhost:4567/wiki/batch - a JSON array (or NDJSON) of {"url", "cloze", "seed"}
+        // objects; answers with one line of JSON per job, as each job is done.
+        post("/wiki/batch", (request, response) -> {
+            List<BatchProcessor.Job> jobs;
+            try {
+                jobs = BatchProcessor.parseJobs(BatchProcessor.readBody(request.raw().getInputStream(), maxBatchBytes), maxBatchJobs);
+            }
+            catch (IllegalArgumentException e) {
+                response.status(400);
+                response.type("text/plain; charset=utf-8");
+                return e.getMessage() + "\n";
+            }
+            // Reject now if the pipeline is full, while a 503 can still be sent.
+            fetchExecutor.checkCapacity();
+            transformExecutor.checkCapacity();
+            return respondStreaming(request, BATCH_TYPE, out -> batchProcessor.process(jobs, out), parser.getMetrics());
+        });
 
-            return parser.processSite(url, WordClass.valueOf(cloze));
+        // http://localhost:4567/metrics - counters in the Prometheus text format
+        get("/metrics", (request, response) -> {
+            response.type("text/plain; version=0.0.4");
+            PageCache pageCache = pageFetcher.getPageCache();
+            StringBuilder buf = new StringBuilder();
+            counter(buf, "latwiki_page_cache_hits_total", "Page cache lookups that found a fresh page.", pageCache.getHits());
+            counter(buf, "latwiki_page_cache_misses_total", "Page cache lookups that found no fresh page.", pageCache.getMisses());
+            counter(buf, "latwiki_page_cache_evictions_total", "Pages evicted from the page cache.", pageCache.getEvictions());
+            gauge(buf, "latwiki_page_cache_entries", "Pages in the page cache.", pageCache.getSize());
+            gauge(buf, "latwiki_page_cache_bytes", "Compressed size of the pages in the page cache.", pageCache.getTotalBytes());
+            counter(buf, "latwiki_fetch_stale_served_total", "Fetches that returned an expired page while it was refreshed.", pageFetcher.getStaleServed());
+            counter(buf, "latwiki_fetch_refresh_failures_total", "Background refreshes of expired pages that failed.", pageFetcher.getRefreshFailures());
+            counter(buf, "latwiki_fetch_short_circuited_total", "Page loads refused because the circuit of the host was open.", pageFetcher.getShortCircuited());
+            gauge(buf, "latwiki_fetch_open_circuits", "Wikipedia hosts whose circuit is open or half open.", pageFetcher.getOpenCircuits());
+            counter(buf, "latwiki_fetch_leaders_total", "Page fetches that loaded the page themselves.", pageFetcher.getLeaders());
+            counter(buf, "latwiki_fetch_coalesced_total", "Page fetches that waited for a concurrent fetch of the same page.", pageFetcher.getCoalesced());
+            PageCache renderCache = parser.getRenderCache();
+            counter(buf, "latwiki_render_cache_hits_total", "Render cache lookups that found a fresh rendered page.", renderCache.getHits());
+            counter(buf, "latwiki_render_cache_misses_total", "Render cache lookups that found no fresh rendered page.", renderCache.getMisses());
+            counter(buf, "latwiki_render_cache_evictions_total", "Rendered pages evicted from the render cache.", renderCache.getEvictions());
+            counter(buf, "latwiki_render_cache_stale_hits_total", "Render cache lookups that served an expired page while revalidating it.", renderCache.getStaleHits());
+            counter(buf, "latwiki_render_revalidations_unchanged_total", "Revalidations that found the revision the page was rendered from.", parser.getRevalidationsUnchanged());
+            counter(buf, "latwiki_render_revalidations_changed_total", "Revalidations that found a new revision and rendered the page again.", parser.getRevalidationsChanged());
+            counter(buf, "latwiki_render_revalidations_failed_total", "Revalidations that could not fetch or render the page.", parser.getRevalidationsFailed());
+            gauge(buf, "latwiki_render_cache_entries", "Rendered pages in the render cache.", renderCache.getSize());
+            gauge(buf, "latwiki_render_cache_bytes", "Compressed size of the rendered pages in the render cache.", renderCache.getTotalBytes());
+            ParagraphCache paragraphCache = parser.getParagraphCache();
+            if (paragraphCache != null) {
+                counter(buf, "latwiki_paragraph_cache_hits_total", "Paragraph cache lookups that found the gaps of the paragraph.", paragraphCache.getHits());
+                counter(buf, "latwiki_paragraph_cache_misses_total", "Paragraph cache lookups that found no gaps.", paragraphCache.getMisses());
+                counter(buf, "latwiki_paragraph_cache_evictions_total", "Paragraphs evicted from the paragraph cache.", paragraphCache.getEvictions());
+                gauge(buf, "latwiki_paragraph_cache_entries", "Paragraphs in the paragraph cache.", paragraphCache.getSize());
+                gauge(buf, "latwiki_paragraph_cache_bytes", "Estimated memory of the gaps in the paragraph cache.", paragraphCache.getTotalBytes());
+            }
+            bulkhead(buf, "fetch", fetchExecutor);
+            bulkhead(buf, "transform", transformExecutor);
+            parser.getMetrics().writePrometheus(buf);
+            ArticleStore articleStore = pageFetcher.getArticleStore();
+            if (articleStore != null) {
+                counter(buf, "latwiki_article_store_hits_total", "Article store lookups that found a fresh page.", articleStore.getHits());
+                counter(buf, "latwiki_article_store_misses_total", "Article store lookups that found no fresh page.", articleStore.getMisses());
+                counter(buf, "latwiki_article_store_compactions_total", "Article store segments compacted.", articleStore.getCompactions());
+                counter(buf, "latwiki_article_store_evictions_total", "Article store segments deleted to stay within the size limit.", articleStore.getEvictions());
+                gauge(buf, "latwiki_article_store_entries", "Pages in the article store.", articleStore.getSize());
+                gauge(buf, "latwiki_article_store_segments", "Segment files of the article store.", articleStore.getSegmentCount());
+                gauge(buf, "latwiki_article_store_bytes", "Size of the segment files of the article store.", articleStore.getTotalBytes());
+            }
+            return buf.toString();
         });
 
         // http://localhost:4567/stats
@@ -73,4 +246,307 @@ public class WebApp {
             return new ModelAndView(new HashMap(), "index.html");
         }, new MustacheTemplateEngine());
     }
+
+    /**
+     * Answers a request with a finished page, gzip compressed if the client accepts it. The
+     * body is written and the response committed here, so Spark writes nothing when the route
+     * returns.
+     *
+     * @param request - the request.
+     * @param response - the response.
+     * @param page - the HTML page.
+     * @param metrics - metrics the sent response is counted in.
+     * @return the (empty) body for Spark.
+     * @throws IOException - if the client went away.
+     */
+    private static String respond(Request request, Response response, String page, PipelineMetrics metrics) throws IOException {
+        boolean gzip = ContentEncoding.acceptsGzip(request.headers("Accept-Encoding"));
+        HttpServletResponse raw = response.raw();
+        setPageHeaders(raw, gzip);
+        writePage(raw.getOutputStream(), page, gzip, metrics);
+        raw.flushBuffer();
+        return "";
+    }
+
+    /**
+     * Answers a request with a cached rendered page. Clients accepting gzip get the cached
+     * compressed bytes as they are.
+     *
+     * @param request - the request.
+     * @param response - the response.
+     * @param page - the cached page.
+     * @param metrics - metrics the sent response is counted in.
+     * @return the (empty) body for Spark.
+     * @throws IOException - if the client went away.
+     */
+    private static String respond(Request request, Response response, PageCache.Entry page, PipelineMetrics metrics) throws IOException {
+        boolean gzip = ContentEncoding.acceptsGzip(request.headers("Accept-Encoding"));
+        HttpServletResponse raw = response.raw();
+        setPageHeaders(raw, gzip);
+        byte[] body = gzip ? page.getCompressedHtml() : page.getHtml().getBytes(StandardCharsets.UTF_8);
+        raw.getOutputStream().write(body);
+        raw.flushBuffer();
+        metrics.countResponse(page.getSize(), body.length, gzip);
+        return "";
+    }
+
+    /**
+     * Answers a request with a page that is still being produced, gzip compressed if the client
+     * accepts it. The request is put into asynchronous mode and the response is committed, so
+     * Spark writes nothing when the route returns; the page is written and the request
+     * completed when the future is done. If the future fails, a page with a message is written,
+     * see failed().
+     *
+     * @param request - the request.
+     * @param page - future of the HTML page.
+     * @param metrics - metrics the sent response is counted in.
+     * @return the (empty) body for Spark.
+     * @throws IOException - if the response cannot be committed.
+     */
+    private static String respondAsync(Request request, CompletableFuture<String> page, PipelineMetrics metrics) throws IOException {
+        boolean gzip = ContentEncoding.acceptsGzip(request.headers("Accept-Encoding"));
+        AsyncContext context = startAsync(request);
+        HttpServletResponse response = (HttpServletResponse) context.getResponse();
+        setPageHeaders(response, gzip);
+        response.flushBuffer();
+
+        page.whenComplete((html, error) -> {
+            try {
+                writePage(response.getOutputStream(), error == null ? html : failed(request, error), gzip, metrics);
+            }
+            catch (IOException | IllegalStateException e) {
+                // The client went away, or the request timed out.
+            }
+            finally {
+                complete(context);
+            }
+        });
+        return "";
+    }
+
+    /**
+     * Answers a request with a page that is written to the response while it is produced, gzip
+     * compressed on the fly if the client accepts it. The request is put into asynchronous mode
+     * and the response headers are committed at once; the request is completed when the writer
+     * is done. If the writer fails before it has written anything, a page with a message is
+     * written, see failed().
+     *
+     * @param request - the request.
+     * @param contentType - media type of the page.
+     * @param writer - starts writing the page to the given stream and returns a future that
+     * is completed when it is done.
+     * @param metrics - metrics the sent response is counted in.
+     * @return the (empty) body for Spark.
+     * @throws IOException - if the response cannot be committed.
+     */
+    private static String respondStreaming(Request request, String contentType, Function<OutputStream, CompletableFuture<Void>> writer,
+            PipelineMetrics metrics) throws IOException {
+        boolean gzip = ContentEncoding.acceptsGzip(request.headers("Accept-Encoding"));
+        AsyncContext context = startAsync(request);
+        HttpServletResponse response = (HttpServletResponse) context.getResponse();
+        setPageHeaders(response, contentType, gzip);
+        response.flushBuffer();
+
+        CountingOutputStream sent = new CountingOutputStream(response.getOutputStream());
+        // Flushing the stream sends what was written so far, compressed or not.
+        GZIPOutputStream compressor = gzip ? new GZIPOutputStream(sent, GZIP_BUFFER_SIZE, true) : null;
+        CountingOutputStream out = new CountingOutputStream(gzip ? compressor : sent);
+        BiConsumer<Void, Throwable> finish = (result, error) -> {
+            try {
+                if (error != null && out.getCount() == 0) {
+                    out.write(failed(request, error).getBytes(StandardCharsets.UTF_8));
+                }
+                if (compressor != null) {
+                    compressor.finish();
+                }
+            }
+            catch (IOException | IllegalStateException e) {
+                // The client went away, or the request timed out.
+            }
+            finally {
+                metrics.countResponse(out.getCount(), sent.getCount(), gzip);
+                complete(context);
+            }
+        };
+        CompletableFuture<Void> written;
+        try {
+            written = writer.apply(out);
+        }
+        catch (RuntimeException e) {
+            // E.g. the stage filled up since the capacity check; the request must still be completed.
+            written = new CompletableFuture<Void>();
+            written.completeExceptionally(e);
+        }
+        written.whenComplete(finish);
+        return "";
+    }
+
+    /**
+     * Puts a request into asynchronous mode. A request that is not completed within
+     * 'server.asyncTimeoutSeconds', e.g. because a page got stuck, is completed as it is, so it
+     * does not hold the connection forever.
+     *
+     * @param request - the request.
+     * @return the asynchronous context of the request.
+     */
+    private static AsyncContext startAsync(Request request) {
+        AsyncContext context = request.raw().startAsync();
+        context.setTimeout(ASYNC_TIMEOUT_MILLIS);
+        context.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                logger.log(Level.WARNING, "Timed out answering " + request.url());
+                complete(context);
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        return context;
+    }
+
+    /**
+     * Completes an asynchronous request, unless it has been completed after a timeout.
+     *
+     * @param context - the asynchronous context of the request.
+     */
+    private static void complete(AsyncContext context) {
+        try {
+            context.complete();
+        }
+        catch (IllegalStateException e) {
+            // Completed after a timeout already.
+        }
+    }
+
+    /**
+     * Logs why the page of an asynchronous request could not be produced, as the exception
+     * handlers do for synchronous requests. The status cannot tell any more: Spark writes a body
+     * of its own unless the response is committed when the route returns, so asynchronous
+     * responses are committed with 200 before the fetch; see checkAvailable() in the route for
+     * the failures that are known before.
+     *
+     * @param request - the request.
+     * @param error - why the page could not be produced.
+     * @return the page with the message for the client.
+     */
+    private static String failed(Request request, Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof UncheckedIOException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof RejectedExecutionException) {
+            return HtmlFragments.messagePage(MESSAGE_BUSY);
+        }
+        if (cause instanceof IOException) {
+            logger.log(Level.WARNING, "Could not load page for " + request.url() + ": " + cause.getMessage());
+        }
+        else {
+            logger.log(Level.SEVERE, "Could not answer " + request.url(), cause);
+        }
+        return HtmlFragments.messagePage(Parser.MESSAGE_PAGE_NOT_LOADED);
+    }
+
+    /**
+     * Sets the headers of a page response.
+     *
+     * @param response - the response.
+     * @param gzip - whether the body is gzip compressed.
+     */
+    private static void setPageHeaders(HttpServletResponse response, boolean gzip) {
+        setPageHeaders(response, PAGE_TYPE, gzip);
+    }
+
+    /**
+     * Sets the headers of a response.
+     *
+     * @param response - the response.
+     * @param contentType - media type of the body.
+     * @param gzip - whether the body is gzip compressed.
+     */
+    private static void setPageHeaders(HttpServletResponse response, String contentType, boolean gzip) {
+        response.setContentType(contentType);
+        // Caches must not serve a compressed page to a client that cannot read it.
+        response.setHeader("Vary", "Accept-Encoding");
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+    }
+
+    /**
+     * Writes a finished page to a response body.
+     *
+     * @param out - the body.
+     * @param page - the HTML page.
+     * @param gzip - whether to gzip compress the page.
+     * @param metrics - metrics the sent response is counted in.
+     * @throws IOException - if the client went away.
+     */
+    private static void writePage(OutputStream out, String page, boolean gzip, PipelineMetrics metrics) throws IOException {
+        byte[] bytes = page.getBytes(StandardCharsets.UTF_8);
+        byte[] body = gzip ? Compression.compress(bytes) : bytes;
+        out.write(body);
+        metrics.countResponse(bytes.length, body.length, gzip);
+    }
+
+    /**
+     * Appends the metrics of a pipeline stage in the Prometheus text format.
+     *
+     * @param buf - the metrics are appended here.
+     * @param stage - name of the stage, part of the metric names.
+     * @param bulkhead - the bulkhead of the stage.
+     */
+    private static void bulkhead(StringBuilder buf, String stage, Bulkhead bulkhead) {
+        gauge(buf, "latwiki_" + stage + "_running", "Running tasks of the " + stage + " stage.", bulkhead.getRunning());
+        gauge(buf, "latwiki_" + stage + "_queued", "Tasks waiting for the " + stage + " stage.", bulkhead.getQueued());
+        counter(buf, "latwiki_" + stage + "_rejected_total", "Tasks rejected by the full " + stage + " stage.", bulkhead.getRejected());
+    }
+
+    /**
+     * Appends a counter in the Prometheus text format.
+     *
+     * @param buf - the metric is appended here.
+     * @param name - name of the metric.
+     * @param help - description of the metric.
+     * @param value - value of the counter.
+     */
+    private static void counter(StringBuilder buf, String name, String help, long value) {
+        metric(buf, name, help, "counter", value);
+    }
+
+    /**
+     * Appends a gauge in the Prometheus text format.
+     *
+     * @param buf - the metric is appended here.
+     * @param name - name of the metric.
+     * @param help - description of the metric.
+     * @param value - value of the gauge.
+     */
+    private static void gauge(StringBuilder buf, String name, String help, long value) {
+        metric(buf, name, help, "gauge", value);
+    }
+
+    /**
+     * Appends a metric with its help and type lines in the Prometheus text format.
+     *
+     * @param buf - the metric is appended here.
+     * @param name - name of the metric.
+     * @param help - description of the metric.
+     * @param type - type of the metric, e.g. 'counter'.
+     * @param value - value of the metric.
+     */
+    private static void metric(StringBuilder buf, String name, String help, String type, long value) {
+        buf.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        buf.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        buf.append(name).append(' ').append(value).append('\n');
+    }
 }
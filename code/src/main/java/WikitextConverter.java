@@ -0,0 +1,547 @@
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Converts the wikitext of an article from a MediaWiki dump into a page that looks to the Parser
+ * like a page downloaded from Wikipedia: the article text sits in <p> elements within
+ * #mw-content-text, and the revision id is in the RLCONF script of the head.
+ *
+ * Only the running text matters for the exercises, so the conversion is deliberately simple:
+ * templates, tables, references, images, categories and interlanguage links are dropped,
+ * headings, lists, paragraphs, links, bold and italic text are kept, and any remaining HTML tags
+ * are stripped. Every step is a forward scan of the text, and lines are processed one by one, so
+ * the work is linear in the size of the text, even for malformed markup.
+ */
+final class WikitextConverter {
+
+	/** Comments. */
+	private static final Pattern COMMENT = Pattern.compile("<!--.*?(-->|\\z)", Pattern.DOTALL);
+
+	/** Elements whose content is not running text, e.g. <ref>...</ref> and <ref name="a"/>. */
+	private static final String[] BLOCKS = {"ref", "references", "gallery", "math", "chem", "syntaxhighlight", "source",
+			"score", "timeline", "imagemap", "graph", "mapframe"};
+
+	/**
+	 * Namespaces of links that MediaWiki does not show in the running text: images, which
+	 * become thumbnails, and categories, in the languages of the lexicons. Links to other
+	 * namespaces, e.g. [[Hilfe:Links|...]], are shown as links.
+	 */
+	private static final Set<String> HIDDEN_NAMESPACES = new HashSet<String>(Arrays.asList(
+			"file", "image", "category",
+			"datei", "bild", "kategorie",
+			"archivo", "imagen", "categoría",
+			"fichier", "catégorie",
+			"immagine", "categoria",
+			"файл", "изображение", "категория"));
+
+	/** Prefixes of interlanguage links, e.g. [[en:Dog]], which are shown beside the article. */
+	private static final Pattern LANGUAGE_CODE = Pattern.compile("[a-z]{2,3}(-[a-z0-9]+)*|simple");
+
+	/** Behaviour switches, e.g. __TOC__. */
+	private static final Pattern MAGIC_WORD = Pattern.compile("__[A-Z]+__");
+
+	/** Characters kept as they are in the title part of a Wikipedia URL. */
+	private static final String URL_SAFE = "-._~;:@$!*(),/";
+
+	/** Hexadecimal digits of percent encoding. */
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	/** Encoding of URLs and pages. */
+	private static final Charset ENCODING = Charset.forName("UTF-8");
+
+	/** Path of the articles on a Wikipedia host. */
+	static final String ARTICLE_PATH = "/wiki/";
+
+
+	/**
+	 * No instances.
+	 */
+	private WikitextConverter() {
+	}
+
+	/**
+	 * Converts an article into a page.
+	 *
+	 * @param language - code of the language of the article.
+	 * @param title - title of the article.
+	 * @param revision - revision id of the article, or RevisionId.UNKNOWN.
+	 * @param wikitext - wikitext of the article.
+	 * @return the HTML of the page.
+	 */
+	static String toHtml(String language, String title, long revision, String wikitext) {
+		StringBuilder html = new StringBuilder(wikitext.length() + 512);
+		html.append("<!DOCTYPE html>\n<html lang=\"").append(language).append("\"><head><meta charset=\"UTF-8\"><title>");
+		appendEscaped(title, html);
+		html.append(" – Wikipedia</title>");
+		if (revision != RevisionId.UNKNOWN) {
+			html.append("<script>RLCONF={\"wgRevisionId\":").append(revision).append("};</script>");
+		}
+		html.append("</head><body><div id=\"content\"><h1 id=\"firstHeading\">");
+		appendEscaped(title, html);
+		html.append("</h1><div id=\"mw-content-text\"><div class=\"mw-parser-output\">\n");
+		appendBody(wikitext, html);
+		html.append("</div></div></div></body></html>\n");
+		return html.toString();
+	}
+
+	/**
+	 * Converts the wikitext of an article into HTML block elements.
+	 *
+	 * @param wikitext - wikitext of the article.
+	 * @param html - the HTML is appended here.
+	 */
+	static void appendBody(String wikitext, StringBuilder html) {
+		String text = COMMENT.matcher(wikitext).replaceAll("");
+		text = removeBlocks(text);
+		text = MAGIC_WORD.matcher(text).replaceAll("");
+		text = removeNested(text);
+
+		boolean paragraph = false;
+		String list = null;
+		int start = 0;
+		while (start <= text.length()) {
+			int end = text.indexOf('\n', start);
+			if (end < 0) {
+				end = text.length();
+			}
+			String line = text.substring(start, end).trim();
+			start = end + 1;
+
+			char first = line.isEmpty() ? ' ' : line.charAt(0);
+			String itemList = first == '*' ? "ul" : first == '#' ? "ol" : null;
+			if (paragraph && (line.isEmpty() || first == '=' || itemList != null)) {
+				html.append("</p>\n");
+				paragraph = false;
+			}
+			if (list != null && !list.equals(itemList)) {
+				html.append("</").append(list).append(">\n");
+				list = null;
+			}
+			if (line.isEmpty() || line.startsWith("----")) {
+				continue;
+			}
+
+			if (first == '=' && line.length() > 2 && line.charAt(line.length() - 1) == '=') {
+				int level = 0;
+				while (level < line.length() / 2 && line.charAt(level) == '=' && line.charAt(line.length() - 1 - level) == '=') {
+					level++;
+				}
+				int tag = Math.max(2, Math.min(6, level));
+				html.append("<h").append(tag).append('>');
+				appendInline(line.substring(level, line.length() - level).trim(), html);
+				html.append("</h").append(tag).append(">\n");
+			}
+			else if (itemList != null) {
+				if (list == null) {
+					html.append('<').append(itemList).append(">\n");
+					list = itemList;
+				}
+				int marker = 0;
+				while (marker < line.length() && "*#:;".indexOf(line.charAt(marker)) >= 0) {
+					marker++;
+				}
+				html.append("<li>");
+				appendInline(line.substring(marker).trim(), html);
+				html.append("</li>\n");
+			}
+			else {
+				// Indented lines (':' and ';') are running text as well.
+				int marker = 0;
+				while (marker < line.length() && (line.charAt(marker) == ':' || line.charAt(marker) == ';')) {
+					marker++;
+				}
+				html.append(paragraph ? " " : "<p>");
+				paragraph = true;
+				appendInline(line.substring(marker).trim(), html);
+			}
+		}
+		if (paragraph) {
+			html.append("</p>\n");
+		}
+		if (list != null) {
+			html.append("</").append(list).append(">\n");
+		}
+	}
+
+	/**
+	 * Removes the elements whose content is not running text, e.g. <ref>...</ref>, in one
+	 * forward scan. An element that is not closed is kept, its tags are stripped later; the
+	 * next closing tag of each element and the next '>' are only searched for again once the
+	 * scan has passed them, so unclosed elements do not make the work quadratic.
+	 *
+	 * @param text - wikitext.
+	 * @return the wikitext without the elements.
+	 */
+	private static String removeBlocks(String text) {
+		int length = text.length();
+		StringBuilder kept = new StringBuilder(length);
+		int[] closing = new int[BLOCKS.length];
+		Arrays.fill(closing, -1);
+		int greater = -1;
+		int copied = 0;
+		int i = text.indexOf('<');
+		while (i >= 0) {
+			int block = blockAt(text, i + 1);
+			int end = -1;
+			if (block >= 0) {
+				if (greater <= i) {
+					greater = indexOrLength(text, '>', i);
+				}
+				if (greater < length && text.charAt(greater - 1) == '/') {
+					end = greater + 1;
+				}
+				else if (greater < length) {
+					if (closing[block] <= greater) {
+						closing[block] = findClosing(text, BLOCKS[block], greater + 1);
+					}
+					if (closing[block] < length) {
+						greater = indexOrLength(text, '>', closing[block]);
+						end = Math.min(greater + 1, length);
+					}
+				}
+			}
+			if (end >= 0) {
+				kept.append(text, copied, i);
+				copied = end;
+				i = text.indexOf('<', end);
+			}
+			else {
+				i = text.indexOf('<', i + 1);
+			}
+		}
+		return kept.append(text, copied, length).toString();
+	}
+
+	/**
+	 * Finds the element whose name starts at a position, e.g. after '<'.
+	 *
+	 * @param text - wikitext.
+	 * @param start - position of the name.
+	 * @return index of the element in BLOCKS, or -1 if it is none of them.
+	 */
+	private static int blockAt(String text, int start) {
+		for (int b=0; b<BLOCKS.length; b++) {
+			String name = BLOCKS[b];
+			int after = start + name.length();
+			if (text.regionMatches(true, start, name, 0, name.length())
+					&& (after == text.length() || !Character.isLetterOrDigit(text.charAt(after)) && text.charAt(after) != '_')) {
+				return b;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the closing tag of an element, e.g. </ref>.
+	 *
+	 * @param text - wikitext.
+	 * @param name - name of the element.
+	 * @param start - position to search from.
+	 * @return position of the closing tag, or the length of the text if there is none.
+	 */
+	private static int findClosing(String text, String name, int start) {
+		int i = text.indexOf("</", start);
+		while (i >= 0) {
+			int after = i + 2 + name.length();
+			if (text.regionMatches(true, i + 2, name, 0, name.length())
+					&& after < text.length() && (text.charAt(after) == '>' || Character.isWhitespace(text.charAt(after)))) {
+				return i;
+			}
+			i = text.indexOf("</", i + 2);
+		}
+		return text.length();
+	}
+
+	/**
+	 * @param text - the text.
+	 * @param c - a character.
+	 * @param start - position to search from.
+	 * @return position of the character, or the length of the text if it does not occur.
+	 */
+	private static int indexOrLength(String text, char c, int start) {
+		int i = text.indexOf(c, start);
+		return i < 0 ? text.length() : i;
+	}
+
+	/**
+	 * Removes templates ({{...}}), tables ({|...|}) and links that are not shown in the running
+	 * text, i.e. images, categories and other languages ([[Datei:...]]), all of which may be
+	 * nested.
+	 *
+	 * @param text - wikitext.
+	 * @return the wikitext without them.
+	 */
+	private static String removeNested(String text) {
+		StringBuilder kept = new StringBuilder(text.length());
+		int templates = 0;
+		int tables = 0;
+		int length = text.length();
+		int i = 0;
+		while (i < length) {
+			if (text.startsWith("{{", i)) {
+				templates++;
+				i += 2;
+			}
+			else if (templates > 0 && text.startsWith("}}", i)) {
+				templates--;
+				i += 2;
+			}
+			else if (text.startsWith("{|", i)) {
+				tables++;
+				i += 2;
+			}
+			else if (tables > 0 && text.startsWith("|}", i)) {
+				tables--;
+				i += 2;
+			}
+			else if (templates > 0 || tables > 0) {
+				i++;
+			}
+			else if (text.startsWith("[[", i) && isHiddenLink(text, i + 2)) {
+				i = endOfLink(text, i);
+			}
+			else {
+				kept.append(text.charAt(i));
+				i++;
+			}
+		}
+		return kept.toString();
+	}
+
+	/**
+	 * Checks whether a link is not shown in the running text, e.g. [[Datei:Hund.jpg|...]] or
+	 * [[en:Dog]]. Links starting with a colon, e.g. [[:Kategorie:Hund]], are shown as links by
+	 * MediaWiki, as are titles with a colon, e.g. [[Star Wars: Episode IV]].
+	 *
+	 * @param text - wikitext.
+	 * @param start - position of the link target.
+	 * @return true if the target has the prefix of an image, category or language.
+	 */
+	private static boolean isHiddenLink(String text, int start) {
+		for (int i=start; i<text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == ':') {
+				String prefix = text.substring(start, i).trim();
+				return HIDDEN_NAMESPACES.contains(prefix.toLowerCase(Locale.ROOT)) || LANGUAGE_CODE.matcher(prefix).matches();
+			}
+			if (c == '|' || c == ']' || c == '[' || c == '\n') {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the end of a link, counting links nested in its caption.
+	 *
+	 * @param text - wikitext.
+	 * @param start - position of the opening brackets.
+	 * @return the position after the closing brackets, or the end of the text.
+	 */
+	private static int endOfLink(String text, int start) {
+		int depth = 0;
+		int i = start;
+		while (i < text.length()) {
+			if (text.startsWith("[[", i)) {
+				depth++;
+				i += 2;
+			}
+			else if (text.startsWith("]]", i)) {
+				depth--;
+				i += 2;
+				if (depth == 0) {
+					return i;
+				}
+			}
+			else {
+				i++;
+			}
+		}
+		return i;
+	}
+
+	/**
+	 * Converts a line of running text: links, external links, bold and italic text. Other HTML
+	 * tags are stripped; the text is escaped.
+	 *
+	 * @param line - a line of wikitext.
+	 * @param html - the HTML is appended here.
+	 */
+	private static void appendInline(String line, StringBuilder html) {
+		boolean bold = false;
+		boolean italic = false;
+		int length = line.length();
+		int i = 0;
+		while (i < length) {
+			char c = line.charAt(i);
+			if (c == '[' && line.startsWith("[[", i)) {
+				int end = line.indexOf("]]", i + 2);
+				if (end < 0) {
+					appendEscaped(line.substring(i), html);
+					break;
+				}
+				String link = line.substring(i + 2, end);
+				int pipe = link.indexOf('|');
+				String target = pipe < 0 ? link : link.substring(0, pipe);
+				String label = pipe < 0 ? link : link.substring(pipe + 1);
+				if (label.isEmpty()) {
+					label = target;
+				}
+				if (target.startsWith(":")) {
+					target = target.substring(1);
+				}
+				html.append("<a href=\"").append(ARTICLE_PATH).append(titleToPath(target)).append("\">");
+				appendEscaped(label, html);
+				html.append("</a>");
+				i = end + 2;
+			}
+			else if (c == '[' && (line.startsWith("http://", i + 1) || line.startsWith("https://", i + 1))) {
+				int end = line.indexOf(']', i);
+				if (end < 0) {
+					appendEscaped(line.substring(i), html);
+					break;
+				}
+				int space = line.indexOf(' ', i);
+				if (space >= 0 && space < end) {
+					appendEscaped(line.substring(space + 1, end), html);
+				}
+				i = end + 1;
+			}
+			else if (c == '\'' && line.startsWith("'''", i)) {
+				html.append(bold ? "</b>" : "<b>");
+				bold = !bold;
+				i += 3;
+			}
+			else if (c == '\'' && line.startsWith("''", i)) {
+				html.append(italic ? "</i>" : "<i>");
+				italic = !italic;
+				i += 2;
+			}
+			else if (c == '<') {
+				int end = line.indexOf('>', i);
+				if (end < 0) {
+					html.append("&lt;");
+					i++;
+				}
+				else {
+					i = end + 1;
+				}
+			}
+			else {
+				appendEscaped(c, line, i, html);
+				i++;
+			}
+		}
+		if (italic) {
+			html.append("</i>");
+		}
+		if (bold) {
+			html.append("</b>");
+		}
+	}
+
+	/**
+	 * Appends text escaped for HTML. Character references, e.g. &nbsp;, are kept.
+	 *
+	 * @param text - the text.
+	 * @param html - the HTML is appended here.
+	 */
+	private static void appendEscaped(String text, StringBuilder html) {
+		for (int i=0; i<text.length(); i++) {
+			appendEscaped(text.charAt(i), text, i, html);
+		}
+	}
+
+	/**
+	 * Appends a character escaped for HTML.
+	 *
+	 * @param c - the character.
+	 * @param text - the text containing the character, to recognize character references.
+	 * @param position - position of the character in the text.
+	 * @param html - the HTML is appended here.
+	 */
+	private static void appendEscaped(char c, String text, int position, StringBuilder html) {
+		if (c == '<') {
+			html.append("&lt;");
+		}
+		else if (c == '>') {
+			html.append("&gt;");
+		}
+		else if (c == '"') {
+			html.append("&quot;");
+		}
+		else if (c == '&' && !isCharacterReference(text, position)) {
+			html.append("&amp;");
+		}
+		else {
+			html.append(c);
+		}
+	}
+
+	/**
+	 * Checks whether a character reference, e.g. &nbsp; or &#160;, starts at a position.
+	 *
+	 * @param text - the text.
+	 * @param position - position of the ampersand.
+	 * @return true if a character reference starts there.
+	 */
+	private static boolean isCharacterReference(String text, int position) {
+		int i = position + 1;
+		if (i < text.length() && text.charAt(i) == '#') {
+			i++;
+		}
+		int start = i;
+		while (i < text.length() && i - start < 32 && Character.isLetterOrDigit(text.charAt(i))) {
+			i++;
+		}
+		return i > start && i < text.length() && text.charAt(i) == ';';
+	}
+
+	/**
+	 * Turns a title into the path of its article, as Wikipedia writes it in URLs: spaces become
+	 * underscores, the first letter is upper case, and other characters are percent encoded in
+	 * UTF-8, e.g. 'Собака' becomes '%D0%A1%D0%BE%D0%B1%D0%B0%D0%BA%D0%B0'.
+	 *
+	 * @param title - the title.
+	 * @return the path of the article, without '/wiki/'.
+	 */
+	static String titleToPath(String title) {
+		String name = title.trim().replace(' ', '_');
+		if (!name.isEmpty()) {
+			int first = name.codePointAt(0);
+			name = new StringBuilder(name.length()).appendCodePoint(Character.toUpperCase(first))
+					.append(name, Character.charCount(first), name.length()).toString();
+		}
+		StringBuilder path = new StringBuilder(name.length() * 2);
+		for (byte b : name.getBytes(ENCODING)) {
+			int c = b & 0xFF;
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || (c < 0x80 && URL_SAFE.indexOf(c) >= 0)) {
+				path.append((char) c);
+			}
+			else {
+				path.append('%').append(HEX[c >> 4]).append(HEX[c & 0xF]);
+			}
+		}
+		return path.toString();
+	}
+}
@@ -0,0 +1,142 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * ==========================================
+ * EBERHARD-KARLS UNIVERSITÄT TÜBINGEN
+ * July 2016
+ *
+ * Course: ISCL
+ * Subject: Data structures and Algorithms II
+ * Final project
+ * ==========================================
+ *
+ * Acknowledgement
+ * ---------------
+ * This program is based on an idea/program (WERTi) from Prof. Detmer Meurers of University of
+ * Tübingen.
+ *
+ * Description
+ * -----------
+ * Thread pools of the request pipeline. Pages are fetched on the fetch pool, where threads mostly
+ * wait for Wikipedia, and transformed on the smaller transform pool, which is sized for the CPUs.
+ * Neither holds a Jetty request thread. Each pool sits behind a Bulkhead with a bounded queue, so
+ * that bursts are rejected instead of piling up parsed documents in memory.
+ *
+ * Settings:
+ * - fetch.threads - concurrent fetches, default 64.
+ * - fetch.queue - fetches waiting for a thread, default 256.
+ * - transform.threads - concurrent transforms, default the number of CPUs.
+ * - transform.queue - fetched pages waiting for a transform, default 64.
+ * - fetch.refresh.threads - concurrent background refreshes of expired pages, default 4.
+ * - fetch.refresh.queue - expired pages waiting for a refresh, default 64.
+ * - server.virtualThreads - run the fetch stage on virtual threads, one per fetch, instead of
+ *   the fetch pool, default false. Needs a JDK with virtual threads (21 or later); otherwise the
+ *   fetch pool is used.
+ */
+final class WorkerPools {
+
+	/** Default number of concurrent fetches. */
+	private static final int DEFAULT_FETCH_THREADS = 64;
+
+	/** Default number of fetches waiting for a thread. */
+	private static final int DEFAULT_FETCH_QUEUE = 256;
+
+	/** Default number of fetched pages waiting for a transform. */
+	private static final int DEFAULT_TRANSFORM_QUEUE = 64;
+
+	/** Default number of concurrent background refreshes. */
+	private static final int DEFAULT_REFRESH_THREADS = 4;
+
+	/** Default number of expired pages waiting for a refresh. */
+	private static final int DEFAULT_REFRESH_QUEUE = 64;
+
+	/** Name of the JDK 21 factory method for virtual thread executors. */
+	private static final String VIRTUAL_THREAD_FACTORY = "newVirtualThreadPerTaskExecutor";
+
+	/** A logger instance. */
+	private static final Logger logger = Logger.getLogger(WorkerPools.class.getName());
+
+
+	/**
+	 * No instances.
+	 */
+	private WorkerPools() {
+	}
+
+	/**
+	 * Creates the executor of the fetch stage with the configured settings.
+	 *
+	 * @return the executor.
+	 */
+	static Bulkhead newFetchExecutor() {
+		int threads = Configuration.getInt("fetch.threads", DEFAULT_FETCH_THREADS);
+		int queue = Configuration.getInt("fetch.queue", DEFAULT_FETCH_QUEUE);
+		if (Configuration.getBoolean("server.virtualThreads", false)) {
+			ExecutorService virtual = newVirtualThreadExecutor();
+			if (virtual != null) {
+				logger.log(Level.INFO, "Fetching pages on virtual threads.");
+				return new Bulkhead("fetch", virtual, threads, queue);
+			}
+			logger.log(Level.WARNING, "Virtual threads are not available in this JDK; using the fetch pool.");
+		}
+		return new Bulkhead("fetch", Executors.newFixedThreadPool(threads, daemonThreads("fetch")), threads, queue);
+	}
+
+	/**
+	 * Creates the executor of the transform stage with the configured settings.
+	 *
+	 * @return the executor.
+	 */
+	static Bulkhead newTransformExecutor() {
+		int threads = Configuration.getInt("transform.threads", Runtime.getRuntime().availableProcessors());
+		int queue = Configuration.getInt("transform.queue", DEFAULT_TRANSFORM_QUEUE);
+		return new Bulkhead("transform", Executors.newFixedThreadPool(threads, daemonThreads("transform")), threads, queue);
+	}
+
+	/**
+	 * Creates the executor of the background refreshes of expired pages with the configured
+	 * settings. It is kept apart from the fetch stage, so refreshes never hold up requests.
+	 *
+	 * @return the executor.
+	 */
+	static Bulkhead newRefreshExecutor() {
+		int threads = Configuration.getInt("fetch.refresh.threads", DEFAULT_REFRESH_THREADS);
+		int queue = Configuration.getInt("fetch.refresh.queue", DEFAULT_REFRESH_QUEUE);
+		return new Bulkhead("refresh", Executors.newFixedThreadPool(threads, daemonThreads("refresh")), threads, queue);
+	}
+
+	/**
+	 * Creates an executor starting a virtual thread per task. Looked up by reflection, since the
+	 * project is compiled for Java 8.
+	 *
+	 * @return the executor, or null if the JDK has no virtual threads.
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod(VIRTUAL_THREAD_FACTORY).invoke(null);
+		}
+		catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Creates a factory of named daemon threads, e.g. 'fetch-1'.
+	 *
+	 * @param name - prefix of the thread names.
+	 * @return the thread factory.
+	 */
+	private static ThreadFactory daemonThreads(String name) {
+		AtomicInteger count = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
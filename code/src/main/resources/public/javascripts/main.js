@@ -3,6 +3,16 @@ $(document).ready(function() {
 
     var score = 0;
 
+    // Gaps with shared options only hold the prompt; copy the options of the page into a gap
+    // before it opens.
+    $("body").on("focusin mousedown touchstart", "select[data-options]", function() {
+        var template = document.getElementById(this.getAttribute("data-options"));
+        this.removeAttribute("data-options");
+        if (template) {
+            $(this).append(template.content ? document.importNode(template.content, true) : $(template).html());
+        }
+    });
+
     $("body").on("change", function(event) {
         if (event.target && event.target.nodeName === "SELECT") {
             $(event.target).attr("disabled", "disabled");
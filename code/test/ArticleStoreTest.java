@@ -0,0 +1,133 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import junit.framework.TestCase;
+
+public class ArticleStoreTest extends TestCase {
+
+	private static final String PAGE = "<html><head></head><body><p>Der Hund und die Katze.</p></body></html>";
+
+	private File directory;
+
+	protected void setUp() throws IOException {
+		directory = File.createTempFile("article-store", "");
+		directory.delete();
+	}
+
+	protected void tearDown() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	private ArticleStore open(long maxBytes, long segmentBytes) throws IOException {
+		return new ArticleStore(directory, maxBytes, segmentBytes, 60000);
+	}
+
+	public void testConstructor() throws IOException {
+		try {
+			new ArticleStore(null, 1000, 1000, 1000);
+			fail();
+		}
+		catch (IllegalArgumentException e) {
+			// Test OK.
+		}
+	}
+
+	public void testGet() throws IOException {
+		ArticleStore store = open(1000000, 100000);
+		assertNull(store.get("https://de.wikipedia.org/wiki/Hund"));
+		store.put("https://de.wikipedia.org/wiki/Hund", PAGE, System.currentTimeMillis());
+		assertEquals(PAGE, store.get("https://de.wikipedia.org/wiki/Hund").getHtml());
+		assertEquals(1, store.getHits());
+		assertEquals(1, store.getMisses());
+		store.close();
+	}
+
+	public void testGetStale() throws IOException {
+		ArticleStore store = open(1000000, 100000);
+		store.put("https://de.wikipedia.org/wiki/Hund", PAGE, System.currentTimeMillis() - 120000);
+		assertNull(store.get("https://de.wikipedia.org/wiki/Hund"));
+		ArticleStore.Entry entry = store.get("https://de.wikipedia.org/wiki/Hund", 120000);
+		assertEquals(PAGE, entry.getHtml());
+		assertFalse(store.isFresh(entry));
+		store.close();
+	}
+
+	public void testReopen() throws IOException {
+		ArticleStore store = open(1000000, 100000);
+		store.put("https://de.wikipedia.org/wiki/Hund", "alt", System.currentTimeMillis());
+		store.put("https://de.wikipedia.org/wiki/Hund", PAGE, System.currentTimeMillis());
+		store.put("https://de.wikipedia.org/wiki/Katze", PAGE, System.currentTimeMillis());
+		store.close();
+
+		store = open(1000000, 100000);
+		assertEquals(2, store.getSize());
+		assertEquals(PAGE, store.get("https://de.wikipedia.org/wiki/Hund").getHtml());
+		assertEquals(PAGE, store.get("https://de.wikipedia.org/wiki/Katze").getHtml());
+		store.close();
+	}
+
+	public void testLocked() throws IOException {
+		ArticleStore store = open(1000000, 100000);
+		try {
+			open(1000000, 100000);
+			fail();
+		}
+		catch (IOException e) {
+			// Expected.
+		}
+		store.close();
+		open(1000000, 100000).close();
+	}
+
+	public void testTornRecord() throws IOException {
+		ArticleStore store = open(1000000, 100000);
+		store.put("https://de.wikipedia.org/wiki/Hund", PAGE, System.currentTimeMillis());
+		store.put("https://de.wikipedia.org/wiki/Katze", PAGE, System.currentTimeMillis());
+		long size = store.getTotalBytes();
+		store.close();
+
+		// Cut the last record in half, as a crash during a write would.
+		RandomAccessFile file = new RandomAccessFile(new File(directory, "segment-000000.dat"), "rw");
+		file.setLength(size - 10);
+		file.close();
+
+		store = open(1000000, 100000);
+		assertEquals(1, store.getSize());
+		assertNotNull(store.get("https://de.wikipedia.org/wiki/Hund"));
+		assertNull(store.get("https://de.wikipedia.org/wiki/Katze"));
+		store.put("https://de.wikipedia.org/wiki/Katze", PAGE, System.currentTimeMillis());
+		assertEquals(PAGE, store.get("https://de.wikipedia.org/wiki/Katze").getHtml());
+		store.close();
+	}
+
+	public void testCompaction() throws IOException {
+		// Room for two records per segment.
+		ArticleStore store = open(1000000, 300);
+		for (int i=0; i<10; i++) {
+			store.put("https://de.wikipedia.org/wiki/Hund", PAGE + i, System.currentTimeMillis());
+		}
+		assertTrue(store.getCompactions() > 0);
+		assertTrue(store.getSegmentCount() <= 2);
+		assertEquals(PAGE + 9, store.get("https://de.wikipedia.org/wiki/Hund").getHtml());
+		store.close();
+	}
+
+	public void testMaxBytes() throws IOException {
+		ArticleStore store = open(600, 300);
+		for (int i=0; i<10; i++) {
+			store.put("https://de.wikipedia.org/wiki/Seite" + i, PAGE, System.currentTimeMillis());
+		}
+		assertTrue(store.getEvictions() > 0);
+		assertTrue(store.getTotalBytes() <= 600);
+		assertNull(store.get("https://de.wikipedia.org/wiki/Seite0"));
+		assertNotNull(store.get("https://de.wikipedia.org/wiki/Seite9"));
+		store.close();
+	}
+}
@@ -0,0 +1,143 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import junit.framework.TestCase;
+
+public class BatchProcessorTest extends TestCase {
+
+	private static final String URL = "https://de.wikipedia.org/wiki/Hund";
+
+	private static final Executor DIRECT = Runnable::run;
+
+	public void testJsonParse() {
+		Map<?, ?> value = (Map<?, ?>) Json.parse(" {\"a\": [1, -2.5e1, true, null], \"b\": \"x\\\"\\u00e4\\n\"} ");
+		assertEquals(Arrays.asList(1L, -25.0, Boolean.TRUE, null), value.get("a"));
+		assertEquals("x\"ä\n", value.get("b"));
+		for (String invalid : new String[] {"", "{", "[1,]", "{\"a\" 1}", "tru", "\"a", "1 2"}) {
+			try {
+				Json.parse(invalid);
+				fail(invalid);
+			}
+			catch (IllegalArgumentException e) {
+				// Test OK.
+			}
+		}
+	}
+
+	public void testJsonDepth() {
+		StringBuilder nested = new StringBuilder();
+		for (int i=0; i<Json.MAX_DEPTH; i++) {
+			nested.append('[');
+		}
+		for (int i=0; i<Json.MAX_DEPTH; i++) {
+			nested.append(']');
+		}
+		assertNotNull(Json.parse(nested.toString()));
+
+		StringBuilder deep = new StringBuilder();
+		for (int i=0; i<100000; i++) {
+			deep.append("[{\"a\":");
+		}
+		try {
+			BatchProcessor.parseJobs(deep.toString(), 10);
+			fail();
+		}
+		catch (IllegalArgumentException e) {
+			// Test OK.
+		}
+	}
+
+	public void testReadBody() throws IOException {
+		String body = "{\"url\":\"" + URL + "\",\"cloze\":\"Präpositionen\"}";
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		assertEquals(body, BatchProcessor.readBody(new ByteArrayInputStream(bytes), bytes.length));
+		try {
+			BatchProcessor.readBody(new ByteArrayInputStream(new byte[100000]), bytes.length);
+			fail();
+		}
+		catch (IllegalArgumentException e) {
+			// Test OK.
+		}
+	}
+
+	public void testJsonString() {
+		StringBuilder json = new StringBuilder();
+		Json.appendString("<p class=\"a\">\tä </p>", json);
+		assertEquals("<p class=\"a\">\tä </p>", Json.parse(json.toString()));
+		assertFalse(json.toString(), json.toString().contains("\t"));
+	}
+
+	public void testParseJobs() {
+		List<BatchProcessor.Job> jobs = BatchProcessor.parseJobs("[{\"url\":\"" + URL + "\",\"cloze\":\"articles\",\"seed\":3},"
+				+ "{\"url\":\"" + URL + "\",\"cloze\":\"pronouns\"}]", 10);
+		assertEquals(2, jobs.size());
+		assertEquals(2, BatchProcessor.parseJobs("{\"url\":\"a\"}\n\n{\"url\":\"b\"}\n", 10).size());
+
+		for (String invalid : new String[] {"", "[]", "[1]", "{\"url\":\"a\",\"seed\":\"x\"}", "[{}, {}, {}]"}) {
+			try {
+				BatchProcessor.parseJobs(invalid, 2);
+				fail(invalid);
+			}
+			catch (IllegalArgumentException e) {
+				// Test OK.
+			}
+		}
+	}
+
+	public void testProcess() throws IOException {
+		Parser parser = new Parser(LexiconRegistry.fromClasspath(), new DirectoryDocumentSource(new File("fixtures")));
+		String page = parser.processSite(URL, WordClass.ARTICLES);
+		BatchProcessor processor = new BatchProcessor(parser, DIRECT, DIRECT, 2);
+		List<BatchProcessor.Job> jobs = BatchProcessor.parseJobs("[{\"url\":\"" + URL + "\",\"cloze\":\"articles\"},"
+				+ "{\"url\":\"" + URL + "\",\"cloze\":\"prepositions\",\"seed\":1},"
+				+ "{\"url\":\"" + URL + "\",\"cloze\":\"adverbs\"},"
+				+ "{\"url\":\"https://example.org/\",\"cloze\":\"articles\"},"
+				+ "{\"url\":\"https://de.wikipedia.org/wiki/Katze\",\"cloze\":\"articles\"}]", 10);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		processor.process(jobs, out).join();
+		String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+		assertEquals(5, lines.length);
+
+		Map<?, ?> cached = (Map<?, ?>) Json.parse(lines[0]);
+		assertEquals(0L, cached.get("index"));
+		assertEquals("ok", cached.get("status"));
+		assertEquals(Boolean.TRUE, cached.get("cached"));
+		assertEquals(page, cached.get("html"));
+		assertTrue(cached.get("millis") instanceof Long);
+		assertTrue(cached.get("waitMillis") instanceof Long);
+
+		Map<?, ?> rendered = (Map<?, ?>) Json.parse(lines[1]);
+		assertEquals("ok", rendered.get("status"));
+		assertEquals(Boolean.FALSE, rendered.get("cached"));
+		assertEquals(1L, rendered.get("seed"));
+		assertEquals(parser.processSite(URL, WordClass.PREPOSITIONS, 1L), rendered.get("html"));
+
+		assertEquals("invalid", ((Map<?, ?>) Json.parse(lines[2])).get("status"));
+		assertEquals("invalid", ((Map<?, ?>) Json.parse(lines[3])).get("status"));
+		Map<?, ?> missing = (Map<?, ?>) Json.parse(lines[4]);
+		assertEquals("error", missing.get("status"));
+		assertNotNull(missing.get("error"));
+	}
+
+	public void testEmptyUrl() throws IOException {
+		Parser parser = new Parser(LexiconRegistry.fromClasspath(), new DirectoryDocumentSource(new File("fixtures")));
+		BatchProcessor processor = new BatchProcessor(parser, DIRECT, DIRECT, 1);
+		List<BatchProcessor.Job> jobs = BatchProcessor.parseJobs("{\"url\":\"\",\"cloze\":\"articles\"}\n"
+				+ "{\"url\":\"" + URL + "\",\"cloze\":\"articles\"}\n{\"url\":\"\",\"cloze\":\"articles\"}", 10);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertTrue(processor.process(jobs, out).isDone());
+		String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+		assertEquals(3, lines.length);
+		assertEquals("invalid", ((Map<?, ?>) Json.parse(lines[0])).get("status"));
+		assertEquals("ok", ((Map<?, ?>) Json.parse(lines[1])).get("status"));
+		assertEquals("invalid", ((Map<?, ?>) Json.parse(lines[2])).get("status"));
+	}
+}
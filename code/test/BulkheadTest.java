@@ -0,0 +1,66 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class BulkheadTest extends TestCase {
+
+	public void testConstructor() {
+		try {
+			new Bulkhead("test", Executors.newSingleThreadExecutor(), 0, 1);
+			fail();
+		}
+		catch (IllegalArgumentException e) {
+			// Test OK.
+		}
+	}
+
+	public void testRejectWhenFull() throws InterruptedException {
+		ExecutorService pool = Executors.newCachedThreadPool();
+		Bulkhead bulkhead = new Bulkhead("test", pool, 2, 1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(3);
+		Runnable task = () -> {
+			try {
+				release.await();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			done.countDown();
+		};
+
+		bulkhead.execute(task);
+		bulkhead.execute(task);
+		bulkhead.execute(task);
+		assertEquals(2, bulkhead.getRunning());
+		assertEquals(1, bulkhead.getQueued());
+		try {
+			bulkhead.execute(task);
+			fail();
+		}
+		catch (RejectedExecutionException e) {
+			// Test OK.
+		}
+		try {
+			bulkhead.checkCapacity();
+			fail();
+		}
+		catch (RejectedExecutionException e) {
+			// Test OK.
+		}
+		assertEquals(2, bulkhead.getRejected());
+
+		// The queued task runs once a slot is free.
+		release.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(0, bulkhead.getRunning());
+		assertEquals(0, bulkhead.getQueued());
+		bulkhead.checkCapacity();
+	}
+}
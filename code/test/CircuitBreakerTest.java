@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jsoup.HttpStatusException;
+
+import junit.framework.TestCase;
+
+public class CircuitBreakerTest extends TestCase {
+
+	private static final String URL = "https://de.wikipedia.org/wiki/Hund";
+
+	private static final String PAGE = "<html><body><p>Der Hund bellt.</p></body></html>";
+
+	public void testConstructor() {
+		try {
+			new CircuitBreaker(0, 1000);
+			fail();
+		}
+		catch (IllegalArgumentException e) {
+			// Test OK.
+		}
+	}
+
+	public void testOpensAfterFailures() {
+		CircuitBreaker breaker = new CircuitBreaker(2, 60000);
+		assertTrue(breaker.allowRequest());
+		breaker.recordFailure();
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertTrue(breaker.allowRequest());
+		breaker.recordFailure();
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse(breaker.allowRequest());
+	}
+
+	public void testSuccessResetsFailures() {
+		CircuitBreaker breaker = new CircuitBreaker(2, 60000);
+		breaker.recordFailure();
+		breaker.recordSuccess();
+		breaker.recordFailure();
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	public void testHalfOpen() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker(1, 10);
+		breaker.recordFailure();
+		Thread.sleep(20);
+		// Only one trial request passes.
+		assertTrue(breaker.allowRequest());
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		assertFalse(breaker.allowRequest());
+		breaker.recordFailure();
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+		Thread.sleep(20);
+		assertTrue(breaker.allowRequest());
+		breaker.recordSuccess();
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertTrue(breaker.allowRequest());
+	}
+
+	public void testFetcherShortCircuits() {
+		AtomicInteger loads = new AtomicInteger();
+		DocumentSource failing = url -> {
+			loads.incrementAndGet();
+			throw new SocketTimeoutException("Read timed out");
+		};
+		PageFetcher fetcher = new PageFetcher(new PageCache(100000, 60000), null, failing, Runnable::run);
+		for (int i=0; i<10; i++) {
+			try {
+				fetcher.fetchHtml(URL);
+				fail();
+			}
+			catch (IOException e) {
+				// Test OK.
+			}
+		}
+		assertEquals(5, loads.get());
+		assertEquals(5, fetcher.getShortCircuited());
+		assertEquals(1, fetcher.getOpenCircuits());
+	}
+
+	public void testMissingPageKeepsCircuitClosed() {
+		DocumentSource missing = url -> {
+			throw new HttpStatusException("HTTP error fetching URL", 404, url);
+		};
+		PageFetcher fetcher = new PageFetcher(new PageCache(100000, 60000), null, missing, Runnable::run);
+		for (int i=0; i<10; i++) {
+			try {
+				fetcher.fetchHtml(URL);
+				fail();
+			}
+			catch (IOException e) {
+				// Test OK.
+			}
+		}
+		assertEquals(0, fetcher.getShortCircuited());
+		assertEquals(0, fetcher.getOpenCircuits());
+	}
+
+	public void testStalePageServedWhileRefreshing() throws IOException {
+		PageCache cache = new PageCache(100000, 1000);
+		cache.put(UrlNormalizer.normalize(URL), PAGE, System.currentTimeMillis() - 2000);
+		DocumentSource failing = url -> {
+			throw new SocketTimeoutException("Read timed out");
+		};
+		PageFetcher fetcher = new PageFetcher(cache, null, failing, Runnable::run);
+
+		assertEquals(PAGE, fetcher.fetchHtml(URL));
+		assertEquals(1, fetcher.getStaleServed());
+		assertEquals(1, fetcher.getRefreshFailures());
+		try {
+			fetcher.fetchHtml(URL, false);
+			fail();
+		}
+		catch (IOException e) {
+			// Test OK.
+		}
+	}
+
+	public void testStalePageRefreshed() throws IOException {
+		PageCache cache = new PageCache(100000, 1000);
+		cache.put(UrlNormalizer.normalize(URL), PAGE, System.currentTimeMillis() - 2000);
+		String fresh = "<html><body><p>Die Katze schläft.</p></body></html>";
+		PageFetcher fetcher = new PageFetcher(cache, null, url -> fresh, Runnable::run);
+
+		// The expired page is returned, the refresh replaces it.
+		assertEquals(PAGE, fetcher.fetchHtml(URL));
+		assertEquals(fresh, fetcher.fetchHtml(URL));
+		assertEquals(1, fetcher.getStaleServed());
+	}
+
+	public void testCheckAvailable() throws IOException {
+		PageCache cache = new PageCache(100000, 60000);
+		DocumentSource failing = url -> {
+			throw new SocketTimeoutException("Read timed out");
+		};
+		PageFetcher fetcher = new PageFetcher(cache, null, failing, Runnable::run);
+		fetcher.checkAvailable(URL);
+		for (int i=0; i<5; i++) {
+			try {
+				fetcher.fetchHtml(URL);
+				fail();
+			}
+			catch (IOException e) {
+				// Test OK.
+			}
+		}
+		try {
+			fetcher.checkAvailable(URL);
+			fail();
+		}
+		catch (IOException e) {
+			// Test OK.
+		}
+		// A cached page of the host can still be served.
+		String cached = "https://de.wikipedia.org/wiki/Katze";
+		cache.put(UrlNormalizer.normalize(cached), PAGE, System.currentTimeMillis());
+		fetcher.checkAvailable(cached);
+	}
+}
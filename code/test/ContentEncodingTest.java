@@ -0,0 +1,21 @@
+import junit.framework.TestCase;
+
+public class ContentEncodingTest extends TestCase {
+
+	public void testAcceptsGzip() {
+		assertTrue(ContentEncoding.acceptsGzip("gzip"));
+		assertTrue(ContentEncoding.acceptsGzip("gzip, deflate, br"));
+		assertTrue(ContentEncoding.acceptsGzip("deflate, GZIP;q=0.5"));
+		assertTrue(ContentEncoding.acceptsGzip("x-gzip"));
+		assertTrue(ContentEncoding.acceptsGzip("*"));
+	}
+
+	public void testRejectsGzip() {
+		assertFalse(ContentEncoding.acceptsGzip(null));
+		assertFalse(ContentEncoding.acceptsGzip(""));
+		assertFalse(ContentEncoding.acceptsGzip("identity"));
+		assertFalse(ContentEncoding.acceptsGzip("gzip;q=0"));
+		assertFalse(ContentEncoding.acceptsGzip("gzip;q=0, *"));
+		assertFalse(ContentEncoding.acceptsGzip("br, *;q=0"));
+	}
+}
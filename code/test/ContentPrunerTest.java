@@ -0,0 +1,55 @@
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import junit.framework.TestCase;
+
+public class ContentPrunerTest extends TestCase {
+
+	private static final String PAGE = "<html><head><title>Hund</title><meta charset=\"UTF-8\">"
+			+ "<link rel=\"stylesheet\" href=\"/w/load.php\"><script>var RLCONF = {};</script></head>"
+			+ "<body><div id=\"content\" class=\"mw-body\"><h1 id=\"firstHeading\">Hund</h1>"
+			+ "<div id=\"siteSub\">Aus Wikipedia</div>"
+			+ "<div id=\"mw-content-text\"><p>Der Hund.</p><div class=\"navbox\">Felis</div>"
+			+ "<div class=\"reflist\">Quelle</div><script>x();</script></div>"
+			+ "<div id=\"catlinks\">Canis</div></div>"
+			+ "<div id=\"mw-navigation\">Hauptseite</div><div id=\"footer\">Footer</div></body></html>";
+
+	public void testConstructor() {
+		try {
+			new ContentPruner(null);
+			fail();
+		}
+		catch (IllegalArgumentException e) {
+			// Test OK.
+		}
+	}
+
+	public void testPrune() {
+		Document doc = Jsoup.parse(PAGE);
+		new ContentPruner(ContentPruner.DEFAULT_NOISE).prune(doc);
+
+		assertEquals(1, doc.body().children().size());
+		assertEquals("content", doc.body().child(0).id());
+		assertEquals("mw-body", doc.body().child(0).className());
+		assertNotNull(doc.getElementById("firstHeading"));
+		assertEquals("Der Hund.", doc.select("#mw-content-text p").text());
+		assertTrue(doc.select(".navbox, .reflist, script, #siteSub, #catlinks, #mw-navigation, #footer").isEmpty());
+		assertEquals("Hund", doc.title());
+		assertEquals(1, doc.head().select("link[rel=stylesheet]").size());
+		assertEquals(1, doc.head().select("meta[charset]").size());
+	}
+
+	public void testNoNoise() {
+		Document doc = Jsoup.parse(PAGE);
+		new ContentPruner("").prune(doc);
+		assertEquals(1, doc.select(".navbox").size());
+		assertTrue(doc.select("#footer").isEmpty());
+	}
+
+	public void testNotAnArticle() {
+		Document doc = Jsoup.parse("<html><head><script>x();</script></head><body><p>Text</p><div class=\"navbox\">Felis</div></body></html>");
+		new ContentPruner(ContentPruner.DEFAULT_NOISE).prune(doc);
+		assertEquals("Text", doc.body().text());
+		assertEquals(1, doc.head().select("script").size());
+	}
+}
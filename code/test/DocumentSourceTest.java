@@ -0,0 +1,59 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+public class DocumentSourceTest extends TestCase {
+
+	private static final String URL = "https://de.wikipedia.org/wiki/Hund";
+
+	private static final String PAGE = "<html><head></head><body><p>Der Hund und die Katze.</p></body></html>";
+
+	private File directory;
+
+	protected void setUp() throws IOException {
+		directory = File.createTempFile("fixtures", "");
+		directory.delete();
+	}
+
+	protected void tearDown() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	public void testFileName() {
+		assertEquals("de.wikipedia.org%2Fwiki%2FHund.html", DirectoryDocumentSource.file(directory, URL).getName());
+	}
+
+	public void testRecordAndReplay() throws IOException {
+		DocumentSource recording = new RecordingDocumentSource(url -> PAGE, directory);
+		assertEquals(PAGE, recording.load(URL));
+		assertEquals(PAGE, new DirectoryDocumentSource(directory).load(URL));
+	}
+
+	public void testReplayMissing() throws IOException {
+		try {
+			new DirectoryDocumentSource(directory).load(URL);
+			fail();
+		}
+		catch (FileNotFoundException e) {
+			// Test OK.
+		}
+	}
+
+	public void testProcessFixture() throws IOException {
+		Parser parser = new Parser(LexiconRegistry.fromClasspath(), new DirectoryDocumentSource(new File("fixtures")));
+		String page = parser.processSite(URL, WordClass.ARTICLES);
+		assertTrue(page.contains("<select"));
+		assertTrue(page.contains("Säugetier"));
+		// The options are written once, in the template shared by all gaps.
+		assertTrue(page.contains("<select data-options=\"latwiki-options\">"));
+		assertEquals(page.indexOf("<template id=\"latwiki-options\">"), page.lastIndexOf("<template"));
+	}
+}
@@ -0,0 +1,157 @@
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+
+public class DumpIngesterTest extends TestCase {
+
+	private static final String DUMP = "<mediawiki xmlns=\"http://www.mediawiki.org/xml/export-0.10/\">\n"
+			+ "<siteinfo><sitename>Wikipedia</sitename><dbname>dewiki</dbname></siteinfo>\n"
+			+ "<page><title>Hund</title><ns>0</ns><id>1</id><revision><id>4711</id><parentid>4710</parentid>"
+			+ "<contributor><username>A</username><id>99</id></contributor>"
+			+ "<text bytes=\"10\" xml:space=\"preserve\">{{Infobox Hund|Name=Hund}}\n"
+			+ "Der '''Hund''' ist ein [[Säugetier|Säuger]].&lt;ref&gt;Quelle&lt;/ref&gt; Er bellt.\n\n"
+			+ "== Geschichte ==\n"
+			+ "Der Hund lebt mit dem [[Mensch]]en. [[Datei:Hund.jpg|mini|Ein [[Hund]]]]\n"
+			+ "[[Kategorie:Haustier]]</text></revision></page>\n"
+			+ "<page><title>Köter</title><ns>0</ns><id>2</id><redirect title=\"Hund\" />"
+			+ "<revision><id>12</id><text>#WEITERLEITUNG [[Hund]]</text></revision></page>\n"
+			+ "<page><title>Diskussion:Hund</title><ns>1</ns><id>3</id><revision><id>13</id><text>Ein Gespräch.</text></revision></page>\n"
+			+ "<page><title>Deutscher Schäferhund</title><ns>0</ns><id>4</id><revision><id>14</id>"
+			+ "<text>Der Schäferhund ist ein Hund.</text></revision></page>\n"
+			+ "</mediawiki>\n";
+
+	private File directory;
+
+	@Override
+	protected void setUp() throws IOException {
+		directory = Files.createTempDirectory("dump-ingester").toFile();
+	}
+
+	@Override
+	protected void tearDown() {
+		delete(directory);
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private ArticleStore openStore() throws IOException {
+		return new ArticleStore(new File(directory, "store"), 1000000, 100000, ArticleStore.NEVER_EXPIRES);
+	}
+
+	private static InputStream dump() {
+		return new ByteArrayInputStream(DUMP.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public void testArticleUrl() {
+		assertEquals("https://de.wikipedia.org/wiki/Deutscher_Sch%C3%A4ferhund", DumpIngester.articleUrl("de", "Deutscher Schäferhund"));
+		assertEquals("https://ru.wikipedia.org/wiki/%D0%A1%D0%BE%D0%B1%D0%B0%D0%BA%D0%B0", DumpIngester.articleUrl("ru", "Собака"));
+		assertEquals("https://en.wikipedia.org/wiki/Dog_(disambiguation)", DumpIngester.articleUrl("en", "dog (disambiguation)"));
+	}
+
+	public void testConvert() {
+		String html = WikitextConverter.toHtml("de", "Hund", 4711, "{{Infobox|a={{b}}}}\n"
+				+ "Der '''Hund''' & die [[Katze|Katzen]]<ref name=\"a\">Quelle</ref>.\n"
+				+ "{| class=\"wikitable\"\n| Tabelle\n|}\n"
+				+ "* Punkt [http://example.org Beispiel]");
+		assertEquals(4711, RevisionId.parse(html));
+		assertTrue(html, html.contains("<h1 id=\"firstHeading\">Hund</h1>"));
+		assertTrue(html, html.contains("<p>Der <b>Hund</b> &amp; die <a href=\"/wiki/Katze\">Katzen</a>.</p>"));
+		assertTrue(html, html.contains("<ul>\n<li>Punkt Beispiel</li>\n</ul>"));
+		assertFalse(html, html.contains("Infobox"));
+		assertFalse(html, html.contains("Tabelle"));
+		assertFalse(html, html.contains("Quelle"));
+	}
+
+	public void testLinksWithColon() {
+		StringBuilder html = new StringBuilder();
+		WikitextConverter.appendBody("Er sah [[Star Wars: Episode IV|Krieg der Sterne]] und [[Hilfe:Links]]."
+				+ "[[Bild:Hund.jpg|mini|Ein Hund]][[Category:Hund]][[en:Dog]][[:Kategorie:Hund|Hunde]]", html);
+		assertEquals("<p>Er sah <a href=\"/wiki/Star_Wars:_Episode_IV\">Krieg der Sterne</a> und "
+				+ "<a href=\"/wiki/Hilfe:Links\">Hilfe:Links</a>.<a href=\"/wiki/Kategorie:Hund\">Hunde</a></p>\n", html.toString());
+	}
+
+	public void testUnclosedBlocks() {
+		StringBuilder wikitext = new StringBuilder("Der Hund<ref>Quelle</ref> bellt.<ref name=\"a\"/>");
+		for (int i=0; i<50000; i++) {
+			wikitext.append(" Er <ref name=\"x\">bellt");
+		}
+		StringBuilder html = new StringBuilder();
+		WikitextConverter.appendBody(wikitext.toString(), html);
+		assertTrue(html.toString().startsWith("<p>Der Hund bellt. Er bellt Er bellt"));
+	}
+
+	public void testIngest() throws IOException {
+		ArticleStore store = openStore();
+		DumpIngester ingester = new DumpIngester(store, "de", 2, 1);
+		assertEquals(4, ingester.ingest(dump(), new File(directory, "checkpoint")));
+		assertEquals(2, ingester.getStored());
+		assertEquals(2, ingester.getSkipped());
+		assertEquals("4", new String(Files.readAllBytes(new File(directory, "checkpoint").toPath()), StandardCharsets.UTF_8));
+
+		String html = store.get("https://de.wikipedia.org/wiki/Hund").getHtml();
+		assertEquals(4711, RevisionId.parse(html));
+		assertTrue(html, html.contains("<a href=\"/wiki/S%C3%A4ugetier\">Säuger</a>"));
+		assertTrue(html, html.contains("<h2>Geschichte</h2>"));
+		assertFalse(html, html.contains("Datei"));
+		assertFalse(html, html.contains("Kategorie"));
+		assertFalse(html, html.contains("Quelle"));
+		assertNull(store.get("https://de.wikipedia.org/wiki/K%C3%B6ter"));
+		assertNotNull(store.get("https://de.wikipedia.org/wiki/Deutscher_Sch%C3%A4ferhund"));
+		store.close();
+	}
+
+	public void testResume() throws IOException {
+		File checkpoint = new File(directory, "checkpoint");
+		Files.write(checkpoint.toPath(), "1".getBytes(StandardCharsets.UTF_8));
+		ArticleStore store = openStore();
+		DumpIngester ingester = new DumpIngester(store, "de", 2, 2);
+		assertEquals(4, ingester.ingest(dump(), checkpoint));
+		// The first page was stored before the interruption.
+		assertEquals(1, ingester.getStored());
+		assertNull(store.get("https://de.wikipedia.org/wiki/Hund"));
+		store.close();
+	}
+
+	public void testStoreFailure() throws IOException {
+		File checkpoint = new File(directory, "checkpoint");
+		ArticleStore store = openStore();
+		// Writes to a closed store fail.
+		store.close();
+		DumpIngester ingester = new DumpIngester(store, "de", 2, 1);
+		assertEquals(0, ingester.ingest(dump(), checkpoint));
+		assertEquals(0, ingester.getStored());
+		assertEquals(2, ingester.getFailed());
+		assertFalse(checkpoint.exists());
+	}
+
+	public void testServeIngested() throws IOException {
+		ArticleStore store = openStore();
+		new DumpIngester(store, "de", 1, 16).ingest(dump(), null);
+		DocumentSource offline = url -> {
+			throw new java.io.FileNotFoundException(url);
+		};
+		Parser parser = new Parser(LexiconRegistry.fromClasspath(),
+				new PageFetcher(new PageCache(1000000, 60000), store, offline, Runnable::run));
+		String page = parser.processSite("https://de.wikipedia.org/wiki/Hund", WordClass.ARTICLES);
+		assertTrue(page, page.contains("<select"));
+		// Request URLs are spelled in many ways, the stored keys in one.
+		assertEquals(page, parser.processSite("http://de.wikipedia.org/wiki/hund#Geschichte", WordClass.ARTICLES));
+		page = parser.processSite("https://de.wikipedia.org/wiki/Deutscher Schäferhund", WordClass.ARTICLES);
+		assertEquals(page, parser.processSite("https://de.wikipedia.org/wiki/Deutscher_Schäferhund", WordClass.ARTICLES));
+		assertEquals(page, parser.processSite("https://de.wikipedia.org/wiki/deutscher_Sch%c3%a4ferhund", WordClass.ARTICLES));
+		store.close();
+	}
+}
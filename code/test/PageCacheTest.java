@@ -0,0 +1,98 @@
+import junit.framework.TestCase;
+
+public class PageCacheTest extends TestCase {
+
+	private static final String PAGE = "<html><head></head><body><p>Der Hund und die Katze.</p></body></html>";
+
+	public void testConstructor1() {
+		try {
+			new PageCache(-1, 1000);
+			fail();
+		}
+		catch (Exception e) {
+			// Test OK.
+		}
+	}
+
+	public void testConstructor2() {
+		try {
+			new PageCache(1000, -1);
+			fail();
+		}
+		catch (Exception e) {
+			// Test OK.
+		}
+	}
+
+	public void testGet1() {
+		PageCache cache = new PageCache(100000, 60000);
+		assertNull(cache.get("https://de.wikipedia.org/wiki/Hund"));
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	public void testGet2() {
+		PageCache cache = new PageCache(100000, 60000);
+		cache.put("https://de.wikipedia.org/wiki/Hund", PAGE, System.currentTimeMillis());
+		PageCache.Entry entry = cache.get("https://de.wikipedia.org/wiki/Hund");
+		assertNotNull(entry);
+		assertEquals(PAGE, entry.getHtml());
+		assertEquals(1, cache.getHits());
+	}
+
+	public void testGetExpired() {
+		PageCache cache = new PageCache(100000, 1000);
+		cache.put("https://de.wikipedia.org/wiki/Hund", PAGE, System.currentTimeMillis() - 2000);
+		assertNull(cache.get("https://de.wikipedia.org/wiki/Hund"));
+		assertEquals(1, cache.getMisses());
+	}
+
+	public void testGetStale() {
+		PageCache cache = new PageCache(100000, 1000);
+		cache.put("https://de.wikipedia.org/wiki/Hund", PAGE, System.currentTimeMillis() - 2000);
+		PageCache.Entry entry = cache.get("https://de.wikipedia.org/wiki/Hund", 60000);
+		assertNotNull(entry);
+		assertFalse(cache.isFresh(entry));
+		assertEquals(RevisionId.UNKNOWN, entry.getRevision());
+		assertEquals(1, cache.getStaleHits());
+		assertNull(cache.get("https://de.wikipedia.org/wiki/Hund", 500));
+		assertEquals(1, cache.getMisses());
+	}
+
+	public void testEviction() {
+		PageCache cache = new PageCache(Compression.compress(PAGE).length * 2, 60000);
+		cache.put("https://de.wikipedia.org/wiki/A", PAGE, System.currentTimeMillis());
+		cache.put("https://de.wikipedia.org/wiki/B", PAGE, System.currentTimeMillis());
+		// Touch A, so B is the least recently used page.
+		cache.get("https://de.wikipedia.org/wiki/A");
+		cache.put("https://de.wikipedia.org/wiki/C", PAGE, System.currentTimeMillis());
+
+		assertEquals(1, cache.getEvictions());
+		assertEquals(2, cache.getSize());
+		assertNotNull(cache.get("https://de.wikipedia.org/wiki/A"));
+		assertNull(cache.get("https://de.wikipedia.org/wiki/B"));
+		assertNotNull(cache.get("https://de.wikipedia.org/wiki/C"));
+	}
+
+	public void testPageTooLarge() {
+		PageCache cache = new PageCache(10, 60000);
+		cache.put("https://de.wikipedia.org/wiki/Hund", PAGE, System.currentTimeMillis());
+		assertEquals(0, cache.getSize());
+		assertEquals(0, cache.getTotalBytes());
+	}
+
+	public void testPutCompressed() {
+		PageCache cache = new PageCache(100000, 60000);
+		byte[] compressed = Compression.compress(PAGE);
+		cache.putCompressed("https://de.wikipedia.org/wiki/Hund", compressed, PAGE.length(), System.currentTimeMillis(), 42);
+		PageCache.Entry entry = cache.get("https://de.wikipedia.org/wiki/Hund");
+		assertSame(compressed, entry.getCompressedHtml());
+		assertEquals(PAGE, entry.getHtml());
+		assertEquals(PAGE.length(), entry.getSize());
+		assertEquals(42, entry.getRevision());
+	}
+
+	public void testCompression() {
+		assertEquals(PAGE, Compression.decompress(Compression.compress(PAGE)));
+	}
+}
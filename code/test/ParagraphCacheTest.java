@@ -0,0 +1,81 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ParagraphCacheTest extends TestCase {
+
+	private static List<GapLayout> gaps(int words) {
+		GapLayout layout = new GapLayout();
+		for (int i=0; i<words; i++) {
+			layout.add(i * 4, i * 4 + 3, i);
+		}
+		List<GapLayout> gaps = new ArrayList<GapLayout>();
+		gaps.add(layout);
+		return gaps;
+	}
+
+	public void testConstructor() {
+		try {
+			new ParagraphCache(-1);
+			fail();
+		}
+		catch (IllegalArgumentException e) {
+			// Test OK.
+		}
+	}
+
+	public void testKey() {
+		List<String> texts = Arrays.asList("Der Hund", " und die Katze.");
+		long key = ParagraphCache.key("de", WordClass.ARTICLES, texts);
+		assertEquals(key, ParagraphCache.key("de", WordClass.ARTICLES, Arrays.asList("Der Hund", " und die Katze.")));
+		assertFalse(key == ParagraphCache.key("de", WordClass.PRONOUNS, texts));
+		assertFalse(key == ParagraphCache.key("nl", WordClass.ARTICLES, texts));
+		assertFalse(key == ParagraphCache.key("de", WordClass.ARTICLES, Arrays.asList("Der Hund ", "und die Katze.")));
+		assertEquals(23, ParagraphCache.length(texts));
+	}
+
+	public void testGet() {
+		ParagraphCache cache = new ParagraphCache(100000);
+		List<GapLayout> gaps = gaps(3);
+		assertNull(cache.get(42, 10));
+		cache.put(42, 10, gaps);
+		assertEquals(3, cache.get(42, 10).get(0).size());
+		// Same hash, different length.
+		assertNull(cache.get(42, 11));
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+
+	public void testEviction() {
+		ParagraphCache cache = new ParagraphCache(500);
+		for (int i=0; i<10; i++) {
+			cache.put(i, 10, gaps(5));
+		}
+		assertTrue(cache.getEvictions() > 0);
+		assertTrue(cache.getTotalBytes() <= 500);
+		assertNull(cache.get(0, 10));
+		assertNotNull(cache.get(9, 10));
+	}
+
+	public void testSameOutput() throws IOException {
+		String url = "https://de.wikipedia.org/wiki/Hund";
+		Parser parser = new Parser(LexiconRegistry.fromClasspath(), new DirectoryDocumentSource(new File("fixtures")));
+		String page = parser.processSite(url, WordClass.ARTICLES);
+		// The fixture repeats paragraphs.
+		assertTrue(parser.getParagraphCache().getHits() > 0);
+
+		System.setProperty("latwiki.paragraph.cache.maxBytes", "0");
+		try {
+			Parser uncached = new Parser(LexiconRegistry.fromClasspath(), new DirectoryDocumentSource(new File("fixtures")));
+			assertNull(uncached.getParagraphCache());
+			assertEquals(page, uncached.processSite(url, WordClass.ARTICLES));
+		}
+		finally {
+			System.clearProperty("latwiki.paragraph.cache.maxBytes");
+		}
+	}
+}
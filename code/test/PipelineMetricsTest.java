@@ -0,0 +1,56 @@
+import junit.framework.TestCase;
+
+public class PipelineMetricsTest extends TestCase {
+
+	public void testHistogram() {
+		Histogram histogram = new Histogram();
+		histogram.record(100000);      // 0.1 ms
+		histogram.record(3000000);     // 3 ms
+		histogram.record(60000000000L); // 60 s
+		assertEquals(3, histogram.getCount());
+
+		StringBuilder buf = new StringBuilder();
+		histogram.writePrometheus(buf, "test_seconds", "stage=\"fetch\"");
+		String text = buf.toString();
+		assertTrue(text.contains("test_seconds_bucket{stage=\"fetch\",le=\"5.0E-4\"} 1\n"));
+		assertTrue(text.contains("test_seconds_bucket{stage=\"fetch\",le=\"0.005\"} 2\n"));
+		assertTrue(text.contains("test_seconds_bucket{stage=\"fetch\",le=\"10.0\"} 2\n"));
+		assertTrue(text.contains("test_seconds_bucket{stage=\"fetch\",le=\"+Inf\"} 3\n"));
+		assertTrue(text.contains("test_seconds_count{stage=\"fetch\"} 3\n"));
+	}
+
+	public void testPipelineMetrics() {
+		PipelineMetrics metrics = new PipelineMetrics();
+		metrics.record(PipelineMetrics.Stage.PARSE, "de", WordClass.ARTICLES, 2000000);
+		metrics.countPage("de", WordClass.ARTICLES, 7, 1234);
+
+		StringBuilder buf = new StringBuilder();
+		metrics.writePrometheus(buf);
+		String text = buf.toString();
+		assertTrue(text.contains("latwiki_stage_seconds_count{stage=\"parse\",language=\"de\",word_class=\"articles\"} 1\n"));
+		assertFalse(text.contains("stage=\"fetch\""));
+		assertTrue(text.contains("latwiki_gaps_total{language=\"de\",word_class=\"articles\"} 7\n"));
+		assertTrue(text.contains("latwiki_output_bytes_total{language=\"de\",word_class=\"articles\"} 1234\n"));
+	}
+
+	public void testCountResponse() {
+		PipelineMetrics metrics = new PipelineMetrics();
+		metrics.countResponse(1000, 1000, false);
+		metrics.countResponse(1000, 180, true);
+
+		StringBuilder buf = new StringBuilder();
+		metrics.writePrometheus(buf);
+		String text = buf.toString();
+		assertTrue(text.contains("latwiki_response_bytes_total{encoding=\"identity\"} 1000\n"));
+		assertTrue(text.contains("latwiki_response_bytes_total{encoding=\"gzip\"} 180\n"));
+		assertTrue(text.contains("latwiki_response_compression_ratio_bucket{encoding=\"gzip\",le=\"0.15\"} 0\n"));
+		assertTrue(text.contains("latwiki_response_compression_ratio_bucket{encoding=\"gzip\",le=\"0.2\"} 1\n"));
+		assertTrue(text.contains("latwiki_response_compression_ratio_sum{encoding=\"gzip\"} 0.18\n"));
+	}
+
+	public void testUtf8Length() {
+		assertEquals(0, PipelineMetrics.utf8Length(""));
+		assertEquals("Grüße €".getBytes(java.nio.charset.StandardCharsets.UTF_8).length, PipelineMetrics.utf8Length("Grüße €"));
+		assertEquals(4, PipelineMetrics.utf8Length(new String(Character.toChars(0x1F600))));
+	}
+}
@@ -0,0 +1,62 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import junit.framework.TestCase;
+
+public class RandomRemovalTest extends TestCase {
+
+	private static final String URL = "https://de.wikipedia.org/wiki/Hund";
+
+	private Parser parser;
+
+	protected void setUp() throws IOException {
+		parser = new Parser(LexiconRegistry.fromClasspath(), new DirectoryDocumentSource(new File("fixtures")));
+	}
+
+	private List<GapLayout> tokenize(List<String> texts) {
+		List<GapLayout> wordLists = new ArrayList<GapLayout>();
+		for (String text : texts) {
+			wordLists.add(parser.tokenizeText(text, new GapLayout()));
+		}
+		return wordLists;
+	}
+
+	public void testExactCount() {
+		List<String> texts = new ArrayList<String>();
+		texts.add("Der Hund ist ein Säugetier und lebt seit langer Zeit mit dem Menschen zusammen.");
+		texts.add("Er stammt vom Wolf ab und wurde vor vielen tausend Jahren domestiziert.");
+		List<GapLayout> wordLists = tokenize(texts);
+		int words = wordLists.get(0).size() + wordLists.get(1).size();
+
+		Map<Integer, String> removed = parser.removeWordsRandomly(wordLists, texts, new SplittableRandom(1));
+		assertEquals(words / 10, removed.size());
+		int numbered = 0;
+		for (GapLayout wordList : wordLists) {
+			for (int i=0; i<wordList.size(); i++) {
+				if (wordList.number(i) != GapLayout.NO_NUMBER) {
+					numbered++;
+					assertTrue(removed.containsKey(wordList.number(i)));
+				}
+			}
+		}
+		assertEquals(removed.size(), numbered);
+	}
+
+	public void testReproducible() {
+		List<String> texts = new ArrayList<String>();
+		texts.add("Der Hund ist ein Säugetier und lebt seit langer Zeit mit dem Menschen zusammen.");
+		assertEquals(parser.removeWordsRandomly(tokenize(texts), texts, new SplittableRandom(5)),
+				parser.removeWordsRandomly(tokenize(texts), texts, new SplittableRandom(5)));
+	}
+
+	public void testSeededPages() throws IOException {
+		// Separate parsers, so the second page is not taken from the render cache.
+		Parser other = new Parser(LexiconRegistry.fromClasspath(), new DirectoryDocumentSource(new File("fixtures")));
+		assertEquals(parser.processSite(URL, WordClass.RANDOM, 11L), other.processSite(URL, WordClass.RANDOM, 11L));
+		assertFalse(parser.processSite(URL, WordClass.RANDOM, 11L).equals(other.processSite(URL, WordClass.RANDOM, 12L)));
+	}
+}
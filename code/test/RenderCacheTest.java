@@ -0,0 +1,120 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class RenderCacheTest extends TestCase {
+
+	private static final String URL = "https://de.wikipedia.org/wiki/Hund";
+
+	public void testLexiconVersion() throws IOException {
+		String version = LexiconRegistry.fromClasspath().getVersion();
+		assertEquals(16, version.length());
+		assertEquals(version, LexiconRegistry.fromClasspath().getVersion());
+		assertFalse(version.equals(LexiconRegistry.empty().getVersion()));
+	}
+
+	public void testHit() throws IOException {
+		Parser parser = new Parser(LexiconRegistry.fromClasspath(), new DirectoryDocumentSource(new File("fixtures")));
+		assertNull(parser.lookUpRendered(URL, WordClass.ARTICLES, null));
+		String page = parser.processSite(URL, WordClass.ARTICLES);
+
+		PageCache.Entry rendered = parser.lookUpRendered("de.wikipedia.org/wiki/Hund#Geschichte", WordClass.ARTICLES, 3L);
+		assertNotNull(rendered);
+		assertEquals(page, rendered.getHtml());
+		assertEquals(page, parser.processSite(URL, WordClass.ARTICLES));
+		assertNull(parser.lookUpRendered(URL, WordClass.PRONOUNS, null));
+	}
+
+	public void testSeededRandomCached() throws IOException {
+		Parser parser = new Parser(LexiconRegistry.fromClasspath(), new DirectoryDocumentSource(new File("fixtures")));
+		String page = parser.processSite(URL, WordClass.RANDOM, 7L);
+		assertNotNull(parser.lookUpRendered(URL, WordClass.RANDOM, 7L));
+		assertNull(parser.lookUpRendered(URL, WordClass.RANDOM, 8L));
+		assertEquals(page, parser.processSite(URL, WordClass.RANDOM, 7L));
+	}
+
+	public void testRevisionId() {
+		assertEquals(100000001, RevisionId.parse("<script>RLCONF={\"wgRevisionId\":100000001,\"wgArticleId\":7}</script>"));
+		assertEquals(RevisionId.UNKNOWN, RevisionId.parse("<html><body><p>Hund</p></body></html>"));
+		assertEquals(RevisionId.UNKNOWN, RevisionId.parse("\"wgRevisionId\":null"));
+		assertEquals(RevisionId.UNKNOWN, RevisionId.parse(null));
+	}
+
+	public void testRevisionRecorded() throws IOException {
+		Parser parser = new Parser(LexiconRegistry.fromClasspath(), new DirectoryDocumentSource(new File("fixtures")));
+		parser.processSite(URL, WordClass.ARTICLES);
+		assertEquals(100000001, parser.lookUpRendered(URL, WordClass.ARTICLES, null).getRevision());
+	}
+
+	public void testRevalidateUnchanged() throws IOException, InterruptedException {
+		System.setProperty("latwiki.render.cache.ttlSeconds", "0");
+		Parser parser;
+		try {
+			parser = new Parser(LexiconRegistry.fromClasspath(), new DirectoryDocumentSource(new File("fixtures")));
+		}
+		finally {
+			System.clearProperty("latwiki.render.cache.ttlSeconds");
+		}
+		String page = parser.processSite(URL, WordClass.ARTICLES);
+		Thread.sleep(5);
+		assertNull(parser.lookUpRendered(URL, WordClass.ARTICLES, null));
+
+		// The stale page is served, and the revalidation runs on the calling thread.
+		PageCache.Entry stale = parser.lookUpRendered(URL, WordClass.ARTICLES, null, Runnable::run, Runnable::run);
+		assertEquals(page, stale.getHtml());
+		assertEquals(1, parser.getRevalidationsUnchanged());
+		assertEquals(0, parser.getRevalidationsChanged());
+
+		// The render was renewed without transforming the page again.
+		PageCache.Entry renewed = parser.lookUpRendered(URL, WordClass.ARTICLES, null, Runnable::run, Runnable::run);
+		assertNotSame(stale, renewed);
+		assertSame(stale.getCompressedHtml(), renewed.getCompressedHtml());
+		assertEquals(2, parser.getRevalidationsUnchanged());
+	}
+
+	public void testRevalidateChanged() throws IOException, InterruptedException {
+		// The page is edited after the first download, while the copy in the page cache is still fresh.
+		DocumentSource fixtures = new DirectoryDocumentSource(new File("fixtures"));
+		AtomicInteger loads = new AtomicInteger();
+		DocumentSource edited = url -> {
+			String html = fixtures.load(url);
+			return loads.getAndIncrement() == 0 ? html : html.replace("100000001", "100000002");
+		};
+		System.setProperty("latwiki.render.cache.ttlSeconds", "0");
+		Parser parser;
+		try {
+			parser = new Parser(LexiconRegistry.fromClasspath(), edited);
+		}
+		finally {
+			System.clearProperty("latwiki.render.cache.ttlSeconds");
+		}
+		parser.processSite(URL, WordClass.ARTICLES);
+		Thread.sleep(5);
+
+		parser.lookUpRendered(URL, WordClass.ARTICLES, null, Runnable::run, Runnable::run);
+		assertEquals(2, loads.get());
+		assertEquals(0, parser.getRevalidationsUnchanged());
+		assertEquals(1, parser.getRevalidationsChanged());
+		assertEquals(100000002, parser.lookUpRendered(URL, WordClass.ARTICLES, null, Runnable::run, Runnable::run).getRevision());
+	}
+
+	public void testRandomNotCached() throws IOException {
+		Parser parser = new Parser(LexiconRegistry.fromClasspath(), new DirectoryDocumentSource(new File("fixtures")));
+		parser.processSite(URL, WordClass.RANDOM);
+		assertNull(parser.lookUpRendered(URL, WordClass.RANDOM, null));
+		assertEquals(0, parser.getRenderCache().getSize());
+	}
+
+	public void testStreamedPageMatchesString() throws IOException {
+		Parser parser = new Parser(LexiconRegistry.fromClasspath(), new DirectoryDocumentSource(new File("fixtures")));
+		String page = parser.processSite(URL, WordClass.ARTICLES);
+		Parser streaming = new Parser(LexiconRegistry.fromClasspath(), new DirectoryDocumentSource(new File("fixtures")));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		streaming.processSiteAsync(URL, WordClass.ARTICLES, null, Runnable::run, Runnable::run, out).join();
+		assertEquals(page, new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+}